@@ -0,0 +1,111 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.caches.ChangeStreamInvalidator;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Invalidates a cache from the change stream of an embedded single-node replica set,
+ * writes going straight to Mongo as if another instance had made them
+ */
+@DataMongoTest(properties = {
+        "spring.mongodb.embedded.version=5.0.5",
+        "spring.mongodb.embedded.storage.repl-set-name=rs0",
+        "spring.data.mongodb.port=0"
+})
+public class ChangeStreamInvalidatorIT {
+
+    @Autowired
+    private MongoTemplate template;
+
+    private EntityCache<Cinema> cache;
+
+    private ChangeStreamInvalidator invalidator;
+
+    @BeforeEach
+    public void setup() {
+        this.template.dropCollection(Cinema.class);
+        this.template.dropCollection("cache_resume_token");
+        this.cache = new EntityCache<>("cinema", 100, Duration.ofMinutes(10));
+        this.invalidator = new ChangeStreamInvalidator(this.template, List.of(this.cache), "test");
+    }
+
+    @AfterEach
+    public void close() throws InterruptedException {
+        this.invalidator.stop();
+    }
+
+    /**
+     * Testing that an update made elsewhere evicts the cached entity
+     * @throws InterruptedException
+     */
+    @Test
+    public void testInvalidateOnUpdate() throws InterruptedException {
+        Cinema cinema = this.template.save(new Cinema(null, "Gaumont"));
+        this.invalidator.start();
+        this.await(this.invalidator::isConnected);
+        this.cache.get(cinema.getId(), id -> Optional.of(cinema));
+
+        this.template.save(new Cinema(cinema.getId(), "Pathé"));
+
+        this.await(() -> this.cache.invalidationCount() == 1);
+        Assertions.assertEquals(Optional.empty(), this.cache.get(cinema.getId(), id -> Optional.empty()));
+    }
+
+    /**
+     * Testing that inserts do not evict anything
+     * @throws InterruptedException
+     */
+    @Test
+    public void testIgnoreInsert() throws InterruptedException {
+        this.invalidator.start();
+        this.await(this.invalidator::isConnected);
+
+        Cinema cinema = this.template.save(new Cinema(null, "Gaumont"));
+        this.template.remove(cinema);
+
+        this.await(() -> this.cache.invalidationCount() == 1);
+        Thread.sleep(500);
+        Assertions.assertEquals(1, this.cache.invalidationCount());
+    }
+
+    /**
+     * Testing that a restarted invalidator resumes from its stored token and sees the writes it missed
+     * @throws InterruptedException
+     */
+    @Test
+    public void testResumeAfterRestart() throws InterruptedException {
+        Cinema cinema = this.template.save(new Cinema(null, "Gaumont"));
+        this.invalidator.start();
+        this.await(this.invalidator::isConnected);
+        this.invalidator.stop();
+
+        this.cache.get(cinema.getId(), id -> Optional.of(cinema));
+        this.template.save(new Cinema(cinema.getId(), "Pathé"));
+        Assertions.assertEquals(0, this.cache.invalidationCount());
+
+        this.invalidator = new ChangeStreamInvalidator(this.template, List.of(this.cache), "test");
+        this.invalidator.start();
+        this.await(() -> this.cache.invalidationCount() == 1);
+    }
+
+    private void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < end, "Condition not met after 10 s");
+            Thread.sleep(10);
+        }
+    }
+}
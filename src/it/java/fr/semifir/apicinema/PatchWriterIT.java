@@ -0,0 +1,186 @@
+package fr.semifir.apicinema;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies JSON Merge Patches against an embedded mongod
+ */
+@DataMongoTest(properties = "spring.mongodb.embedded.version=5.0.5")
+public class PatchWriterIT {
+
+    @Autowired
+    private MongoTemplate template;
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private PatchWriter writer;
+
+    private Salle salle;
+
+    private Seance seance;
+
+    @BeforeEach
+    public void setup() {
+        this.template.dropCollection(Seance.class);
+        this.template.dropCollection(Salle.class);
+        this.template.dropCollection(Cinema.class);
+        this.writer = new PatchWriter(this.template, this.objectMapper);
+        this.salle = this.template.insert(new Salle(null, 1, 100, null));
+        this.seance = this.template.insert(new Seance(null, new Date(0), this.salle, 80));
+    }
+
+    /**
+     * Testing that set fields are written, null fields removed and absent fields left alone
+     */
+    @Test
+    public void testPatch() throws Exception {
+        Seance patched = this.writer.patch(this.seance.getId(), this.objectMapper.readTree("{\"date\": 3600000}"), Seance.class);
+
+        Assertions.assertEquals(new Date(3600000), patched.getDate());
+        Assertions.assertEquals(1L, patched.getVersion());
+        Assertions.assertEquals(80, patched.getRemaining());
+
+        this.writer.patch(this.seance.getId(), this.objectMapper.readTree("{\"date\": null}"), Seance.class);
+
+        Document document = this.raw(this.seance.getId());
+        Assertions.assertFalse(document.containsKey("date"));
+        Assertions.assertEquals(80, document.getInteger("remaining"));
+        Assertions.assertEquals(this.salle.getId(), ((DBRef) document.get("salle")).getId().toString());
+    }
+
+    /**
+     * Testing that a reference is changed by its id and stays a DBRef
+     */
+    @Test
+    public void testPatchReference() throws Exception {
+        Salle other = this.template.insert(new Salle(null, 2, 50, null));
+
+        this.writer.patch(this.seance.getId(), this.objectMapper.readTree("{\"salle\": {\"id\": \"" + other.getId() + "\"}}"), Seance.class);
+
+        DBRef salle = (DBRef) this.raw(this.seance.getId()).get("salle");
+        Assertions.assertEquals("salle", salle.getCollectionName());
+        Assertions.assertEquals(other.getId(), salle.getId().toString());
+    }
+
+    /**
+     * Testing that a patch on an outdated version writes nothing
+     */
+    @Test
+    public void testPatchWhereVersionChanged() throws Exception {
+        this.writer.patch(this.seance.getId(), this.objectMapper.readTree("{\"version\": 0, \"date\": 70}"), Seance.class);
+
+        Assertions.assertThrows(ConflictException.class, () -> this.writer.patch(
+                this.seance.getId(), this.objectMapper.readTree("{\"version\": 0, \"date\": 60}"), Seance.class));
+        Assertions.assertEquals(new Date(70), this.raw(this.seance.getId()).getDate("date"));
+        Assertions.assertEquals(1L, this.raw(this.seance.getId()).getLong("version"));
+    }
+
+    /**
+     * Testing that concurrent patches on the same version leave exactly one winner
+     */
+    @Test
+    public void testConcurrentPatches() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int date = i;
+            results.add(executor.submit(() -> {
+                try {
+                    this.writer.patch(this.seance.getId(), this.objectMapper.readTree("{\"version\": 0, \"date\": " + date + "}"), Seance.class);
+                    return true;
+                } catch (ConflictException e) {
+                    return false;
+                }
+            }));
+        }
+        int written = 0;
+        for (Future<Boolean> result : results) {
+            written += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(1, written);
+        Assertions.assertEquals(1L, this.raw(this.seance.getId()).getLong("version"));
+    }
+
+    /**
+     * Testing the errors: unknown document, unknown field, id, remaining and invalid values
+     */
+    @Test
+    public void testPatchWhereNotValid() {
+        Assertions.assertThrows(NotFoundException.class, () -> this.writer.patch(
+                "61d1e0f0a1b2c3d4e5f60718", this.objectMapper.readTree("{\"date\": 1}"), Seance.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> this.writer.patch(
+                this.seance.getId(), this.objectMapper.readTree("{\"places\": 1}"), Seance.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> this.writer.patch(
+                this.seance.getId(), this.objectMapper.readTree("{\"id\": \"other\"}"), Seance.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> this.writer.patch(
+                this.seance.getId(), this.objectMapper.readTree("{\"date\": \"demain\"}"), Seance.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> this.writer.patch(
+                this.seance.getId(), this.objectMapper.readTree("{\"salle\": {\"nbrPlace\": 10}}"), Seance.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> this.writer.patch(
+                this.seance.getId(), this.objectMapper.readTree("[]"), Seance.class));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> this.writer.patch(
+                this.seance.getId(), this.objectMapper.readTree("{\"remaining\": 100}"), Seance.class));
+        Assertions.assertEquals(80, this.raw(this.seance.getId()).getInteger("remaining"));
+    }
+
+    /**
+     * Testing that a PUT keeps the booked seats: remaining is only written when the document is created
+     */
+    @Test
+    public void testReplaceKeepsRemaining() {
+        Seance replaced = this.writer.replace(new Seance(this.seance.getId(), new Date(3600000), this.salle, 100), Seance.class);
+
+        Assertions.assertEquals(80, replaced.getRemaining());
+        Assertions.assertEquals(new Date(3600000), replaced.getDate());
+        Assertions.assertEquals(80, this.raw(this.seance.getId()).getInteger("remaining"));
+
+        String id = "61d1e0f0a1b2c3d4e5f60720";
+        Seance created = this.writer.replace(new Seance(id, new Date(0), this.salle, 100), Seance.class);
+        Assertions.assertEquals(100, created.getRemaining());
+    }
+
+    /**
+     * Testing that a PUT without version replaces a document saved before @Version, and versions it
+     */
+    @Test
+    public void testReplaceWithoutVersion() {
+        String id = "61d1e0f0a1b2c3d4e5f60719";
+        this.template.getCollection("cinema").insertOne(new Document("_id", GraphReader.id(id)).append("nom", "Luxor"));
+
+        Cinema replaced = this.writer.replace(new Cinema(id, "Pathé"), Cinema.class);
+
+        Assertions.assertEquals("Pathé", replaced.getNom());
+        Assertions.assertEquals(1L, replaced.getVersion());
+        Assertions.assertEquals(1L, this.template.getCollection("cinema").countDocuments());
+    }
+
+    private Document raw(String id) {
+        return this.template.getCollection("seance").find(new Document("_id", GraphReader.id(id))).first();
+    }
+}
@@ -0,0 +1,147 @@
+package fr.semifir.apicinema;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.SeatCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Books seats against an embedded mongod, from several clients standing in for several API instances
+ */
+@DataMongoTest(properties = "spring.mongodb.embedded.version=5.0.5")
+public class SeatCounterIT {
+
+    private static final int NODES = 4;
+
+    private static final int THREADS_PER_NODE = 8;
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Value("${local.mongo.port}")
+    private int port;
+
+    private List<MongoClient> clients = new ArrayList<>();
+
+    @BeforeEach
+    public void setup() {
+        this.template.dropCollection(Seance.class);
+        this.template.dropCollection(Salle.class);
+    }
+
+    @AfterEach
+    public void close() {
+        this.clients.forEach(MongoClient::close);
+    }
+
+    /**
+     * Testing that several seats are taken only while enough remain
+     */
+    @Test
+    public void testBookSeveralSeats() {
+        Seance seance = this.seance(10);
+        SeatCounter counter = new SeatCounter(this.template);
+
+        Assertions.assertEquals(Optional.of(6), counter.book(seance.getId(), 4));
+        Assertions.assertEquals(Optional.of(2), counter.book(seance.getId(), 4));
+        Assertions.assertThrows(ConflictException.class, () -> counter.book(seance.getId(), 4));
+        Assertions.assertEquals(Map.of(seance.getId(), 2), counter.remaining(List.of(seance.getId())));
+        Assertions.assertEquals(Optional.of(6), counter.release(seance.getId(), 4));
+    }
+
+    /**
+     * Testing that a seance without counter is told apart from a sold out or unknown one,
+     * and that initialize() never resets an existing counter
+     */
+    @Test
+    public void testInitialize() {
+        Seance legacy = this.template.insert(new Seance(null, new Date(), this.salle(10)));
+        SeatCounter counter = new SeatCounter(this.template);
+
+        Assertions.assertEquals(Optional.empty(), counter.book(legacy.getId(), 1));
+        Assertions.assertThrows(NotFoundException.class, () -> counter.book("61d1e0f0a1b2c3d4e5f60718", 1));
+        counter.initialize(legacy.getId(), 10);
+        Assertions.assertEquals(Optional.of(9), counter.book(legacy.getId(), 1));
+        counter.initialize(legacy.getId(), 10);
+        Assertions.assertEquals(Map.of(legacy.getId(), 9), counter.remaining(List.of(legacy.getId())));
+    }
+
+    /**
+     * Stress test: NODES clients with THREADS_PER_NODE threads each book one seat at a time
+     * until the seance is sold out. Exactly nbrPlace bookings must succeed.
+     */
+    @Test
+    public void testNoOverbookingAcrossNodes() throws Exception {
+        int nbrPlace = 500;
+        Seance seance = this.seance(nbrPlace);
+        List<SeatCounter> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            MongoClient client = MongoClients.create("mongodb://localhost:" + this.port);
+            this.clients.add(client);
+            nodes.add(new SeatCounter(new MongoTemplate(client, this.template.getDb().getName())));
+        }
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * THREADS_PER_NODE);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < NODES * THREADS_PER_NODE; i++) {
+                SeatCounter counter = nodes.get(i % NODES);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        while (counter.book(seance.getId(), 1).isPresent()) {
+                            booked.incrementAndGet();
+                        }
+                    } catch (ConflictException e) {
+                        refused.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(nbrPlace, booked.get());
+        Assertions.assertEquals(NODES * THREADS_PER_NODE, refused.get());
+        Assertions.assertEquals(Map.of(seance.getId(), 0), new SeatCounter(this.template).remaining(List.of(seance.getId())));
+    }
+
+    private Salle salle(int nbrPlace) {
+        return this.template.insert(new Salle(null, 1, nbrPlace, null));
+    }
+
+    private Seance seance(int nbrPlace) {
+        return this.template.insert(new Seance(null, new Date(), this.salle(nbrPlace), nbrPlace));
+    }
+}
@@ -0,0 +1,76 @@
+package fr.semifir.apicinema.benchmarks;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Écriture d'une semaine de séances : save() unitaire contre BulkWriter.
+ * Nécessite un mongod joignable, par défaut mongodb://localhost:27017
+ * (-Dmongo.uri=... pour en changer). La base cinemas-benchmark est vidée à chaque itération.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchWriteBenchmark {
+
+    @Param({"1000"})
+    public int size;
+
+    @Param({"100", "1000"})
+    public int chunkSize;
+
+    private MongoClient client;
+    private MongoTemplate template;
+    private BulkWriter writer;
+    private List<Seance> seances;
+
+    @Setup(Level.Trial)
+    public void connect() {
+        this.client = MongoClients.create(System.getProperty("mongo.uri", "mongodb://localhost:27017"));
+        this.template = new MongoTemplate(this.client, "cinemas-benchmark");
+        this.writer = new BulkWriter(this.template, this.chunkSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        this.template.dropCollection(Seance.class);
+        this.seances = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            Seance seance = Fixtures.seance(i);
+            seance.setId(null);
+            seance.setSalle(null);
+            this.seances.add(seance);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        this.template.getDb().drop();
+        this.client.close();
+    }
+
+    @Benchmark
+    public int singleInserts() {
+        for (Seance seance : this.seances) {
+            this.template.save(seance);
+        }
+        return this.seances.size();
+    }
+
+    @Benchmark
+    public List<BatchResultDTO> bulkWrite() {
+        return this.writer.write(this.seances, Seance.class);
+    }
+}
@@ -0,0 +1,65 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SpecializedEntityMapper;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.services.CinemaService;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CinemaService.findAll / findByID sur un repository en mémoire :
+ * mesure le coût du service et du mapping, hors Mongo (findByID passe par le cache)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CinemaServiceBenchmark {
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private CinemaService service;
+    private String[] ids;
+
+    @Setup
+    public void setup() {
+        Map<String, Cinema> cinemas = new HashMap<>();
+        for (int i = 0; i < this.size; i++) {
+            Cinema cinema = Fixtures.cinema(i);
+            cinemas.put(cinema.getId(), cinema);
+        }
+        this.ids = cinemas.keySet().toArray(new String[0]);
+        CinemaRepository repository = InMemoryRepository.of(CinemaRepository.class, cinemas);
+        this.service = new CinemaService(
+                repository,
+                new EntityCache<>("cinema", 10_000, Duration.ofMinutes(10)),
+                null, // lectures seulement : les versions ne servent qu'aux écritures
+                new SpecializedEntityMapper(new ModelMapperEntityMapper(new ModelMapper())),
+                null); // lectures seulement : pas de PATCH ni de PUT sans version
+    }
+
+    @Benchmark
+    public List<CinemaDTO> findAll() {
+        return this.service.findAll();
+    }
+
+    @Benchmark
+    public Optional<CinemaDTO> findByID() {
+        return this.service.findByID(this.ids[ThreadLocalRandom.current().nextInt(this.ids.length)]);
+    }
+}
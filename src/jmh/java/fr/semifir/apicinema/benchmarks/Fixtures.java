@@ -0,0 +1,50 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Jeux de données des benchmarks
+ */
+final class Fixtures {
+
+    private Fixtures() { }
+
+    static Cinema cinema(int i) {
+        return new Cinema(new ObjectId().toHexString(), "Cinema " + i);
+    }
+
+    static Salle salle(int i) {
+        return new Salle(new ObjectId().toHexString(), i % 12 + 1, 80 + i % 200, cinema(i % 300));
+    }
+
+    static Seance seance(int i) {
+        return new Seance(new ObjectId().toHexString(), new Date(1_640_995_200_000L + i * 3_600_000L), salle(i % 3000));
+    }
+
+    static Film film(int i) {
+        return new Film(new ObjectId().toHexString(), "Film " + i, 90f + i % 60, seance(i));
+    }
+
+    /**
+     * Liste de SeanceDTO avec Salle et Cinema imbriqués
+     * @param size
+     * @return
+     */
+    static List<SeanceDTO> seanceDTOs(int size) {
+        List<SeanceDTO> seances = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Seance seance = seance(i);
+            seances.add(new SeanceDTO(seance.getId(), seance.getDate(), seance.getSalle()));
+        }
+        return seances;
+    }
+}
@@ -0,0 +1,66 @@
+package fr.semifir.apicinema.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Taille et coût CPU d'une List<SeanceDTO> de 10 000 éléments en JSON, CBOR et Smile, avec ou sans gzip.
+ * Les tailles sont affichées au setup, le temps d'écriture est la mesure JMH.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatBenchmark {
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private ObjectMapper objectMapper;
+    private List<SeanceDTO> seances;
+
+    @Setup
+    public void setup() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if ("cbor".equals(this.format)) {
+            builder.factory(new CBORFactory());
+        } else if ("smile".equals(this.format)) {
+            builder.factory(new SmileFactory());
+        }
+        this.objectMapper = builder.build();
+        this.seances = Fixtures.seanceDTOs(this.size);
+        System.out.printf("%n%s%s, %d séances : %d octets%n",
+                this.format, this.gzip ? " + gzip" : "", this.size, this.write().length);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        if (this.gzip) {
+            try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                this.objectMapper.writeValue(out, this.seances);
+            }
+        } else {
+            this.objectMapper.writeValue(bytes, this.seances);
+        }
+        return bytes.toByteArray();
+    }
+}
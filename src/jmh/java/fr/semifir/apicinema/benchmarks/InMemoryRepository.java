@@ -0,0 +1,72 @@
+package fr.semifir.apicinema.benchmarks;
+
+import org.springframework.data.domain.Pageable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Remplaçant en mémoire d'un MongoRepository, trié par id comme Mongo,
+ * pour mesurer les services sans aller-retour réseau.
+ * Seules les méthodes de lecture utilisées par les services sont implémentées.
+ */
+final class InMemoryRepository implements InvocationHandler {
+
+    private final NavigableMap<String, Object> documents;
+
+    private InMemoryRepository(Map<String, ?> documents) {
+        this.documents = new TreeMap<>(documents);
+    }
+
+    static <R> R of(Class<R> repositoryType, Map<String, ?> documents) {
+        return repositoryType.cast(Proxy.newProxyInstance(
+                repositoryType.getClassLoader(),
+                new Class<?>[]{repositoryType},
+                new InMemoryRepository(documents)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "findAll":
+                return new ArrayList<>(this.documents.values());
+            case "findAllBy":
+                return limit(this.documents.values(), (Pageable) args[0]);
+            case "findByIdGreaterThan":
+                return limit(this.documents.tailMap((String) args[0], false).values(), (Pageable) args[1]);
+            case "findById":
+                return Optional.ofNullable(this.documents.get(args[0]));
+            case "streamAllBy":
+                return new ArrayList<>(this.documents.values()).stream();
+            case "count":
+                return (long) this.documents.size();
+            case "toString":
+                return "InMemoryRepository" + this.documents.keySet();
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private static List<Object> limit(Collection<Object> values, Pageable pageable) {
+        List<Object> page = new ArrayList<>(Math.min(values.size(), pageable.getPageSize()));
+        for (Object value : values) {
+            if (page.size() == pageable.getPageSize()) {
+                break;
+            }
+            page.add(value);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,96 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SpecializedEntityMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion entité <-> DTO, ModelMapper contre les mappers spécialisés
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"modelmapper", "specialized"})
+    public String mapper;
+
+    private EntityMapper entityMapper;
+    private Cinema cinema;
+    private Salle salle;
+    private Seance seance;
+    private Film film;
+    private CinemaDTO cinemaDTO;
+    private SalleDTO salleDTO;
+    private SeanceDTO seanceDTO;
+    private FilmDTO filmDTO;
+
+    @Setup
+    public void setup() {
+        EntityMapper reflective = new ModelMapperEntityMapper(new ModelMapper());
+        this.entityMapper = "modelmapper".equals(mapper) ? reflective : new SpecializedEntityMapper(reflective);
+        this.film = Fixtures.film(1);
+        this.seance = this.film.getSeance();
+        this.salle = this.seance.getSalle();
+        this.cinema = this.salle.getCinema();
+        this.cinemaDTO = this.entityMapper.map(this.cinema, CinemaDTO.class);
+        this.salleDTO = this.entityMapper.map(this.salle, SalleDTO.class);
+        this.seanceDTO = this.entityMapper.map(this.seance, SeanceDTO.class);
+        this.filmDTO = this.entityMapper.map(this.film, FilmDTO.class);
+    }
+
+    @Benchmark
+    public CinemaDTO cinemaToDTO() {
+        return this.entityMapper.map(this.cinema, CinemaDTO.class);
+    }
+
+    @Benchmark
+    public SalleDTO salleToDTO() {
+        return this.entityMapper.map(this.salle, SalleDTO.class);
+    }
+
+    @Benchmark
+    public SeanceDTO seanceToDTO() {
+        return this.entityMapper.map(this.seance, SeanceDTO.class);
+    }
+
+    @Benchmark
+    public FilmDTO filmToDTO() {
+        return this.entityMapper.map(this.film, FilmDTO.class);
+    }
+
+    @Benchmark
+    public Cinema cinemaToEntity() {
+        return this.entityMapper.map(this.cinemaDTO, Cinema.class);
+    }
+
+    @Benchmark
+    public Salle salleToEntity() {
+        return this.entityMapper.map(this.salleDTO, Salle.class);
+    }
+
+    @Benchmark
+    public Seance seanceToEntity() {
+        return this.entityMapper.map(this.seanceDTO, Seance.class);
+    }
+
+    @Benchmark
+    public Film filmToEntity() {
+        return this.entityMapper.map(this.filmDTO, Film.class);
+    }
+}
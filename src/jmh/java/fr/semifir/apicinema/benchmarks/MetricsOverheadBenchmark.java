@@ -0,0 +1,128 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SpecializedEntityMapper;
+import fr.semifir.apicinema.mappers.TimedEntityMapper;
+import fr.semifir.apicinema.metrics.CallMetrics;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.services.CinemaService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Surcoût des métriques : un findByID servi par le cache et une conversion Cinema -> CinemaDTO,
+ * nus puis instrumentés (CallMetrics, TimedEntityMapper) avec un registre Prometheus et ses histogrammes.
+ *
+ * main() lance les mesures et échoue si un appel instrumenté coûte plus que le budget
+ * (-Dmetrics.budget=1000, en nanosecondes) : c'est l'exécution check-metrics-overhead du profil benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    private static final int SIZE = 1000;
+
+    private CinemaService service;
+    private CinemaService timedService;
+    private EntityMapper mapper;
+    private EntityMapper timedMapper;
+    private Cinema cinema;
+    private String[] ids;
+
+    @Setup
+    public void setup() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        // Comme management.metrics.distribution.percentiles-histogram.api.*=true
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+            }
+        });
+
+        Map<String, Cinema> cinemas = new HashMap<>();
+        for (int i = 0; i < SIZE; i++) {
+            Cinema cinema = Fixtures.cinema(i);
+            cinemas.put(cinema.getId(), cinema);
+        }
+        this.ids = cinemas.keySet().toArray(new String[0]);
+        this.cinema = cinemas.get(this.ids[0]);
+
+        this.mapper = new SpecializedEntityMapper(new ModelMapperEntityMapper(new ModelMapper()));
+        this.timedMapper = new TimedEntityMapper(this.mapper, registry);
+        this.service = new CinemaService(
+                InMemoryRepository.of(CinemaRepository.class, cinemas),
+                new EntityCache<>("cinema", 10_000, Duration.ofMinutes(10)),
+                null, // lectures seulement : les versions ne servent qu'aux écritures
+                this.mapper,
+                null); // lectures seulement : pas de PATCH ni de PUT sans version
+        AspectJProxyFactory factory = new AspectJProxyFactory(this.service);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new CallMetrics(registry));
+        this.timedService = factory.getProxy();
+    }
+
+    @Benchmark
+    public Optional<CinemaDTO> findByID() {
+        return this.service.findByID(this.ids[ThreadLocalRandom.current().nextInt(this.ids.length)]);
+    }
+
+    @Benchmark
+    public Optional<CinemaDTO> timedFindByID() {
+        return this.timedService.findByID(this.ids[ThreadLocalRandom.current().nextInt(this.ids.length)]);
+    }
+
+    @Benchmark
+    public CinemaDTO map() {
+        return this.mapper.map(this.cinema, CinemaDTO.class);
+    }
+
+    @Benchmark
+    public CinemaDTO timedMap() {
+        return this.timedMapper.map(this.cinema, CinemaDTO.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        long budget = Long.getLong("metrics.budget", 1000);
+        Map<String, Double> scores = new HashMap<>();
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(MetricsOverheadBenchmark.class.getName())
+                .build()).run();
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            scores.put(benchmark.substring(benchmark.lastIndexOf('.') + 1), result.getPrimaryResult().getScore());
+        }
+        double service = scores.get("timedFindByID") - scores.get("findByID");
+        double mapping = scores.get("timedMap") - scores.get("map");
+        System.out.printf("%nSurcoût par appel : service %.0f ns, mapper %.0f ns (budget %d ns)%n", service, mapping, budget);
+        if (service > budget || mapping > budget) {
+            throw new IllegalStateException("Surcoût des métriques au-delà du budget de " + budget + " ns par appel");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package fr.semifir.apicinema.benchmarks;
+
+import fr.semifir.apicinema.reservations.SeatMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit de SeatMap quand tous les threads se disputent les mêmes 8 places : claim puis release de 2 places voisines.
+ * Remplace la mesure qui était affichée par SeatMapTest, le test ne vérifiant plus que l'absence de double réservation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(16)
+@Fork(1)
+public class SeatMapBenchmark {
+
+    private SeatMap seatMap;
+
+    @Setup
+    public void setup() {
+        this.seatMap = new SeatMap(300);
+    }
+
+    @Benchmark
+    public boolean contended() {
+        int first = 60 + ThreadLocalRandom.current().nextInt(7);
+        int[] seats = {first, first + 1};
+        if (!this.seatMap.claim(seats)) {
+            return false;
+        }
+        this.seatMap.release(seats);
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package fr.semifir.apicinema.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sérialisation Jackson d'une List<SeanceDTO> avec Salle et Cinema imbriqués,
+ * avec la même configuration que l'ObjectMapper de Spring Boot
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<SeanceDTO> seances;
+
+    @Setup
+    public void setup() {
+        this.objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        this.seances = Fixtures.seanceDTOs(this.size);
+    }
+
+    @Benchmark
+    public byte[] writeSeances() throws JsonProcessingException {
+        return this.objectMapper.writeValueAsBytes(this.seances);
+    }
+}
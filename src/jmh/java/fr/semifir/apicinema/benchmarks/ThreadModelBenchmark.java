@@ -0,0 +1,101 @@
+package fr.semifir.apicinema.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tomcat servi par son pool de 200 threads, ou par un thread virtuel par requête (VirtualThreadConfiguration),
+ * face à concurrency requêtes simultanées qui bloquent chacune DELAY_MS, comme une lecture Mongo.
+ * Une opération = toutes les requêtes envoyées en même temps puis attendues : avec le pool,
+ * elles passent par vagues de 200, avec les threads virtuels toutes attendent en parallèle.
+ * 10 000 connexions ouvertes à la fois : prévoir ulimit -n au-delà de 20 000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    private static final long DELAY_MS = 50;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000", "10000"})
+    public int concurrency;
+
+    private WebServer server;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @Setup(Level.Trial)
+    public void start() {
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        factory.addConnectorCustomizers(connector -> {
+            // Toutes les connexions sont acceptées, seule l'exécution des requêtes diffère
+            connector.setProperty("maxConnections", String.valueOf(2 * this.concurrency));
+            connector.setProperty("acceptCount", String.valueOf(this.concurrency));
+        });
+        if ("virtual".equals(this.threads)) {
+            factory.addProtocolHandlerCustomizers(protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor()));
+        }
+        this.server = factory.getWebServer(context -> context.addServlet("slow", new SlowServlet()).addMapping("/slow"));
+        this.server.start();
+
+        this.clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(this.clientExecutor)
+                .build();
+        this.request = HttpRequest.newBuilder(URI.create("http://localhost:" + this.server.getPort() + "/slow"))
+                .timeout(Duration.ofMinutes(1))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        this.server.stop();
+        this.clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int slowRequests() {
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[this.concurrency];
+        for (int i = 0; i < this.concurrency; i++) {
+            responses[i] = this.client.sendAsync(this.request, HttpResponse.BodyHandlers.discarding());
+        }
+        CompletableFuture.allOf(responses).join();
+        return responses.length;
+    }
+
+    private static class SlowServlet extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            try {
+                Thread.sleep(DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            response.getWriter().write("ok");
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package fr.semifir.apicinema.caches;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invalidation des EntityCache de toutes les instances : chaque instance suit le change stream
+ * des collections cachées et retire de son cache les documents modifiés ou supprimés, où que l'écriture ait eu lieu.
+ *
+ * Le resume token est conservé en base par instance (collection cache_resume_token) : après une coupure
+ * ou un redémarrage, le flux reprend là où il s'était arrêté. Si la reprise est impossible (oplog dépassé),
+ * les caches sont vidés, des événements ayant pu être perdus. Tant que le flux est coupé,
+ * seule l'expiration (api.cache.expire-after-write) borne l'ancienneté des entrées.
+ * Les change streams demandent un replica set : sur un mongod seul, l'invalidation reste locale.
+ */
+public class ChangeStreamInvalidator implements MeterBinder {
+
+    static final String TOKENS = "cache_resume_token";
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeStreamInvalidator.class);
+
+    /**
+     * Codes d'erreur Mongo : pas de replica set, historique perdu, resume token invalide
+     */
+    private static final int NOT_A_REPLICA_SET = 40573;
+    private static final int HISTORY_LOST = 286;
+    private static final int INVALID_RESUME_TOKEN = 260;
+
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    /**
+     * Le resume token est écrit au plus une fois par intervalle
+     */
+    private static final long TOKEN_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    MongoTemplate template;
+
+    Map<String, EntityCache<?>> caches = new HashMap<>();
+
+    String node;
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread thread;
+    private BsonDocument token;
+    private BsonDocument savedToken;
+    private long savedAt;
+    private final LongAdder events = new LongAdder();
+
+    /**
+     * @param template
+     * @param caches caches à invalider, chacun nommé comme sa collection
+     * @param node nom de l'instance, clé de son resume token
+     */
+    public ChangeStreamInvalidator(MongoTemplate template, Collection<EntityCache<?>> caches, String node) {
+        this.template = template;
+        caches.forEach(cache -> this.caches.put(cache.getName(), cache));
+        this.node = node;
+    }
+
+    public synchronized void start() {
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+        this.thread = new Thread(this::run, "cache-invalidation");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Arrête le flux dans la seconde (maxAwaitTime) et enregistre le dernier resume token
+     * @throws InterruptedException
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!this.running) {
+            return;
+        }
+        this.running = false;
+        this.thread.join(TimeUnit.SECONDS.toMillis(5));
+        this.saveToken(true);
+    }
+
+    public boolean isConnected() {
+        return this.connected;
+    }
+
+    private void run() {
+        try {
+            BsonDocument saved = this.tokens().find(Filters.eq("_id", this.node)).first();
+            this.token = saved == null ? null : saved.getDocument("token");
+            this.savedToken = this.token;
+        } catch (MongoException e) {
+            log.warn("Resume token illisible, le change stream part de maintenant : {}", e.getMessage());
+        }
+        Duration backoff = MIN_BACKOFF;
+        while (this.running) {
+            try {
+                this.watch();
+                // Flux invalidé par le serveur, ou stop()
+                backoff = MIN_BACKOFF;
+                continue;
+            } catch (MongoServerException e) {
+                if (e.getCode() == NOT_A_REPLICA_SET) {
+                    log.warn("Change streams indisponibles sans replica set, les caches ne sont invalidés que localement");
+                    this.running = false;
+                    return;
+                }
+                if (e.getCode() == HISTORY_LOST || e.getCode() == INVALID_RESUME_TOKEN) {
+                    log.warn("Reprise du change stream impossible, caches vidés : {}", e.getMessage());
+                    this.clearAll();
+                    this.token = null;
+                    backoff = MIN_BACKOFF;
+                    continue;
+                }
+                log.warn("Change stream interrompu, nouvel essai dans {} s : {}", backoff.getSeconds(), e.getMessage());
+            } catch (MongoException e) {
+                log.warn("Change stream interrompu, nouvel essai dans {} s : {}", backoff.getSeconds(), e.getMessage());
+            } finally {
+                this.connected = false;
+            }
+            try {
+                Thread.sleep(backoff.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            backoff = backoff.multipliedBy(2).compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : backoff.multipliedBy(2);
+        }
+    }
+
+    /**
+     * Suit le flux jusqu'à stop(), en avançant le resume token même sans événement
+     */
+    private void watch() {
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.and(
+                        Filters.ne("operationType", "insert"),
+                        Filters.or(Filters.in("ns.coll", this.caches.keySet()), Filters.exists("ns.coll", false))
+                )),
+                // Seul l'id du document compte : pas de fullDocument, ni de updateDescription
+                Aggregates.project(Projections.include("operationType", "ns", "documentKey"))
+        );
+        ChangeStreamIterable<Document> stream = this.template.getDb().watch(pipeline).maxAwaitTime(1, TimeUnit.SECONDS);
+        if (this.token != null) {
+            stream = stream.resumeAfter(this.token);
+        }
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            if (cursor.getResumeToken() != null) {
+                this.token = cursor.getResumeToken();
+            }
+            this.connected = true;
+            while (this.running) {
+                ChangeStreamDocument<Document> event = cursor.tryNext();
+                if (event != null && this.handle(event)) {
+                    // invalidate : le flux est fermé par le serveur, on repart de maintenant
+                    this.token = null;
+                    return;
+                }
+                if (cursor.getResumeToken() != null) {
+                    this.token = cursor.getResumeToken();
+                }
+                this.saveToken(false);
+            }
+        }
+    }
+
+    /**
+     * @param event
+     * @return vrai si le flux est invalidé
+     */
+    private boolean handle(ChangeStreamDocument<Document> event) {
+        this.events.increment();
+        OperationType type = event.getOperationType();
+        switch (type) {
+            case UPDATE:
+            case REPLACE:
+            case DELETE:
+                EntityCache<?> cache = this.caches.get(event.getNamespace().getCollectionName());
+                if (cache != null) {
+                    cache.invalidate(id(event.getDocumentKey().get("_id")));
+                }
+                return false;
+            case DROP:
+            case RENAME:
+                EntityCache<?> dropped = this.caches.get(event.getNamespace().getCollectionName());
+                if (dropped != null) {
+                    dropped.invalidateAll();
+                }
+                return false;
+            case DROP_DATABASE:
+            case INVALIDATE:
+                this.clearAll();
+                return type == OperationType.INVALIDATE;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Les ids des entités sont des String : hexadécimal pour un ObjectId
+     */
+    static String id(BsonValue id) {
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private void clearAll() {
+        this.caches.values().forEach(EntityCache::invalidateAll);
+    }
+
+    private void saveToken(boolean force) {
+        BsonDocument token = this.token;
+        long now = System.nanoTime();
+        if (token == null || token.equals(this.savedToken) || (!force && now - this.savedAt < TOKEN_INTERVAL)) {
+            return;
+        }
+        try {
+            this.tokens().replaceOne(
+                    Filters.eq("_id", this.node),
+                    new BsonDocument("_id", new BsonString(this.node))
+                            .append("token", token)
+                            .append("at", new BsonDateTime(System.currentTimeMillis())),
+                    new ReplaceOptions().upsert(true));
+            this.savedToken = token;
+            this.savedAt = now;
+        } catch (MongoException e) {
+            log.warn("Resume token non enregistré : {}", e.getMessage());
+        }
+    }
+
+    private MongoCollection<BsonDocument> tokens() {
+        return this.template.getDb().getCollection(TOKENS, BsonDocument.class);
+    }
+
+    /**
+     * Expose cache.change_stream.connected (0 : invalidation locale et TTL seulement) et cache.change_stream.events
+     * @param registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cache.change_stream.connected", this, invalidator -> invalidator.connected ? 1 : 0)
+                .description("Change stream d'invalidation ouvert")
+                .register(registry);
+        FunctionCounter.builder("cache.change_stream.events", this.events, LongAdder::sum)
+                .description("Événements reçus du change stream")
+                .register(registry);
+    }
+}
@@ -0,0 +1,157 @@
+package fr.semifir.apicinema.caches;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache borné (taille + TTL) d'entités par id, devant un repository.
+ *
+ * Une lecture qui charge depuis Mongo pendant qu'une écriture invalide le même id
+ * ne doit pas remettre l'ancienne valeur en cache : chaque invalidation incrémente
+ * une époque, et le lecteur retire ce qu'il vient d'ajouter si l'époque a changé
+ * pendant son chargement. Les écritures doivent invalider APRÈS l'écriture en base.
+ */
+public class EntityCache<T> implements MeterBinder {
+
+    private final String name;
+    private final Cache<String, T> cache;
+    private final AtomicLong epoch = new AtomicLong();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Version de la collection (CollectionVersions) dont le cache est à jour, -1 avant le premier sync
+     */
+    private final AtomicLong version = new AtomicLong(-1);
+
+    public EntityCache(String name, long maximumSize, Duration expireAfterWrite) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Je lis une entité en cache, ou je la charge avec loader
+     * @param id
+     * @param loader lecture en base
+     * @return
+     */
+    public Optional<T> get(String id, Function<String, Optional<T>> loader) {
+        T cached = this.cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long before = this.epoch.get();
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(entity -> {
+            this.cache.put(id, entity);
+            if (this.epoch.get() != before) {
+                this.cache.invalidate(id);
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Je lis plusieurs entités, les absentes sont chargées en un seul appel à loader
+     * @param ids
+     * @param loader lecture en base des ids absents du cache
+     * @return les entités trouvées, par id
+     */
+    public Map<String, T> getAll(Set<String> ids, Function<Set<String>, Map<String, T>> loader) {
+        Map<String, T> found = new HashMap<>(this.cache.getAllPresent(ids));
+        if (found.size() == ids.size()) {
+            return found;
+        }
+        Set<String> missing = new HashSet<>(ids);
+        missing.removeAll(found.keySet());
+        long before = this.epoch.get();
+        Map<String, T> loaded = loader.apply(missing);
+        this.cache.putAll(loaded);
+        if (this.epoch.get() != before) {
+            this.cache.invalidateAll(loaded.keySet());
+        }
+        found.putAll(loaded);
+        return found;
+    }
+
+    /**
+     * À appeler après l'écriture en base de l'entité
+     * @param id
+     */
+    public void invalidate(String id) {
+        this.epoch.incrementAndGet();
+        this.cache.invalidate(id);
+        this.invalidations.increment();
+    }
+
+    public void invalidateAll(Collection<String> ids) {
+        this.epoch.incrementAndGet();
+        this.cache.invalidateAll(ids);
+        this.invalidations.add(ids.size());
+    }
+
+    /**
+     * Vide le cache, quand des écritures ont pu être manquées
+     */
+    public void invalidateAll() {
+        this.epoch.incrementAndGet();
+        this.invalidations.add(this.cache.estimatedSize());
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * Vide le cache si la collection a été écrite depuis la dernière version vue : ce qui est servi
+     * depuis le cache correspond alors à l'ETag calculé avec cette version, sans attendre le change stream
+     * @param version version courante de la collection
+     */
+    public void sync(long version) {
+        if (this.version.getAndAccumulate(version, Math::max) < version) {
+            this.invalidateAll();
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public CacheStats stats() {
+        return this.cache.stats();
+    }
+
+    public long invalidationCount() {
+        return this.invalidations.sum();
+    }
+
+    /**
+     * Expose cache.gets (hit/miss), cache.evictions, cache.size... et cache.invalidations
+     * @param registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(this.cache, this.name, Tags.empty()).bindTo(registry);
+        FunctionCounter.builder("cache.invalidations", this.invalidations, LongAdder::sum)
+                .tag("cache", this.name)
+                .description("Invalidations après écriture")
+                .register(registry);
+    }
+}
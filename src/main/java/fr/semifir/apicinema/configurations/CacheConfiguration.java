@@ -0,0 +1,61 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.caches.ChangeStreamInvalidator;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+@Profile("!reactive")
+public class CacheConfiguration {
+
+    @Value("${api.cache.maximum-size:10000}")
+    long maximumSize;
+
+    @Value("${api.cache.expire-after-write:10m}")
+    Duration expireAfterWrite;
+
+    @Bean
+    public EntityCache<Cinema> cinemaCache() {
+        return new EntityCache<>("cinema", maximumSize, expireAfterWrite);
+    }
+
+    @Bean
+    public EntityCache<Salle> salleCache() {
+        return new EntityCache<>("salle", maximumSize, expireAfterWrite);
+    }
+
+    @Bean
+    public EntityCache<Seance> seanceCache() {
+        return new EntityCache<>("seance", maximumSize, expireAfterWrite);
+    }
+
+    @Bean
+    public EntityCache<Film> filmCache() {
+        return new EntityCache<>("film", maximumSize, expireAfterWrite);
+    }
+
+    /**
+     * Invalide les caches de cette instance après les écritures faites sur les autres
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "api.cache.change-stream.enabled", matchIfMissing = true)
+    public ChangeStreamInvalidator changeStreamInvalidator(
+            MongoTemplate template,
+            List<EntityCache<?>> caches,
+            @Value("${api.cache.node}") String node
+    ) {
+        return new ChangeStreamInvalidator(template, caches, node);
+    }
+}
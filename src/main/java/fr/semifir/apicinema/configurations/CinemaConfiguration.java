@@ -1,16 +1,28 @@
 package fr.semifir.apicinema.configurations;
 
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
 import fr.semifir.apicinema.services.CinemaService;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 @Configuration
+@Profile("!reactive")
 public class CinemaConfiguration {
 
     @Bean
-    public CinemaService cinemaService(CinemaRepository repository, ModelMapper mapper) {
-        return new CinemaService(repository, mapper);
+    public CinemaService cinemaService(
+            CinemaRepository repository,
+            EntityCache<Cinema> cinemaCache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            PatchWriter patches
+    ) {
+        return new CinemaService(repository, cinemaCache, versions, mapper, patches);
     }
 }
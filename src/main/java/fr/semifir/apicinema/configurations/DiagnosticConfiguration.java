@@ -0,0 +1,32 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.repositories.IndexManager;
+import fr.semifir.apicinema.repositories.QueryExplainer;
+import fr.semifir.apicinema.services.DiagnosticService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+@Configuration
+@Profile("!reactive")
+public class DiagnosticConfiguration {
+
+    /**
+     * Les index sont créés puis vérifiés avant que l'application ne réponde
+     */
+    @Bean(initMethod = "ensureIndexes")
+    public IndexManager indexManager(MongoTemplate template) {
+        return new IndexManager(template);
+    }
+
+    @Bean
+    public QueryExplainer queryExplainer(MongoTemplate template) {
+        return new QueryExplainer(template);
+    }
+
+    @Bean
+    public DiagnosticService diagnosticService(IndexManager indexManager, QueryExplainer explainer) {
+        return new DiagnosticService(indexManager, explainer);
+    }
+}
@@ -1,18 +1,34 @@
 package fr.semifir.apicinema.configurations;
 
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.GraphReader;
 import fr.semifir.apicinema.repositories.FilmRepository;
 import fr.semifir.apicinema.repositories.SeanceRepository;
 import fr.semifir.apicinema.services.FilmService;
 import fr.semifir.apicinema.services.SeanceService;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 @Configuration
+@Profile("!reactive")
 public class FilmConfiguration {
 
     @Bean
-    public FilmService filmService(FilmRepository repository, ModelMapper mapper) {
-        return new FilmService(repository, mapper);
+    public FilmService filmService(
+            FilmRepository repository,
+            GraphReader reader,
+            BulkWriter writer,
+            EntityCache<Film> filmCache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            PatchWriter patches
+    ) {
+        return new FilmService(repository, reader, writer, filmCache, versions, mapper, patches);
     }
 }
@@ -0,0 +1,36 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.metrics.CallMetrics;
+import fr.semifir.apicinema.metrics.MongoCommandListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Timers des contrôleurs, services et repositories, exposés avec le reste sur /actuator/prometheus
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public CallMetrics callMetrics(MeterRegistry registry) {
+        return new CallMetrics(registry);
+    }
+
+    @Bean
+    public MongoCommandListener mongoCommandListener(@Value("${api.mongo.slow-command-threshold}") Duration threshold) {
+        return new MongoCommandListener(threshold);
+    }
+
+    /**
+     * Branché sur le client synchrone comme sur le client réactif
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer commandListenerCustomizer(MongoCommandListener listener) {
+        return builder -> builder.addCommandListener(listener);
+    }
+}
@@ -0,0 +1,70 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.reactive.ReactiveCinemaRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveFilmRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveGraphReader;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSalleRepository;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSeanceRepository;
+import fr.semifir.apicinema.services.reactive.ReactiveCinemaService;
+import fr.semifir.apicinema.services.reactive.ReactiveFilmService;
+import fr.semifir.apicinema.services.reactive.ReactiveSalleService;
+import fr.semifir.apicinema.services.reactive.ReactiveSeanceService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+
+/**
+ * Services du profil reactive (voir application-reactive.properties)
+ * Ils ne couvrent que le CRUD et les lectures (?fields=, ?expand=, curseurs) de l'API MVC :
+ * recherche, lots, PATCH, réservations, ETag et écriture différée n'existent qu'en MVC
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfiguration {
+
+    @Bean
+    public ReactiveGraphReader reactiveGraphReader(ReactiveMongoTemplate template) {
+        return new ReactiveGraphReader(template);
+    }
+
+    @Bean
+    public ReactiveCinemaService reactiveCinemaService(
+            ReactiveCinemaRepository repository,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+    ) {
+        return new ReactiveCinemaService(repository, mapper, template);
+    }
+
+    @Bean
+    public ReactiveSalleService reactiveSalleService(
+            ReactiveSalleRepository repository,
+            ReactiveGraphReader reader,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+    ) {
+        return new ReactiveSalleService(repository, reader, mapper, template);
+    }
+
+    @Bean
+    public ReactiveSeanceService reactiveSeanceService(
+            ReactiveSeanceRepository repository,
+            ReactiveGraphReader reader,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+    ) {
+        return new ReactiveSeanceService(repository, reader, mapper, template);
+    }
+
+    @Bean
+    public ReactiveFilmService reactiveFilmService(
+            ReactiveFilmRepository repository,
+            ReactiveGraphReader reader,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+    ) {
+        return new ReactiveFilmService(repository, reader, mapper, template);
+    }
+}
@@ -0,0 +1,24 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.controllers.FieldsFilter;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Pendant de WebConfiguration pour le profil reactive, chargée aussi par les tests @WebFluxTest
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfiguration implements WebFluxConfigurer {
+
+    /**
+     * Filtre ?fields= sur les DTO des ressources, comme côté MVC
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsFilterCustomizer() {
+        return FieldsFilter.customizer();
+    }
+}
@@ -0,0 +1,77 @@
+package fr.semifir.apicinema.configurations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.SeatCounter;
+import fr.semifir.apicinema.repositories.WriteBehindQueues;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+
+/**
+ * Accès Mongo synchrones des services, absents du profil reactive
+ */
+@Configuration
+@Profile("!reactive")
+public class RepositoryConfiguration {
+
+    @Bean
+    public GraphReader graphReader(
+            MongoTemplate template,
+            EntityCache<Cinema> cinemaCache,
+            EntityCache<Salle> salleCache,
+            EntityCache<Seance> seanceCache,
+            EntityCache<Film> filmCache
+    ) {
+        return new GraphReader(template, cinemaCache, salleCache, seanceCache, filmCache);
+    }
+
+    @Bean
+    public BulkWriter bulkWriter(MongoTemplate template, @Value("${api.batch.chunk-size:1000}") int chunkSize) {
+        return new BulkWriter(template, chunkSize);
+    }
+
+    /**
+     * Avec api.write-behind.enabled, les PUT sans version sont regroupés par id et écrits en bulkWrite,
+     * ceux encore en attente le sont à l'arrêt (close). Ces écritures sont au mieux : le PUT répond 202
+     */
+    @Bean
+    public WriteBehindQueues writeBehindQueues(
+            @Value("${api.write-behind.enabled:false}") boolean enabled,
+            @Value("${api.write-behind.capacity:10000}") int capacity,
+            @Value("${api.write-behind.window:50ms}") Duration window,
+            @Value("${api.write-behind.max-attempts:3}") int maxAttempts,
+            ObjectProvider<MeterRegistry> registry
+    ) {
+        return new WriteBehindQueues(enabled, capacity, window, maxAttempts, registry.getIfAvailable());
+    }
+
+    @Bean
+    public PatchWriter patchWriter(MongoTemplate template, ObjectMapper objectMapper) {
+        return new PatchWriter(template, objectMapper);
+    }
+
+    @Bean
+    public SeatCounter seatCounter(MongoTemplate template) {
+        return new SeatCounter(template);
+    }
+
+    @Bean
+    public CollectionVersions collectionVersions(MongoTemplate template) {
+        return new CollectionVersions(template);
+    }
+}
@@ -0,0 +1,40 @@
+package fr.semifir.apicinema.configurations;
+
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.ReservationRepository;
+import fr.semifir.apicinema.repositories.ReservationWriter;
+import fr.semifir.apicinema.services.ReservationService;
+import fr.semifir.apicinema.services.SeanceService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
+import java.time.Duration;
+
+@Configuration
+@Profile("!reactive")
+@EnableScheduling
+public class ReservationConfiguration {
+
+    @Bean
+    public ReservationService reservationService(
+            ReservationRepository repository,
+            ReservationWriter writer,
+            GraphReader reader,
+            SeanceService seanceService,
+            EntityMapper mapper,
+            @Value("${api.reservation.hold-timeout:5m}") Duration holdTimeout
+    ) {
+        return new ReservationService(repository, writer, reader, seanceService, mapper, holdTimeout, Clock.systemUTC());
+    }
+
+    @Bean
+    public ReservationWriter reservationWriter(MongoTemplate template) {
+        return new ReservationWriter(template);
+    }
+}
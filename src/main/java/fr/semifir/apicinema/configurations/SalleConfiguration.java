@@ -1,18 +1,38 @@
 package fr.semifir.apicinema.configurations;
 
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Salle;
 import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.GraphReader;
 import fr.semifir.apicinema.repositories.SalleRepository;
 import fr.semifir.apicinema.services.CinemaService;
 import fr.semifir.apicinema.services.SalleService;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.WriteBehindQueue;
+import fr.semifir.apicinema.repositories.WriteBehindQueues;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 @Configuration
+@Profile("!reactive")
 public class SalleConfiguration {
 
-    @Bean
-    public SalleService salleService(SalleRepository repository, ModelMapper mapper) {
-        return new SalleService(repository, mapper);
+    @Bean(destroyMethod = "close")
+    public SalleService salleService(
+            SalleRepository repository,
+            GraphReader reader,
+            BulkWriter writer,
+            EntityCache<Salle> salleCache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            PatchWriter patches,
+            WriteBehindQueues queues
+    ) {
+        WriteBehindQueue<Salle> queue = queues.create("salle");
+        return new SalleService(repository, reader, writer, salleCache, versions, mapper, queue, patches);
     }
 }
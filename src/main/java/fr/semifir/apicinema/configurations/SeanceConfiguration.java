@@ -1,16 +1,38 @@
 package fr.semifir.apicinema.configurations;
 
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.GraphReader;
 import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.repositories.SeatCounter;
 import fr.semifir.apicinema.services.SeanceService;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.WriteBehindQueue;
+import fr.semifir.apicinema.repositories.WriteBehindQueues;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 @Configuration
+@Profile("!reactive")
 public class SeanceConfiguration {
 
-    @Bean
-    public SeanceService seanceService(SeanceRepository repository, ModelMapper mapper) {
-        return new SeanceService(repository, mapper);
+    @Bean(destroyMethod = "close")
+    public SeanceService seanceService(
+            SeanceRepository repository,
+            GraphReader reader,
+            BulkWriter writer,
+            SeatCounter counter,
+            EntityCache<Seance> seanceCache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            PatchWriter patches,
+            WriteBehindQueues queues
+    ) {
+        WriteBehindQueue<Seance> queue = queues.create("seance");
+        return new SeanceService(repository, reader, writer, counter, seanceCache, versions, mapper, queue, patches);
     }
 }
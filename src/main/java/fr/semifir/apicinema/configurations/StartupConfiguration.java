@@ -0,0 +1,46 @@
+package fr.semifir.apicinema.configurations;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.caches.ChangeStreamInvalidator;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.MappingWarmup;
+import fr.semifir.apicinema.repositories.IndexManager;
+import fr.semifir.apicinema.services.ReservationService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Démarrage rapide (profil prod) : avec spring.main.lazy-initialization, les beans ne sont créés
+ * qu'à leur premier usage, sauf ceux qui doivent travailler dès le démarrage
+ */
+@Configuration
+public class StartupConfiguration {
+
+    /**
+     * Beans créés au démarrage même en initialisation paresseuse : les index sont vérifiés avant de répondre,
+     * l'invalidation des caches écoute dès le départ, et un bean @Scheduled jamais créé ne serait jamais planifié
+     * Méthode static : le filtre est lu par un BeanFactoryPostProcessor, avant cette configuration
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                IndexManager.class,
+                ChangeStreamInvalidator.class,
+                ReservationService.class
+        );
+    }
+
+    /**
+     * Les ApplicationRunner sont toujours créés : le warm-up a lieu même en initialisation paresseuse
+     */
+    @Bean
+    public MappingWarmup mappingWarmup(
+            EntityMapper mapper,
+            ObjectMapper objectMapper,
+            @Value("${api.startup.warmup-iterations:0}") int iterations
+    ) {
+        return new MappingWarmup(mapper, objectMapper, iterations);
+    }
+}
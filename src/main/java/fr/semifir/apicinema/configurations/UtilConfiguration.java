@@ -1,13 +1,42 @@
 package fr.semifir.apicinema.configurations;
 
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SpecializedEntityMapper;
+import fr.semifir.apicinema.mappers.TimedEntityMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * Beans communs au profil par défaut et au profil reactive
+ */
 @Configuration
 public class UtilConfiguration {
     @Bean
     public ModelMapper modelMapper() {
         return new ModelMapper();
     }
+
+    /**
+     * api.mapper=specialized (défaut) : mappers écrits à la main, ModelMapper en repli
+     * api.mapper=modelmapper : tout passe par ModelMapper
+     * Dans les deux cas chaque conversion est mesurée (api.mapper)
+     * ModelMapper n'est créé qu'à sa première conversion, pas au démarrage
+     */
+    @Bean
+    public EntityMapper entityMapper(
+            ObjectProvider<ModelMapper> modelMapper,
+            MeterRegistry registry,
+            @Value("${api.mapper:specialized}") String mode
+    ) {
+        EntityMapper reflective = new ModelMapperEntityMapper(modelMapper::getObject);
+        if ("modelmapper".equals(mode)) {
+            return new TimedEntityMapper(reflective, registry);
+        }
+        return new TimedEntityMapper(new SpecializedEntityMapper(reflective), registry);
+    }
 }
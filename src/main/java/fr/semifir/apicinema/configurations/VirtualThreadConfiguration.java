@@ -0,0 +1,54 @@
+package fr.semifir.apicinema.configurations;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mode api.threads.virtual=true : un thread virtuel par requête au lieu du pool Tomcat (200 threads).
+ * Les contrôleurs attendent surtout Mongo, la concurrence est alors bornée par le pool de connexions Mongo,
+ * agrandi en conséquence : au-delà, les requêtes attendent une connexion (max-wait) plutôt qu'un thread.
+ * Voir ThreadModelBenchmark pour la comparaison avec les threads classiques.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "api.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration implements WebMvcConfigurer {
+
+    @Value("${api.threads.virtual.mongo-pool-size:500}")
+    int mongoPoolSize;
+
+    @Value("${api.threads.virtual.mongo-max-wait:5s}")
+    Duration mongoMaxWait;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Réponses NDJSON : le flux est écrit sur un thread virtuel lui aussi
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor()));
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoPoolCustomizer() {
+        return builder -> builder.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(this.mongoPoolSize)
+                .maxWaitTime(this.mongoMaxWait.toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,91 @@
+package fr.semifir.apicinema.configurations;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.controllers.ConditionalGetInterceptor;
+import fr.semifir.apicinema.controllers.FieldsFilter;
+import fr.semifir.apicinema.metrics.QueryStatsFilter;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.stream.Collectors;
+
+/**
+ * Chargée aussi par les tests @WebMvcTest : les beans Mongo y sont absents,
+ * d'où l'ObjectProvider plutôt qu'une injection directe
+ */
+@Configuration
+@Profile("!reactive")
+public class WebConfiguration implements WebMvcConfigurer {
+
+    ObjectProvider<CollectionVersions> versions;
+
+    ObjectProvider<EntityCache<?>> caches;
+
+    public WebConfiguration(ObjectProvider<CollectionVersions> versions, ObjectProvider<EntityCache<?>> caches) {
+        this.versions = versions;
+        this.caches = caches;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        this.versions.ifAvailable(versions -> registry.addInterceptor(
+                new ConditionalGetInterceptor(versions, this.caches.orderedStream().collect(Collectors.toList()))));
+    }
+
+    /**
+     * Commandes Mongo par requête, hors des intercepteurs pour compter aussi le contrôle d'ETag
+     * api.mongo.enforce-query-budget est refusé en prod : le corps y serait déjà envoyé quand le budget échoue
+     */
+    @Bean
+    public QueryStatsFilter queryStatsFilter(
+            ObjectProvider<MeterRegistry> registry,
+            @Value("${api.mongo.enforce-query-budget:false}") boolean enforceBudget,
+            Environment environment
+    ) {
+        if (enforceBudget && environment.acceptsProfiles(Profiles.of("prod"))) {
+            throw new IllegalStateException("api.mongo.enforce-query-budget est réservé aux tests");
+        }
+        return new QueryStatsFilter(registry.getIfAvailable(), enforceBudget);
+    }
+
+    /**
+     * Filtre ?fields= sur les DTO des ressources (FieldsFilter.TYPES), inactif tant que la requête ne le fournit pas
+     * Les autres réponses (réservations, lots, diagnostics) sont toujours écrites en entier
+     * Appliqué aussi aux convertisseurs CBOR et Smile, construits avec le même builder
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsFilterCustomizer() {
+        return FieldsFilter.customizer();
+    }
+
+    /**
+     * application/cbor, avec la configuration spring.jackson.* du JSON
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * application/x-jackson-smile, avec la configuration spring.jackson.* du JSON
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
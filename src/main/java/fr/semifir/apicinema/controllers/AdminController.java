@@ -0,0 +1,31 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.dtos.diagnostic.QueryPlanDTO;
+import fr.semifir.apicinema.services.DiagnosticService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("admin")
+public class AdminController {
+
+    @Autowired
+    DiagnosticService service;
+
+    @GetMapping("explain")
+    public ResponseEntity<List<QueryPlanDTO>> explain() {
+        return ResponseEntity.ok(this.service.explainAll());
+    }
+
+    @GetMapping("indexes")
+    public ResponseEntity<List<String>> missingIndexes() {
+        return ResponseEntity.ok(this.service.missingIndexes());
+    }
+}
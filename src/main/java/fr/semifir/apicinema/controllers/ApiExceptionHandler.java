@@ -0,0 +1,24 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.exceptions.ConflictException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Erreurs communes à tous les controllers, MVC et réactifs
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    /**
+     * Version périmée (POST, PUT, PATCH), places plus disponibles, réservation expirée : 409 sans corps
+     * @param e
+     * @return
+     */
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<Void> conflict(ConflictException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+}
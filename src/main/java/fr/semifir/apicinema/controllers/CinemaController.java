@@ -1,30 +1,70 @@
 package fr.semifir.apicinema.controllers;
 
 import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
 import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.Projection;
 import fr.semifir.apicinema.services.CinemaService;
+import fr.semifir.apicinema.metrics.QueryBudget;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("cinemas")
 public class CinemaController {
 
     @Autowired
     CinemaService service;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * Un cinema n'a ni références ni gros champs : ?fields= ne filtre que la réponse (FieldsResponseBodyAdvice),
+     * il est déclaré ici pour qu'un ?fields= invalide soit refusé en 400 comme sur les autres ressources
+     */
     @GetMapping
-    public List<CinemaDTO> findAll() {
+    @QueryBudget(2)
+    public List<CinemaDTO> findAll(@RequestParam(required = false) Projection fields) {
         return this.service.findAll();
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(required = false) Projection fields) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Ndjson.write(this.service::stream, FieldsFilter.writer(this.objectMapper, fields)));
+    }
+
+    @GetMapping(params = "limit")
+    @QueryBudget(2)
+    public ResponseEntity<PageDTO<CinemaDTO>> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam int limit,
+            @RequestParam(required = false) Projection fields
+    ) {
+        try {
+            return ResponseEntity.ok(this.service.findPage(after, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("{id}")
-    public ResponseEntity<CinemaDTO> findById(@PathVariable String id) {
+    @QueryBudget(2)
+    public ResponseEntity<CinemaDTO> findById(@PathVariable String id, @RequestParam(required = false) Projection fields) {
         Optional<CinemaDTO> cinemaDTO = null;
         try {
             cinemaDTO = this.service.findByID(id);
@@ -44,9 +84,38 @@ public class CinemaController {
         return ResponseEntity.status(HttpStatus.CREATED).body(this.service.save(cinema));
     }
 
+    /**
+     * JSON Merge Patch : seuls les champs donnés sont modifiés, null supprime un champ
+     * Avec "version", le patch échoue (409) si le cinema a changé depuis cette version
+     */
+    @PatchMapping(value = "{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CinemaDTO> patch(@PathVariable String id, @RequestBody JsonNode patch) {
+        try {
+            return ResponseEntity.ok(this.service.patch(id, patch));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping
     public ResponseEntity<Boolean> delete(@RequestBody Cinema cinema) {
         this.service.delete(cinema);
         return ResponseEntity.ok(true);
     }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Long> deleteById(@PathVariable String id) {
+        long deleted = this.service.deleteByIds(List.of(id));
+        if (deleted == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(deleted);
+    }
+
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Long> deleteByIds(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(this.service.deleteByIds(ids));
+    }
 }
@@ -0,0 +1,92 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ETag des GET calculé avant le contrôleur, à partir des versions des collections lues par la réponse
+ * (un film embarque sa séance, sa salle et son cinéma). Si le client a déjà cette version,
+ * la réponse est un 304 sans aucune lecture des documents, ni mapping, ni sérialisation.
+ * Sinon, les caches des collections dont la version a changé sont vidés avant la lecture.
+ */
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    static final Map<String, List<Class<?>>> RESOURCES = Map.of(
+            "cinemas", List.of(Cinema.class),
+            "salles", List.of(Cinema.class, Salle.class),
+            "seances", List.of(Cinema.class, Salle.class, Seance.class),
+            "films", List.of(Cinema.class, Salle.class, Seance.class, Film.class)
+    );
+
+    CollectionVersions versions;
+
+    Map<String, EntityCache<?>> caches = new HashMap<>();
+
+    /**
+     * @param versions
+     * @param caches caches des lectures, chacun nommé comme sa collection
+     */
+    public ConditionalGetInterceptor(CollectionVersions versions, Collection<EntityCache<?>> caches) {
+        this.versions = versions;
+        caches.forEach(cache -> this.caches.put(cache.getName(), cache));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Les réponses NDJSON repassent par ici lors du dispatch asynchrone, l'ETag est déjà posé
+        if (!"GET".equals(request.getMethod()) || request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        List<Class<?>> types = RESOURCES.get(resource(request));
+        if (types == null) {
+            return true;
+        }
+        Map<String, Long> versions = this.versions.get(types);
+        // Une écriture faite sur une autre instance a pu changer la version avant que le change stream
+        // n'invalide le cache local : le corps servi doit être celui de la version de l'ETag
+        versions.forEach((name, version) -> {
+            EntityCache<?> cache = this.caches.get(name);
+            if (cache != null) {
+                cache.sync(version);
+            }
+        });
+        String etag = etag(request, versions);
+        // checkNotModified pose l'en-tête ETag, et répond 304 si If-None-Match correspond
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+
+    /**
+     * ETag fort : même URL, même Accept et mêmes versions donnent exactement le même corps
+     */
+    static String etag(HttpServletRequest request, Map<String, Long> versions) {
+        String key = request.getRequestURI()
+                + '?' + request.getQueryString()
+                + '|' + request.getHeader(HttpHeaders.ACCEPT)
+                + '|' + versions;
+        return '"' + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+
+    private static String resource(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+}
@@ -0,0 +1,117 @@
+package fr.semifir.apicinema.controllers;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.Projection;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Filtre Jackson de ?fields= : n'écrit que les propriétés dont le chemin depuis la racine
+ * (seance.salle.numDeSalle) est gardé par la Projection. Les niveaux de PageDTO ne comptent pas
+ * dans le chemin, ?fields=nom s'applique aussi bien à une liste qu'à une page.
+ */
+public class FieldsFilter extends SimpleBeanPropertyFilter {
+
+    public static final String ID = "fields";
+
+    /**
+     * Classes écrites par les endpoints qui acceptent ?fields= : les DTO des ressources
+     * et les entités qu'ils contiennent. PageDTO n'en fait pas partie, ses niveaux ne comptent pas.
+     */
+    public static final List<Class<?>> TYPES = List.of(
+            CinemaDTO.class, SalleDTO.class, SeanceDTO.class, FilmDTO.class,
+            Cinema.class, Salle.class, Seance.class);
+
+    /**
+     * Mix-in posé sur chacune des TYPES : seules ces classes passent par le filtre ID
+     */
+    @JsonFilter(ID)
+    public abstract static class Mixin { }
+
+    Projection projection;
+
+    public FieldsFilter(Projection projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Filtres par défaut de l'ObjectMapper : sans ?fields=, le filtre ID est absent et tout est écrit
+     * @return
+     */
+    public static FilterProvider defaults() {
+        return new SimpleFilterProvider().setFailOnUnknownId(false);
+    }
+
+    /**
+     * @param projection
+     * @return les filtres d'une réponse limitée à la projection
+     */
+    public static FilterProvider of(Projection projection) {
+        return new SimpleFilterProvider().setFailOnUnknownId(false).addFilter(ID, new FieldsFilter(projection));
+    }
+
+    /**
+     * Mix-ins et filtres par défaut des TYPES, posés sur l'ObjectMapper de Spring MVC comme de WebFlux
+     * @return
+     */
+    public static Jackson2ObjectMapperBuilderCustomizer customizer() {
+        return builder -> {
+            TYPES.forEach(type -> builder.mixIn(type, Mixin.class));
+            builder.filters(defaults());
+        };
+    }
+
+    /**
+     * Writer des réponses NDJSON, qui ne passent pas par les HttpMessageConverter
+     * @param objectMapper
+     * @param projection null pour tous les champs
+     * @return
+     */
+    public static ObjectWriter writer(ObjectMapper objectMapper, Projection projection) {
+        return projection == null ? objectMapper.writer() : objectMapper.writer(of(projection));
+    }
+
+    @Override
+    public void serializeAsField(Object pojo, JsonGenerator gen, SerializerProvider provider, PropertyWriter writer) throws Exception {
+        if (pojo instanceof PageDTO || this.projection.includes(path(gen, writer.getName()))) {
+            writer.serializeAsField(pojo, gen, provider);
+        } else if (!gen.canOmitFields()) {
+            writer.serializeAsOmittedField(pojo, gen, provider);
+        }
+    }
+
+    /**
+     * Chemin de la propriété : noms des champs qui contiennent l'objet en cours, puis son nom
+     */
+    private static LinkedList<String> path(JsonGenerator gen, String name) {
+        LinkedList<String> path = new LinkedList<>();
+        path.addFirst(name);
+        JsonStreamContext context = gen.getOutputContext().getParent();
+        while (context != null) {
+            if (context.inObject() && context.getCurrentName() != null && !(context.getCurrentValue() instanceof PageDTO)) {
+                path.addFirst(context.getCurrentName());
+            }
+            context = context.getParent();
+        }
+        return path;
+    }
+}
@@ -0,0 +1,46 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.repositories.Projection;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+/**
+ * Applique ?fields= à la sérialisation de toutes les réponses JSON, CBOR et Smile :
+ * les contrôleurs réduisent déjà la lecture Mongo, ici on n'écrit que les champs demandés.
+ * Un ?fields= invalide a déjà été refusé en 400 par la conversion du paramètre ; ailleurs il est ignoré.
+ */
+@RestControllerAdvice
+@Profile("!reactive")
+public class FieldsResponseBodyAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    static final String PARAMETER = "fields";
+
+    @Override
+    protected void beforeBodyWriteInternal(
+            MappingJacksonValue bodyContainer,
+            MediaType contentType,
+            MethodParameter returnType,
+            ServerHttpRequest request,
+            ServerHttpResponse response
+    ) {
+        if (!(request instanceof ServletServerHttpRequest)) {
+            return;
+        }
+        String fields = ((ServletServerHttpRequest) request).getServletRequest().getParameter(PARAMETER);
+        try {
+            Projection projection = Projection.of(fields);
+            if (!projection.isAll()) {
+                bodyContainer.setFilters(FieldsFilter.of(projection));
+            }
+        } catch (IllegalArgumentException e) {
+            // Réponse complète
+        }
+    }
+}
@@ -1,34 +1,91 @@
 package fr.semifir.apicinema.controllers;
 
 import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
 import fr.semifir.apicinema.entities.Film;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.Projection;
 import fr.semifir.apicinema.services.FilmService;
+import fr.semifir.apicinema.metrics.QueryBudget;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("films")
 public class FilmController {
 
     @Autowired
     FilmService service;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @GetMapping
-    public List<FilmDTO> findAll() {
-        return this.service.findAll();
+    @QueryBudget(5)
+    public List<FilmDTO> findAll(
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        if (fields == null && expand == null) {
+            return this.service.findAll();
+        }
+        return this.service.findAll(fields, expand);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Ndjson.write(() -> fields == null && expand == null ? this.service.stream() : this.service.stream(fields, expand),
+                                   FieldsFilter.writer(this.objectMapper, fields)));
+    }
+
+    @GetMapping(params = "limit")
+    @QueryBudget(5)
+    public ResponseEntity<PageDTO<FilmDTO>> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam int limit,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        try {
+            if (fields == null && expand == null) {
+                return ResponseEntity.ok(this.service.findPage(after, limit));
+            }
+            return ResponseEntity.ok(this.service.findPage(after, limit, fields, expand));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<FilmDTO> findById(@PathVariable String id) {
+    @QueryBudget(5)
+    public ResponseEntity<FilmDTO> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
         Optional<FilmDTO> FilmDTO = null;
         try {
-            FilmDTO = this.service.findByID(id);
+            FilmDTO = fields == null && expand == null ? this.service.findByID(id) : this.service.findByID(id, fields, expand);
             return ResponseEntity.ok(FilmDTO.get());
         } catch (Exception e) {
            return ResponseEntity.notFound().header(e.getMessage()).build();
@@ -40,14 +97,53 @@ public class FilmController {
         return ResponseEntity.status(HttpStatus.CREATED).body(this.service.save(film));
     }
 
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchResultDTO>> saveAll(@RequestBody List<FilmDTO> films) {
+        return ResponseEntity.ok(this.service.saveAll(films));
+    }
+
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchResultDTO>> saveAllNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(this.service.saveAll(Ndjson.read(body, FilmDTO.class, this.objectMapper)));
+    }
+
     @PutMapping
     public ResponseEntity<FilmDTO> update(@RequestBody FilmDTO film) {
         return ResponseEntity.status(HttpStatus.CREATED).body(this.service.save(film));
     }
 
+    /**
+     * JSON Merge Patch : seuls les champs donnés sont modifiés, null supprime un champ
+     * Avec "version", le patch échoue (409) si le film a changé depuis cette version
+     */
+    @PatchMapping(value = "{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<FilmDTO> patch(@PathVariable String id, @RequestBody JsonNode patch) {
+        try {
+            return ResponseEntity.ok(this.service.patch(id, patch));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping
     public ResponseEntity<Boolean> delete(@RequestBody FilmDTO film) {
         this.service.delete(film);
         return ResponseEntity.ok(true);
     }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Long> deleteById(@PathVariable String id) {
+        long deleted = this.service.deleteByIds(List.of(id));
+        if (deleted == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(deleted);
+    }
+
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Long> deleteByIds(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(this.service.deleteByIds(ids));
+    }
 }
@@ -0,0 +1,77 @@
+package fr.semifir.apicinema.controllers;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Écriture d'un Stream au format NDJSON : un document JSON par ligne,
+ * envoyé au client au fur et à mesure de la lecture du curseur Mongo.
+ */
+final class Ndjson {
+
+    /**
+     * Nombre de lignes écrites entre deux flush
+     */
+    private static final int FLUSH_EVERY = 64;
+
+    private Ndjson() { }
+
+    /**
+     * Le Stream est ouvert dans le thread d'écriture de la réponse et fermé à la fin,
+     * ce qui libère le curseur même si le client coupe la connexion
+     * @param source
+     * @param objectMapper
+     * @return
+     */
+    static <T> StreamingResponseBody write(Supplier<Stream<T>> source, ObjectMapper objectMapper) {
+        return write(source, objectMapper.writer());
+    }
+
+    /**
+     * Même écriture avec un writer déjà configuré (filtre ?fields=, ...)
+     * @param source
+     * @param writer
+     * @return
+     */
+    static <T> StreamingResponseBody write(Supplier<Stream<T>> source, ObjectWriter writer) {
+        return out -> {
+            try (Stream<T> items = source.get()) {
+                Iterator<T> iterator = items.iterator();
+                int written = 0;
+                while (iterator.hasNext()) {
+                    out.write(writer.writeValueAsBytes(iterator.next()));
+                    out.write('\n');
+                    // Premier flush immédiat pour que le temps avant le premier octet
+                    // ne dépende pas de la taille de la collection
+                    if (++written == 1 || written % FLUSH_EVERY == 0) {
+                        out.flush();
+                    }
+                }
+                out.flush();
+            }
+        };
+    }
+
+    /**
+     * Lit un corps NDJSON : un document JSON par ligne
+     * @param body
+     * @param type
+     * @param objectMapper
+     * @return
+     * @throws IOException
+     */
+    static <T> List<T> read(InputStream body, Class<T> type, ObjectMapper objectMapper) throws IOException {
+        try (MappingIterator<T> values = objectMapper.readerFor(type).readValues(body)) {
+            return values.readAll();
+        }
+    }
+}
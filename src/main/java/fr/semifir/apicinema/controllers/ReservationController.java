@@ -0,0 +1,50 @@
+package fr.semifir.apicinema.controllers;
+
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.ReservationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("reservations")
+public class ReservationController {
+
+    @Autowired
+    ReservationService service;
+
+    @PostMapping
+    public ResponseEntity<ReservationDTO> hold(@RequestBody ReservationRequestDTO request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(this.service.hold(request));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("{id}/confirm")
+    public ResponseEntity<ReservationDTO> confirm(@PathVariable String id) {
+        try {
+            return ResponseEntity.ok(this.service.confirm(id));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Boolean> cancel(@PathVariable String id) {
+        try {
+            this.service.cancel(id);
+            return ResponseEntity.ok(true);
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
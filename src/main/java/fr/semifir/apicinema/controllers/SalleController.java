@@ -1,33 +1,91 @@
 package fr.semifir.apicinema.controllers;
 
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
 import fr.semifir.apicinema.dtos.salle.SalleDTO;
 import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.Projection;
 import fr.semifir.apicinema.services.SalleService;
+import fr.semifir.apicinema.metrics.QueryBudget;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("salles")
 public class SalleController {
 
     @Autowired
     SalleService service;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @GetMapping
-    public List<SalleDTO> findAll() {
-        return this.service.findAll();
+    @QueryBudget(3)
+    public List<SalleDTO> findAll(
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        if (fields == null && expand == null) {
+            return this.service.findAll();
+        }
+        return this.service.findAll(fields, expand);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Ndjson.write(() -> fields == null && expand == null ? this.service.stream() : this.service.stream(fields, expand),
+                                   FieldsFilter.writer(this.objectMapper, fields)));
+    }
+
+    @GetMapping(params = "limit")
+    @QueryBudget(3)
+    public ResponseEntity<PageDTO<SalleDTO>> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam int limit,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        try {
+            if (fields == null && expand == null) {
+                return ResponseEntity.ok(this.service.findPage(after, limit));
+            }
+            return ResponseEntity.ok(this.service.findPage(after, limit, fields, expand));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<SalleDTO> findById(@PathVariable String id) {
+    @QueryBudget(3)
+    public ResponseEntity<SalleDTO> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
         Optional<SalleDTO> SalleDTO = null;
         try {
-            SalleDTO = this.service.findByID(id);
+            SalleDTO = fields == null && expand == null ? this.service.findByID(id) : this.service.findByID(id, fields, expand);
             return ResponseEntity.ok(SalleDTO.get());
         } catch (Exception e) {
            return ResponseEntity.notFound().header(e.getMessage()).build();
@@ -39,14 +97,60 @@ public class SalleController {
         return ResponseEntity.status(HttpStatus.CREATED).body(this.service.save(salle));
     }
 
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchResultDTO>> saveAll(@RequestBody List<SalleDTO> salles) {
+        return ResponseEntity.ok(this.service.saveAll(salles));
+    }
+
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchResultDTO>> saveAllNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(this.service.saveAll(Ndjson.read(body, SalleDTO.class, this.objectMapper)));
+    }
+
+    /**
+     * Avec api.write-behind.enabled, une mise à jour sans version est mise en attente : 202, sans corps,
+     * elle n'est pas encore écrite
+     */
     @PutMapping
     public ResponseEntity<SalleDTO> update(@RequestBody SalleDTO salle) {
+        if (this.service.defer(salle)) {
+            return ResponseEntity.accepted().build();
+        }
         return ResponseEntity.status(HttpStatus.CREATED).body(this.service.save(salle));
     }
 
+    /**
+     * JSON Merge Patch : seuls les champs donnés sont modifiés, null supprime un champ
+     * Avec "version", le patch échoue (409) si le salle a changé depuis cette version
+     */
+    @PatchMapping(value = "{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<SalleDTO> patch(@PathVariable String id, @RequestBody JsonNode patch) {
+        try {
+            return ResponseEntity.ok(this.service.patch(id, patch));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping
     public ResponseEntity<Boolean> delete(@RequestBody Salle salle) {
         this.service.delete(salle);
         return ResponseEntity.ok(true);
     }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Long> deleteById(@PathVariable String id) {
+        long deleted = this.service.deleteByIds(List.of(id));
+        if (deleted == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(deleted);
+    }
+
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Long> deleteByIds(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(this.service.deleteByIds(ids));
+    }
 }
@@ -1,33 +1,112 @@
 package fr.semifir.apicinema.controllers;
 
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.seance.BookingDTO;
 import fr.semifir.apicinema.dtos.seance.SeanceDTO;
 import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.services.Pagination;
 import fr.semifir.apicinema.services.SeanceService;
+import fr.semifir.apicinema.metrics.QueryBudget;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("seances")
 public class SeanceController {
 
     @Autowired
     SeanceService service;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     @GetMapping
-    public List<SeanceDTO> findAll() {
-        return this.service.findAll();
+    @QueryBudget(7)
+    public List<SeanceDTO> findAll(
+            @RequestParam(required = false) String cinema,
+            @RequestParam(required = false) String salle,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = "yyyy-MM-dd") Date to,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        boolean defaults = fields == null && expand == null;
+        if (cinema == null && salle == null && from == null && to == null) {
+            return defaults ? this.service.findAll() : this.service.findAll(fields, expand);
+        }
+        if (defaults) {
+            return this.service.search(cinema, salle, from, to, null, Pagination.UNPAGED_LIMIT).getContent();
+        }
+        return this.service.search(cinema, salle, from, to, null, Pagination.UNPAGED_LIMIT, fields, expand).getContent();
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Ndjson.write(() -> fields == null && expand == null ? this.service.stream() : this.service.stream(fields, expand),
+                                   FieldsFilter.writer(this.objectMapper, fields)));
+    }
+
+    @GetMapping(params = "limit")
+    @QueryBudget(7)
+    public ResponseEntity<PageDTO<SeanceDTO>> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam int limit,
+            @RequestParam(required = false) String cinema,
+            @RequestParam(required = false) String salle,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = "yyyy-MM-dd") Date from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME, fallbackPatterns = "yyyy-MM-dd") Date to,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        boolean defaults = fields == null && expand == null;
+        try {
+            if (cinema == null && salle == null && from == null && to == null) {
+                return ResponseEntity.ok(defaults
+                        ? this.service.findPage(after, limit)
+                        : this.service.findPage(after, limit, fields, expand));
+            }
+            return ResponseEntity.ok(defaults
+                    ? this.service.search(cinema, salle, from, to, after, limit)
+                    : this.service.search(cinema, salle, from, to, after, limit, fields, expand));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<SeanceDTO> findById(@PathVariable String id) {
+    @QueryBudget(7)
+    public ResponseEntity<SeanceDTO> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
         Optional<SeanceDTO> SeanceDTO = null;
         try {
-            SeanceDTO = this.service.findByID(id);
+            SeanceDTO = fields == null && expand == null ? this.service.findByID(id) : this.service.findByID(id, fields, expand);
             return ResponseEntity.ok(SeanceDTO.get());
         } catch (Exception e) {
            return ResponseEntity.notFound().header(e.getMessage()).build();
@@ -39,14 +118,72 @@ public class SeanceController {
         return ResponseEntity.status(HttpStatus.CREATED).body(this.service.save(seance));
     }
 
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchResultDTO>> saveAll(@RequestBody List<SeanceDTO> seances) {
+        return ResponseEntity.ok(this.service.saveAll(seances));
+    }
+
+    @PostMapping(value = "batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchResultDTO>> saveAllNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(this.service.saveAll(Ndjson.read(body, SeanceDTO.class, this.objectMapper)));
+    }
+
+    /**
+     * Avec api.write-behind.enabled, une mise à jour sans version est mise en attente : 202, sans corps,
+     * elle n'est pas encore écrite
+     */
     @PutMapping
     public ResponseEntity<SeanceDTO> update(@RequestBody SeanceDTO seance) {
+        if (this.service.defer(seance)) {
+            return ResponseEntity.accepted().build();
+        }
         return ResponseEntity.status(HttpStatus.CREATED).body(this.service.save(seance));
     }
 
+    /**
+     * JSON Merge Patch : seuls les champs donnés sont modifiés, null supprime un champ
+     * Avec "version", le patch échoue (409) si le seance a changé depuis cette version
+     * remaining ne se modifie que par les réservations (400)
+     */
+    @PatchMapping(value = "{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<SeanceDTO> patch(@PathVariable String id, @RequestBody JsonNode patch) {
+        try {
+            return ResponseEntity.ok(this.service.patch(id, patch));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping
     public ResponseEntity<Boolean> delete(@RequestBody Seance seance) {
         this.service.delete(seance);
         return ResponseEntity.ok(true);
     }
+
+    @DeleteMapping("{id}")
+    public ResponseEntity<Long> deleteById(@PathVariable String id) {
+        long deleted = this.service.deleteByIds(List.of(id));
+        if (deleted == 0) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(deleted);
+    }
+
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Long> deleteByIds(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(this.service.deleteByIds(ids));
+    }
+
+    @PostMapping("{id}/book")
+    public ResponseEntity<BookingDTO> book(@PathVariable String id, @RequestParam int seats) {
+        try {
+            return ResponseEntity.ok(this.service.book(id, seats));
+        } catch (NotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
@@ -0,0 +1,49 @@
+package fr.semifir.apicinema.controllers.reactive;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import fr.semifir.apicinema.controllers.FieldsFilter;
+import fr.semifir.apicinema.repositories.Projection;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import reactor.core.publisher.Flux;
+
+/**
+ * ?fields= des réponses WebFlux, qui ne passent pas par FieldsResponseBodyAdvice :
+ * le JSON porte ses filtres dans un MappingJacksonValue, lu par l'encodeur Jackson,
+ * le NDJSON est écrit ligne par ligne avec le writer filtré, comme Ndjson côté MVC.
+ */
+final class FieldsBodies {
+
+    private FieldsBodies() { }
+
+    /**
+     * @param body
+     * @param fields null pour tous les champs
+     * @return
+     */
+    static MappingJacksonValue json(Object body, Projection fields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        if (fields != null && !fields.isAll()) {
+            value.setFilters(FieldsFilter.of(fields));
+        }
+        return value;
+    }
+
+    /**
+     * @param source
+     * @param objectMapper
+     * @param fields null pour tous les champs
+     * @return une ligne JSON par élément, terminée par un retour à la ligne
+     */
+    static Flux<String> ndjson(Flux<?> source, ObjectMapper objectMapper, Projection fields) {
+        ObjectWriter writer = FieldsFilter.writer(objectMapper, fields);
+        return source.handle((value, sink) -> {
+            try {
+                sink.next(writer.writeValueAsString(value) + "\n");
+            } catch (JsonProcessingException e) {
+                sink.error(e);
+            }
+        });
+    }
+}
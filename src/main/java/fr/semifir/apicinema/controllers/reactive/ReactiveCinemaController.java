@@ -0,0 +1,80 @@
+package fr.semifir.apicinema.controllers.reactive;
+
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.reactive.ReactiveCinemaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("cinemas")
+public class ReactiveCinemaController {
+
+    @Autowired
+    ReactiveCinemaService service;
+
+    @GetMapping
+    public Flux<CinemaDTO> findAll() {
+        return this.service.findAll();
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CinemaDTO> stream() {
+        return this.service.stream();
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<PageDTO<CinemaDTO>>> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam int limit
+    ) {
+        return this.service.findPage(after, limit)
+                .map(ResponseEntity::ok)
+                .onErrorReturn(IllegalArgumentException.class, ResponseEntity.badRequest().build());
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<CinemaDTO>> findById(@PathVariable String id) {
+        return this.service.findByID(id)
+                .map(ResponseEntity::ok)
+                .onErrorReturn(NotFoundException.class, ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<CinemaDTO>> save(@RequestBody CinemaDTO cinema) {
+        return this.service.save(cinema).map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved));
+    }
+
+    @PutMapping
+    public Mono<ResponseEntity<CinemaDTO>> update(@RequestBody CinemaDTO cinema) {
+        return this.service.save(cinema)
+                .map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved));
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Boolean>> delete(@RequestBody Cinema cinema) {
+        return this.service.delete(cinema).thenReturn(ResponseEntity.ok(true));
+    }
+
+    @DeleteMapping("{id}")
+    public Mono<ResponseEntity<Long>> deleteById(@PathVariable String id) {
+        return this.service.deleteByIds(List.of(id))
+                .map(deleted -> deleted == 0 ? ResponseEntity.notFound().<Long>build() : ResponseEntity.ok(deleted));
+    }
+
+    @DeleteMapping(params = "ids")
+    public Mono<ResponseEntity<Long>> deleteByIds(@RequestParam List<String> ids) {
+        return this.service.deleteByIds(ids).map(ResponseEntity::ok);
+    }
+}
@@ -0,0 +1,105 @@
+package fr.semifir.apicinema.controllers.reactive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.services.reactive.ReactiveSalleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("salles")
+public class ReactiveSalleController {
+
+    @Autowired
+    ReactiveSalleService service;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @GetMapping
+    public Mono<MappingJacksonValue> findAll(
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        Flux<SalleDTO> salles = fields == null && expand == null ? this.service.findAll() : this.service.findAll(fields, expand);
+        return salles.collectList().map(list -> FieldsBodies.json(list, fields));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> stream(
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        Flux<SalleDTO> salles = fields == null && expand == null ? this.service.stream() : this.service.stream(fields, expand);
+        return FieldsBodies.ndjson(salles, this.objectMapper, fields);
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<ResponseEntity<MappingJacksonValue>> findPage(
+            @RequestParam(required = false) String after,
+            @RequestParam int limit,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        Mono<PageDTO<SalleDTO>> page = fields == null && expand == null
+                ? this.service.findPage(after, limit)
+                : this.service.findPage(after, limit, fields, expand);
+        return page
+                .map(found -> ResponseEntity.ok(FieldsBodies.json(found, fields)))
+                .onErrorReturn(IllegalArgumentException.class, ResponseEntity.badRequest().build());
+    }
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<MappingJacksonValue>> findById(
+            @PathVariable String id,
+            @RequestParam(required = false) Projection fields,
+            @RequestParam(required = false) Expansion expand
+    ) {
+        Mono<SalleDTO> salle = fields == null && expand == null ? this.service.findByID(id) : this.service.findByID(id, fields, expand);
+        return salle
+                .map(found -> ResponseEntity.ok(FieldsBodies.json(found, fields)))
+                .onErrorReturn(NotFoundException.class, ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<SalleDTO>> save(@RequestBody SalleDTO salle) {
+        return this.service.save(salle).map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved));
+    }
+
+    @PutMapping
+    public Mono<ResponseEntity<SalleDTO>> update(@RequestBody SalleDTO salle) {
+        return this.service.save(salle)
+                .map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved));
+    }
+
+    @DeleteMapping
+    public Mono<ResponseEntity<Boolean>> delete(@RequestBody Salle salle) {
+        return this.service.delete(salle).thenReturn(ResponseEntity.ok(true));
+    }
+
+    @DeleteMapping("{id}")
+    public Mono<ResponseEntity<Long>> deleteById(@PathVariable String id) {
+        return this.service.deleteByIds(List.of(id))
+                .map(deleted -> deleted == 0 ? ResponseEntity.notFound().<Long>build() : ResponseEntity.ok(deleted));
+    }
+
+    @DeleteMapping(params = "ids")
+    public Mono<ResponseEntity<Long>> deleteByIds(@RequestParam List<String> ids) {
+        return this.service.deleteByIds(ids).map(ResponseEntity::ok);
+    }
+}
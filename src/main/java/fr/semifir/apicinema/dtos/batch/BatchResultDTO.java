@@ -0,0 +1,22 @@
+package fr.semifir.apicinema.dtos.batch;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchResultDTO {
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String FAILED = "failed";
+
+    /**
+     * Position de l'élément dans la requête
+     */
+    private int index;
+    private String id;
+    private String status;
+    private String error;
+}
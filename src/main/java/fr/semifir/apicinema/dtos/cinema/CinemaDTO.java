@@ -10,4 +10,9 @@ import lombok.NoArgsConstructor;
 public class CinemaDTO {
     private String id;
     private String nom;
+    private Long version;
+
+    public CinemaDTO(String id, String nom) {
+        this(id, nom, null);
+    }
 }
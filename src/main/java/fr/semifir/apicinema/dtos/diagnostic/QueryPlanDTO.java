@@ -0,0 +1,25 @@
+package fr.semifir.apicinema.dtos.diagnostic;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueryPlanDTO {
+    /**
+     * Nom de la requête de service expliquée (seances.page, salles.byCinema, ...)
+     */
+    private String name;
+    private String collection;
+    private String filter;
+    private String sort;
+    /**
+     * Étapes du plan gagnant, de la racine vers les feuilles
+     */
+    private List<String> stages;
+    private boolean collscan;
+}
@@ -19,4 +19,9 @@ public class FilmDTO {
     private String nom;
     private Float duree;
     private Seance seance;
+    private Long version;
+
+    public FilmDTO(String id, String nom, Float duree, Seance seance) {
+        this(id, nom, duree, seance, null);
+    }
 }
@@ -0,0 +1,19 @@
+package fr.semifir.apicinema.dtos.page;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageDTO<T> {
+    private List<T> content;
+    /**
+     * Curseur opaque à renvoyer dans le paramètre after,
+     * null quand il n'y a plus de page
+     */
+    private String next;
+}
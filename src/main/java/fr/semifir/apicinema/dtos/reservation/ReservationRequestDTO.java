@@ -0,0 +1,22 @@
+package fr.semifir.apicinema.dtos.reservation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationRequestDTO {
+    private String seanceId;
+    /**
+     * Places demandées, de 0 à nbrPlace - 1
+     */
+    private List<Integer> seats;
+    /**
+     * Ou, à défaut de seats, un nombre de places côte à côte
+     */
+    private Integer count;
+}
@@ -12,7 +12,12 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @NoArgsConstructor
 public class SalleDTO {
     private String id;
-    private int numDeSalle;
-    private int nbrPlace;
+    private Integer numDeSalle;
+    private Integer nbrPlace;
     private Cinema cinema;
+    private Long version;
+
+    public SalleDTO(String id, Integer numDeSalle, Integer nbrPlace, Cinema cinema) {
+        this(id, numDeSalle, nbrPlace, cinema, null);
+    }
 }
@@ -0,0 +1,17 @@
+package fr.semifir.apicinema.dtos.seance;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingDTO {
+    private String seanceId;
+    private int seats;
+    /**
+     * Places restantes juste après cette réservation
+     */
+    private int remaining;
+}
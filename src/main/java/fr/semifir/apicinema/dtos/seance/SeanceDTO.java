@@ -18,4 +18,14 @@ public class SeanceDTO {
     private String id;
     private Date date;
     private Salle salle;
+    private Integer remaining;
+    private Long version;
+
+    public SeanceDTO(String id, Date date, Salle salle) {
+        this(id, date, salle, null);
+    }
+
+    public SeanceDTO(String id, Date date, Salle salle, Integer remaining) {
+        this(id, date, salle, remaining, null);
+    }
 }
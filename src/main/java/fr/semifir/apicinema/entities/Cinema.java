@@ -1,12 +1,15 @@
 package fr.semifir.apicinema.entities;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -14,4 +17,10 @@ public class Cinema {
     @Id
     private String id;
     private String nom;
+    @Version
+    private Long version;
+
+    public Cinema(String id, String nom) {
+        this(id, nom, null);
+    }
 }
@@ -4,13 +4,17 @@ package fr.semifir.apicinema.entities;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Document
+@CompoundIndex(name = "seance", def = "{'seance.$id': 1}")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -19,6 +23,13 @@ public class Film {
     private String id;
     private String nom;
     private Float duree;
+    @With
     @DBRef
     private Seance seance;
+    @Version
+    private Long version;
+
+    public Film(String id, String nom, Float duree, Seance seance) {
+        this(id, nom, duree, seance, null);
+    }
 }
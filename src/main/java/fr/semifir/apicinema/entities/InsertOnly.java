@@ -0,0 +1,18 @@
+package fr.semifir.apicinema.entities;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Champ écrit seulement à la création du document ($setOnInsert), jamais par une mise à jour :
+ * un compteur tenu par des $inc atomiques, qu'un PUT, une écriture en masse ou un PATCH ne doit pas écraser.
+ * Voir PatchWriter.replacement()
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface InsertOnly {
+}
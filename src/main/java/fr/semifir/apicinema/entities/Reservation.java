@@ -0,0 +1,34 @@
+package fr.semifir.apicinema.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.List;
+
+@Document
+@CompoundIndex(name = "seance", def = "{'seanceId': 1}")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Reservation {
+    public static final String HELD = "held";
+    public static final String CONFIRMED = "confirmed";
+
+    @Id
+    private String id;
+    /**
+     * Id de la séance, sans @DBRef : le plan des places n'a besoin que de l'id
+     */
+    private String seanceId;
+    private List<Integer> seats;
+    private String status;
+    /**
+     * Échéance d'une réservation HELD, null une fois confirmée
+     */
+    private Date expiresAt;
+}
@@ -1,21 +1,37 @@
 package fr.semifir.apicinema.entities;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document
+@CompoundIndex(name = "cinema", def = "{'cinema.$id': 1}")
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Salle {
     @Id
     private String id;
-    private int numDeSalle;
-    private int nbrPlace;
+    /*
+     * Integer plutôt que int : un bouchon (référence non résolue) n'a ni numéro ni places
+     */
+    private Integer numDeSalle;
+    private Integer nbrPlace;
+    @With
     @DBRef
     private Cinema cinema;
+    @Version
+    private Long version;
+
+    public Salle(String id, Integer numDeSalle, Integer nbrPlace, Cinema cinema) {
+        this(id, numDeSalle, nbrPlace, cinema, null);
+    }
 }
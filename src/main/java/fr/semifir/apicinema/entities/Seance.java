@@ -1,16 +1,26 @@
 package fr.semifir.apicinema.entities;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Document
+@CompoundIndexes({
+        @CompoundIndex(name = "salle_date_id", def = "{'salle.$id': 1, 'date': 1, '_id': 1}"),
+        @CompoundIndex(name = "date_id", def = "{'date': 1, '_id': 1}")
+})
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -18,6 +28,23 @@ public class Seance {
     @Id
     private String id;
     private Date date;
+    @With
     @DBRef
     private Salle salle;
+    /**
+     * Places encore disponibles, initialisé à Salle.nbrPlace à la création puis tenu par SeatCounter seul :
+     * les mises à jour du seance ne l'écrivent jamais
+     */
+    @InsertOnly
+    private Integer remaining;
+    @Version
+    private Long version;
+
+    public Seance(String id, Date date, Salle salle) {
+        this(id, date, salle, null);
+    }
+
+    public Seance(String id, Date date, Salle salle, Integer remaining) {
+        this(id, date, salle, remaining, null);
+    }
 }
@@ -0,0 +1,10 @@
+package fr.semifir.apicinema.exceptions;
+
+public class ConflictException extends RuntimeException{
+    public ConflictException() {
+    }
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package fr.semifir.apicinema.mappers;
+
+/**
+ * Conversion entité <-> DTO utilisée par les services
+ */
+public interface EntityMapper {
+
+    /**
+     * Convertit source en une nouvelle instance de destinationType
+     * @param source
+     * @param destinationType
+     * @return
+     */
+    <D> D map(Object source, Class<D> destinationType);
+}
@@ -0,0 +1,81 @@
+package fr.semifir.apicinema.mappers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chauffe les conversions de chaque requête avant que l'instance ne se déclare prête (readiness) :
+ * entité <-> DTO par l'EntityMapper, DTO <-> JSON par Jackson, pour Cinema, Salle, Seance et Film.
+ * Les classes sont chargées, les sérialiseurs Jackson construits et les méthodes les plus appelées
+ * déjà compilées par le JIT : la première requête ne paie plus que Mongo.
+ * Rien n'est lu ni écrit dans Mongo, ModelMapper (le repli) n'est pas touché.
+ * Les conversions du warm-up sont comptées dans le timer api.mapper.
+ */
+public class MappingWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MappingWarmup.class);
+
+    private static final String ID = "000000000000000000000000";
+
+    EntityMapper mapper;
+    ObjectMapper objectMapper;
+    int iterations;
+
+    /**
+     * @param mapper
+     * @param objectMapper
+     * @param iterations passages sur chaque conversion, 0 pour ne rien chauffer
+     */
+    public MappingWarmup(EntityMapper mapper, ObjectMapper objectMapper, int iterations) {
+        this.mapper = mapper;
+        this.objectMapper = objectMapper;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (this.iterations <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        Cinema cinema = new Cinema(ID, "Cinema", 0L);
+        Salle salle = new Salle(ID, 1, 100, cinema, 0L);
+        Seance seance = new Seance(ID, new Date(0), salle, 100, 0L);
+        Film film = new Film(ID, "Film", 120f, seance, 0L);
+        for (int i = 0; i < this.iterations; i++) {
+            this.warm(cinema, Cinema.class, CinemaDTO.class);
+            this.warm(salle, Salle.class, SalleDTO.class);
+            this.warm(seance, Seance.class, SeanceDTO.class);
+            this.warm(film, Film.class, FilmDTO.class);
+        }
+        log.info("Conversions chauffées en {} ms ({} itérations)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), this.iterations);
+    }
+
+    /**
+     * Le trajet d'une lecture (entité -> DTO -> JSON, seul et en page) et d'une écriture (JSON -> DTO -> entité)
+     */
+    private <E, D> void warm(E entity, Class<E> entityType, Class<D> dtoType) throws IOException {
+        D dto = this.mapper.map(entity, dtoType);
+        byte[] json = this.objectMapper.writeValueAsBytes(dto);
+        this.objectMapper.writeValueAsBytes(new PageDTO<>(List.of(dto), null));
+        this.mapper.map(this.objectMapper.readValue(json, dtoType), entityType);
+    }
+}
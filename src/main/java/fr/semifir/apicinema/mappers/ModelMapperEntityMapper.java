@@ -0,0 +1,45 @@
+package fr.semifir.apicinema.mappers;
+
+import org.modelmapper.ModelMapper;
+
+import java.util.function.Supplier;
+
+/**
+ * Conversion par réflexion avec ModelMapper, pour tous les types
+ */
+public class ModelMapperEntityMapper implements EntityMapper {
+
+    volatile ModelMapper mapper;
+    Supplier<ModelMapper> supplier;
+
+    public ModelMapperEntityMapper(ModelMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * ModelMapper créé à la première conversion : en repli du mapper spécialisé,
+     * il n'est souvent jamais utilisé et coûte au démarrage
+     * @param supplier
+     */
+    public ModelMapperEntityMapper(Supplier<ModelMapper> supplier) {
+        this.supplier = supplier;
+    }
+
+    @Override
+    public <D> D map(Object source, Class<D> destinationType) {
+        return this.mapper().map(source, destinationType);
+    }
+
+    private ModelMapper mapper() {
+        ModelMapper mapper = this.mapper;
+        if (mapper == null) {
+            synchronized (this) {
+                if (this.mapper == null) {
+                    this.mapper = this.supplier.get();
+                }
+                mapper = this.mapper;
+            }
+        }
+        return mapper;
+    }
+}
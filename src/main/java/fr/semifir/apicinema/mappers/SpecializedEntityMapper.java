@@ -0,0 +1,112 @@
+package fr.semifir.apicinema.mappers;
+
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+
+import java.util.Date;
+
+/**
+ * Conversions écrites à la main pour Cinema, Salle, Seance et Film,
+ * sans réflexion : seuls les objets cibles sont alloués.
+ * Les références (Salle -> Cinema, ...) sont copiées comme le fait ModelMapper.
+ * Les autres couples de types sont délégués au mapper de repli.
+ */
+public class SpecializedEntityMapper implements EntityMapper {
+
+    EntityMapper fallback;
+
+    public SpecializedEntityMapper(EntityMapper fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public <D> D map(Object source, Class<D> destinationType) {
+        return destinationType.cast(this.convert(source, destinationType));
+    }
+
+    private Object convert(Object source, Class<?> destinationType) {
+        if (source instanceof Seance && destinationType == SeanceDTO.class) {
+            return toDTO((Seance) source);
+        }
+        if (source instanceof Salle && destinationType == SalleDTO.class) {
+            return toDTO((Salle) source);
+        }
+        if (source instanceof Cinema && destinationType == CinemaDTO.class) {
+            return toDTO((Cinema) source);
+        }
+        if (source instanceof Film && destinationType == FilmDTO.class) {
+            return toDTO((Film) source);
+        }
+        if (source instanceof SeanceDTO && destinationType == Seance.class) {
+            return toEntity((SeanceDTO) source);
+        }
+        if (source instanceof SalleDTO && destinationType == Salle.class) {
+            return toEntity((SalleDTO) source);
+        }
+        if (source instanceof CinemaDTO && destinationType == Cinema.class) {
+            return toEntity((CinemaDTO) source);
+        }
+        if (source instanceof FilmDTO && destinationType == Film.class) {
+            return toEntity((FilmDTO) source);
+        }
+        return this.fallback.map(source, destinationType);
+    }
+
+    static CinemaDTO toDTO(Cinema cinema) {
+        return new CinemaDTO(cinema.getId(), cinema.getNom(), cinema.getVersion());
+    }
+
+    static SalleDTO toDTO(Salle salle) {
+        return new SalleDTO(salle.getId(), salle.getNumDeSalle(), salle.getNbrPlace(), copy(salle.getCinema()), salle.getVersion());
+    }
+
+    static SeanceDTO toDTO(Seance seance) {
+        return new SeanceDTO(seance.getId(), copy(seance.getDate()), copy(seance.getSalle()), seance.getRemaining(), seance.getVersion());
+    }
+
+    static FilmDTO toDTO(Film film) {
+        return new FilmDTO(film.getId(), film.getNom(), film.getDuree(), copy(film.getSeance()), film.getVersion());
+    }
+
+    static Cinema toEntity(CinemaDTO cinema) {
+        return new Cinema(cinema.getId(), cinema.getNom(), cinema.getVersion());
+    }
+
+    static Salle toEntity(SalleDTO salle) {
+        return new Salle(salle.getId(), salle.getNumDeSalle(), salle.getNbrPlace(), copy(salle.getCinema()), salle.getVersion());
+    }
+
+    static Seance toEntity(SeanceDTO seance) {
+        return new Seance(seance.getId(), copy(seance.getDate()), copy(seance.getSalle()), seance.getRemaining(), seance.getVersion());
+    }
+
+    static Film toEntity(FilmDTO film) {
+        return new Film(film.getId(), film.getNom(), film.getDuree(), copy(film.getSeance()), film.getVersion());
+    }
+
+    static Cinema copy(Cinema cinema) {
+        return cinema == null ? null : new Cinema(cinema.getId(), cinema.getNom(), cinema.getVersion());
+    }
+
+    static Salle copy(Salle salle) {
+        return salle == null
+                ? null
+                : new Salle(salle.getId(), salle.getNumDeSalle(), salle.getNbrPlace(), copy(salle.getCinema()), salle.getVersion());
+    }
+
+    static Seance copy(Seance seance) {
+        return seance == null
+                ? null
+                : new Seance(seance.getId(), copy(seance.getDate()), copy(seance.getSalle()), seance.getRemaining(), seance.getVersion());
+    }
+
+    static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+}
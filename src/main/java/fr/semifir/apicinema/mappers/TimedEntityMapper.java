@@ -0,0 +1,61 @@
+package fr.semifir.apicinema.mappers;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mesure chaque conversion dans le timer api.mapper,
+ * tagué resource (cinema, salle, ...) et operation (toDTO, toEntity)
+ */
+public class TimedEntityMapper implements EntityMapper {
+
+    public static final String NAME = "api.mapper";
+
+    EntityMapper delegate;
+    MeterRegistry registry;
+    Clock clock;
+
+    /**
+     * Timers par type source puis par type cible, retrouvés sans allocation
+     */
+    private final ClassValue<Map<Class<?>, Timer>> timers = new ClassValue<>() {
+        @Override
+        protected Map<Class<?>, Timer> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    public TimedEntityMapper(EntityMapper delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.clock = registry.config().clock();
+    }
+
+    @Override
+    public <D> D map(Object source, Class<D> destinationType) {
+        if (source == null) {
+            return this.delegate.map(null, destinationType);
+        }
+        Timer timer = this.timers.get(source.getClass()).computeIfAbsent(destinationType, this::timer);
+        long start = this.clock.monotonicTime();
+        try {
+            return this.delegate.map(source, destinationType);
+        } finally {
+            timer.record(this.clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(Class<?> destinationType) {
+        String name = destinationType.getSimpleName();
+        boolean dto = name.endsWith("DTO");
+        return Timer.builder(NAME)
+                .tag("resource", (dto ? name.substring(0, name.length() - 3) : name).toLowerCase())
+                .tag("operation", dto ? "toDTO" : "toEntity")
+                .register(this.registry);
+    }
+}
@@ -0,0 +1,121 @@
+package fr.semifir.apicinema.metrics;
+
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer api.calls sur chaque méthode publique des contrôleurs, des services et des repositories,
+ * tagué layer (controller, service, repository), resource (cinema, salle, ..., graphreader) et operation (nom de la méthode).
+ * Les NotFoundException levées par les services sont comptées dans api.not_found, avec les mêmes tags.
+ *
+ * Les timers sont créés au premier appel puis retrouvés sans allocation : le coût par appel
+ * est celui du proxy et d'un record(), mesuré par MetricsOverheadBenchmark.
+ * Pour un Flux ou un Mono, seul l'assemblage est mesuré, pas l'exécution.
+ */
+@Aspect
+public class CallMetrics {
+
+    public static final String CALLS = "api.calls";
+    public static final String NOT_FOUND = "api.not_found";
+
+    private static final String BASE_PACKAGE = "fr.semifir.apicinema.";
+
+    MeterRegistry registry;
+    Clock clock;
+
+    /**
+     * Timers par classe cible puis par méthode : une méthode héritée (CrudRepository.findById)
+     * a un timer par repository
+     */
+    private final Map<Class<?>, Map<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+    public CallMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.clock = registry.config().clock();
+    }
+
+    @Around("execution(public * *(..)) && @within(org.springframework.web.bind.annotation.RestController)")
+    public Object controller(ProceedingJoinPoint call) throws Throwable {
+        return this.time(call, "controller");
+    }
+
+    @Around("execution(public * *(..)) && within(fr.semifir.apicinema.services..*)")
+    public Object service(ProceedingJoinPoint call) throws Throwable {
+        return this.time(call, "service");
+    }
+
+    @Around("execution(public * *(..)) && (within(fr.semifir.apicinema.repositories..*) || this(org.springframework.data.repository.Repository))")
+    public Object repository(ProceedingJoinPoint call) throws Throwable {
+        return this.time(call, "repository");
+    }
+
+    private Object time(ProceedingJoinPoint call, String layer) throws Throwable {
+        Method method = ((MethodSignature) call.getSignature()).getMethod();
+        if (method.getDeclaringClass() == Object.class) {
+            return call.proceed();
+        }
+        Class<?> type = AopUtils.getTargetClass(call.getTarget());
+        Timer timer = this.timers.computeIfAbsent(type, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, key -> Timer.builder(CALLS)
+                        .tag("layer", layer)
+                        .tag("resource", resource(type))
+                        .tag("operation", method.getName())
+                        .register(this.registry));
+        long start = this.clock.monotonicTime();
+        try {
+            return call.proceed();
+        } catch (NotFoundException e) {
+            Counter.builder(NOT_FOUND)
+                    .tag("layer", layer)
+                    .tag("resource", resource(type))
+                    .tag("operation", method.getName())
+                    .register(this.registry)
+                    .increment();
+            throw e;
+        } finally {
+            timer.record(this.clock.monotonicTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Nom de la ressource d'après la classe : SeanceController, ReactiveSeanceService, SeanceRepository -> seance
+     * Un repository Spring Data est un proxy JDK : son interface donne le nom
+     * @param type
+     * @return
+     */
+    public static String resource(Class<?> type) {
+        if (Proxy.isProxyClass(type)) {
+            for (Class<?> contract : type.getInterfaces()) {
+                if (contract.getName().startsWith(BASE_PACKAGE)) {
+                    type = contract;
+                    break;
+                }
+            }
+        }
+        String name = type.getSimpleName();
+        if (name.startsWith("Reactive")) {
+            name = name.substring("Reactive".length());
+        }
+        for (String suffix : new String[] {"Controller", "Service", "Repository"}) {
+            if (name.endsWith(suffix) && name.length() > suffix.length()) {
+                name = name.substring(0, name.length() - suffix.length());
+                break;
+            }
+        }
+        return name.toLowerCase();
+    }
+}
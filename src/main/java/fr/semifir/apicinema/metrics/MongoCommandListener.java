@@ -0,0 +1,140 @@
+package fr.semifir.apicinema.metrics;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ajoute chaque commande Mongo au décompte de la requête HTTP en cours (QueryStats),
+ * et journalise celles qui dépassent le seuil avec la forme de leur filtre (valeurs remplacées par ?).
+ * La durée par commande est déjà mesurée par Spring Boot (mongodb.driver.commands).
+ */
+public class MongoCommandListener implements CommandListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoCommandListener.class);
+
+    /**
+     * Champ portant le filtre, selon la commande
+     */
+    private static final Map<String, String> FILTERS = Map.of(
+            "find", "filter",
+            "count", "query",
+            "distinct", "query",
+            "findAndModify", "query",
+            "aggregate", "pipeline",
+            "delete", "deletes",
+            "update", "updates"
+    );
+
+    long thresholdNanos;
+
+    /**
+     * Forme des commandes en cours, par requestId : le document de la commande
+     * n'est plus lisible une fois commandStarted terminé
+     */
+    Map<Integer, String> shapes = new ConcurrentHashMap<>();
+
+    /**
+     * @param threshold durée à partir de laquelle une commande est journalisée, 0 pour ne rien journaliser
+     */
+    public MongoCommandListener(Duration threshold) {
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (this.thresholdNanos > 0) {
+            this.shapes.put(event.getRequestId(), shape(event.getCommandName(), event.getCommand()));
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        this.finished(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        this.finished(event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    private void finished(int requestId, String commandName, long nanos) {
+        QueryStats stats = QueryStats.current();
+        if (stats != null) {
+            stats.record(nanos);
+        }
+        if (this.thresholdNanos > 0) {
+            String shape = this.shapes.remove(requestId);
+            if (nanos >= this.thresholdNanos) {
+                log.warn("Commande Mongo lente ({} ms) : {}", TimeUnit.NANOSECONDS.toMillis(nanos), shape == null ? commandName : shape);
+            }
+        }
+    }
+
+    /**
+     * Nom de la commande, collection et filtre sans ses valeurs :
+     * find seance {"salle.$id": {"$in": [?]}, "date": {"$gte": ?}}
+     * @param commandName
+     * @param command
+     * @return
+     */
+    static String shape(String commandName, BsonDocument command) {
+        StringBuilder shape = new StringBuilder(commandName);
+        BsonValue collection = command.get(commandName);
+        if (collection != null && collection.isString()) {
+            shape.append(' ').append(collection.asString().getValue());
+        }
+        String field = FILTERS.get(commandName);
+        BsonValue filter = field == null ? null : command.get(field);
+        if (filter != null && ("deletes".equals(field) || "updates".equals(field))) {
+            // Écritures groupées : le filtre (q) de la première suffit à reconnaître la requête
+            BsonArray writes = filter.asArray();
+            filter = writes.isEmpty() ? null : writes.get(0).asDocument().get("q");
+        }
+        if (filter != null) {
+            shape(filter, shape.append(' '));
+        }
+        return shape.toString();
+    }
+
+    private static void shape(BsonValue value, StringBuilder shape) {
+        if (value.isDocument()) {
+            shape.append('{');
+            String separator = "";
+            for (Map.Entry<String, BsonValue> entry : value.asDocument().entrySet()) {
+                shape.append(separator).append('"').append(entry.getKey()).append("\": ");
+                shape(entry.getValue(), shape);
+                separator = ", ";
+            }
+            shape.append('}');
+        } else if (value.isArray()) {
+            BsonArray values = value.asArray();
+            if (!values.isEmpty() && values.get(0).isDocument()) {
+                // Pipeline, $or, $and : chaque étape a sa propre forme
+                shape.append('[');
+                String separator = "";
+                for (BsonValue item : values) {
+                    shape(item, shape.append(separator));
+                    separator = ", ";
+                }
+                shape.append(']');
+            } else {
+                // $in et autres listes de valeurs : leur taille ne change pas la forme
+                shape.append("[?]");
+            }
+        } else {
+            shape.append('?');
+        }
+    }
+}
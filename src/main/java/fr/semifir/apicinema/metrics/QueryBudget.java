@@ -0,0 +1,20 @@
+package fr.semifir.apicinema.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Nombre maximal de commandes Mongo d'un endpoint, vérifié par QueryStatsFilter.
+ * Dépassé, le budget est signalé dans les logs, ou fait échouer la requête
+ * avec api.mongo.enforce-query-budget=true (tests).
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    int value();
+}
@@ -0,0 +1,52 @@
+package fr.semifir.apicinema.metrics;
+
+/**
+ * Commandes Mongo envoyées pendant la requête HTTP en cours.
+ * Le driver synchrone prévient le CommandListener sur le thread appelant, d'où le ThreadLocal :
+ * les lectures faites ailleurs (flux NDJSON asynchrone, pile réactive) ne sont pas comptées.
+ */
+public final class QueryStats {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private int commands;
+
+    private long nanos;
+
+    /**
+     * Ouvre le décompte du thread courant
+     * @return
+     */
+    public static QueryStats start() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return le décompte du thread courant, null hors d'une requête HTTP
+     */
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    void record(long nanos) {
+        this.commands++;
+        this.nanos += nanos;
+    }
+
+    public int getCommands() {
+        return this.commands;
+    }
+
+    /**
+     * @return temps total passé dans Mongo, en nanosecondes
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+}
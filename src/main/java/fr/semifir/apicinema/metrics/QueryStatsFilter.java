@@ -0,0 +1,166 @@
+package fr.semifir.apicinema.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nombre de commandes Mongo et temps passé dans Mongo par requête HTTP :
+ * en-têtes X-Db-Commands et Server-Timing, métriques api.db.commands et api.db.time par endpoint,
+ * et contrôle du @QueryBudget du contrôleur.
+ * Les en-têtes sont posés juste avant l'écriture du corps, ils ne comptent donc pas
+ * les commandes d'un flux NDJSON, lu après coup sur un autre thread.
+ * Le budget n'est contrôlé qu'une fois le corps écrit : le mode strict ne fait échouer
+ * que les requêtes MockMvc, il est réservé aux tests.
+ */
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    public static final String COMMANDS_HEADER = "X-Db-Commands";
+
+    public static final String COMMANDS = "api.db.commands";
+
+    public static final String TIME = "api.db.time";
+
+    private static final Logger log = LoggerFactory.getLogger(QueryStatsFilter.class);
+
+    MeterRegistry registry;
+
+    boolean enforceBudget;
+
+    /**
+     * @param registry null sans métriques (tests @WebMvcTest)
+     * @param enforceBudget vrai pour faire échouer la requête qui dépasse son budget (tests uniquement), faux pour le journaliser
+     */
+    public QueryStatsFilter(MeterRegistry registry, boolean enforceBudget) {
+        this.registry = registry;
+        this.enforceBudget = enforceBudget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryStats stats = QueryStats.start();
+        try {
+            StatsResponse wrapper = new StatsResponse(response, stats);
+            chain.doFilter(request, wrapper);
+            // Réponses sans corps (304, 404...)
+            wrapper.writeHeaders();
+        } finally {
+            QueryStats.stop();
+        }
+        if (request.isAsyncStarted()) {
+            // NDJSON : le décompte s'arrête au premier octet, il n'a pas de sens pour l'endpoint
+            return;
+        }
+        String uri = String.valueOf(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE));
+        this.record(request.getMethod(), uri, stats);
+        this.checkBudget(request, uri, stats);
+    }
+
+    private void record(String method, String uri, QueryStats stats) {
+        if (this.registry == null) {
+            return;
+        }
+        DistributionSummary.builder(COMMANDS)
+                .tags("method", method, "uri", uri)
+                .register(this.registry)
+                .record(stats.getCommands());
+        Timer.builder(TIME)
+                .tags("method", method, "uri", uri)
+                .register(this.registry)
+                .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void checkBudget(HttpServletRequest request, String uri, QueryStats stats) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        if (!(handler instanceof HandlerMethod)) {
+            return;
+        }
+        QueryBudget budget = ((HandlerMethod) handler).getMethodAnnotation(QueryBudget.class);
+        if (budget == null || stats.getCommands() <= budget.value()) {
+            return;
+        }
+        String message = String.format("%s %s : %d commandes Mongo pour un budget de %d",
+                request.getMethod(), uri, stats.getCommands(), budget.value());
+        if (this.enforceBudget) {
+            throw new IllegalStateException(message);
+        }
+        log.warn(message);
+    }
+
+    /**
+     * Pose les en-têtes au moment où la réponse va être envoyée, tant qu'ils peuvent encore l'être
+     */
+    static class StatsResponse extends HttpServletResponseWrapper {
+
+        QueryStats stats;
+
+        boolean written;
+
+        StatsResponse(HttpServletResponse response, QueryStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeaders() {
+            if (this.written || this.isCommitted()) {
+                return;
+            }
+            this.written = true;
+            this.setHeader(COMMANDS_HEADER, String.valueOf(this.stats.getCommands()));
+            this.addHeader("Server-Timing", String.format(Locale.ROOT, "db;dur=%.3f", this.stats.getNanos() / 1e6));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            this.writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            this.writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            this.writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            this.writeHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            this.writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            this.writeHeaders();
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.bulk.BulkWriteError;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import org.bson.types.ObjectId;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Écritures en masse : les entités sont envoyées par paquets de chunkSize
+ * dans des bulkWrite non ordonnés, un aller-retour par paquet au lieu d'un par entité.
+ * Un élément en erreur n'empêche pas l'écriture des autres.
+ * La version (@Version) n'est pas vérifiée mais elle est incrémentée à chaque écriture,
+ * un PATCH qui attend l'ancienne version échoue donc après une écriture en masse.
+ */
+public class BulkWriter {
+
+    MongoTemplate template;
+    int chunkSize;
+
+    public BulkWriter(MongoTemplate template, int chunkSize) {
+        this.template = template;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Les entités sans id reçoivent un ObjectId et sont insérées,
+     * les autres remplacent le document existant (ou le créent) avec une version incrémentée,
+     * sans toucher aux champs @InsertOnly d'un document existant
+     * @param entities
+     * @param type
+     * @return un résultat par entité, dans l'ordre de la liste
+     */
+    public <T> List<BatchResultDTO> write(List<T> entities, Class<T> type) {
+        MongoPersistentEntity<?> persistentEntity =
+                this.template.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        MongoPersistentProperty idProperty = persistentEntity.getRequiredIdProperty();
+        MongoPersistentProperty versionProperty = persistentEntity.getVersionProperty();
+        List<BatchResultDTO> results = new ArrayList<>(entities.size());
+        for (int start = 0; start < entities.size(); start += this.chunkSize) {
+            List<T> chunk = entities.subList(start, Math.min(start + this.chunkSize, entities.size()));
+            BulkOperations operations = this.template.bulkOps(BulkOperations.BulkMode.UNORDERED, type);
+            List<BatchResultDTO> chunkResults = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                T entity = chunk.get(i);
+                PersistentPropertyAccessor<T> accessor = persistentEntity.getPropertyAccessor(entity);
+                Object id = accessor.getProperty(idProperty);
+                if (id == null) {
+                    id = new ObjectId().toHexString();
+                    accessor.setProperty(idProperty, id);
+                    if (versionProperty != null && accessor.getProperty(versionProperty) == null) {
+                        // Ce que fait MongoTemplate.insert pour une version Long
+                        accessor.setProperty(versionProperty, 0L);
+                    }
+                    operations.insert(entity);
+                    chunkResults.add(new BatchResultDTO(start + i, id.toString(), BatchResultDTO.CREATED, null));
+                } else {
+                    operations.upsert(GraphReader.byId(id.toString()), PatchWriter.replacement(this.template.getConverter(), entity));
+                    chunkResults.add(new BatchResultDTO(start + i, id.toString(), BatchResultDTO.UPDATED, null));
+                }
+            }
+            try {
+                operations.execute();
+            } catch (BulkOperationException e) {
+                for (BulkWriteError error : e.getErrors()) {
+                    BatchResultDTO failed = chunkResults.get(error.getIndex());
+                    failed.setStatus(BatchResultDTO.FAILED);
+                    failed.setError(error.getMessage());
+                }
+            }
+            results.addAll(chunkResults);
+        }
+        return results;
+    }
+}
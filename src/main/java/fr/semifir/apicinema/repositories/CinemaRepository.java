@@ -1,6 +1,20 @@
 package fr.semifir.apicinema.repositories;
 
 import fr.semifir.apicinema.entities.Cinema;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface CinemaRepository extends MongoRepository<Cinema, String> { }
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface CinemaRepository extends MongoRepository<Cinema, String> {
+
+    List<Cinema> findAllBy(Pageable pageable);
+
+    List<Cinema> findByIdGreaterThan(String id, Pageable pageable);
+
+    Stream<Cinema> streamAllBy();
+
+    long deleteByIdIn(Collection<String> ids);
+}
@@ -0,0 +1,58 @@
+package fr.semifir.apicinema.repositories;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Un compteur de version par collection, dans la collection versions ({_id: "seance", version: 12}).
+ * Les services l'incrémentent à chaque écriture : tant qu'il ne bouge pas, les réponses des GET
+ * sur la collection ne changent pas, ce qui suffit à répondre 304 sans lire les documents.
+ * Les écritures faites en dehors de l'API ne l'incrémentent pas.
+ */
+public class CollectionVersions {
+
+    static final String COLLECTION = "versions";
+
+    MongoTemplate template;
+
+    public CollectionVersions(MongoTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Incrémente la version de la collection de l'entité
+     * @param type
+     */
+    public void bump(Class<?> type) {
+        Query query = new Query(Criteria.where("_id").is(this.template.getCollectionName(type)));
+        this.template.upsert(query, new Update().inc("version", 1L), COLLECTION);
+    }
+
+    /**
+     * Lit les versions de plusieurs collections en une requête
+     * @param types
+     * @return version par nom de collection, dans l'ordre de types, 0 si la collection n'a jamais été écrite
+     */
+    public Map<String, Long> get(List<Class<?>> types) {
+        Map<String, Long> versions = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>(types.size());
+        for (Class<?> type : types) {
+            String name = this.template.getCollectionName(type);
+            names.add(name);
+            versions.put(name, 0L);
+        }
+        Query query = new Query(Criteria.where("_id").in(names));
+        for (Document document : this.template.find(query, Document.class, COLLECTION)) {
+            versions.put(document.getString("_id"), ((Number) document.get("version")).longValue());
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,100 @@
+package fr.semifir.apicinema.repositories;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Références à résoudre, lues dans ?expand=seance,seance.salle : chaque chemin résout
+ * la référence nommée et celles qui la précèdent. Une référence non nommée reste un bouchon
+ * qui ne porte que l'id ; chaque niveau résolu coûte une requête _id $in pour toute la page.
+ */
+public final class Expansion {
+
+    /**
+     * Aucune référence résolue : le comportement par défaut des endpoints
+     */
+    public static final Expansion NONE = new Expansion(Collections.emptyMap());
+
+    /**
+     * Tout le graphe, pour les lectures internes qui ont besoin des entités liées
+     */
+    public static final Expansion ALL = new Expansion(null);
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_]*");
+
+    /**
+     * Références résolues et ce qu'il faut résoudre sous chacune, null pour toutes
+     */
+    private final Map<String, Expansion> references;
+
+    private Expansion(Map<String, Expansion> references) {
+        this.references = references;
+    }
+
+    /**
+     * Lit une liste de chemins séparés par des virgules
+     * Le nom of() permet à Spring de convertir directement un @RequestParam en Expansion
+     * @param expand null ou vide pour aucune référence
+     * @return
+     * @throws IllegalArgumentException si un nom de référence n'est pas valide
+     */
+    public static Expansion of(String expand) throws IllegalArgumentException {
+        if (expand == null || expand.isBlank()) {
+            return NONE;
+        }
+        Map<String, Object> tree = new LinkedHashMap<>();
+        for (String path : expand.split(",")) {
+            Map<String, Object> level = tree;
+            for (String name : path.trim().split("\\.", -1)) {
+                if (!NAME.matcher(name).matches()) {
+                    throw new IllegalArgumentException("Référence invalide : " + path);
+                }
+                level = cast(level.computeIfAbsent(name, key -> new LinkedHashMap<String, Object>()));
+            }
+        }
+        return build(tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> cast(Object level) {
+        return (Map<String, Object>) level;
+    }
+
+    private static Expansion build(Map<String, Object> tree) {
+        Map<String, Expansion> references = new LinkedHashMap<>();
+        tree.forEach((name, nested) -> references.put(name, build(cast(nested))));
+        return new Expansion(Collections.unmodifiableMap(references));
+    }
+
+    /**
+     * @param expansion
+     * @return l'expansion, ou NONE si elle est null
+     */
+    public static Expansion orNone(Expansion expansion) {
+        return expansion == null ? NONE : expansion;
+    }
+
+    /**
+     * @param reference
+     * @return vrai si la référence doit être résolue
+     */
+    public boolean includes(String reference) {
+        return this.references == null || this.references.containsKey(reference);
+    }
+
+    /**
+     * Références à résoudre dans l'entité référencée
+     * @param reference
+     * @return
+     */
+    public Expansion nested(String reference) {
+        return this.references == null ? ALL : this.references.getOrDefault(reference, NONE);
+    }
+
+    @Override
+    public String toString() {
+        return this.references == null ? "*" : this.references.toString();
+    }
+}
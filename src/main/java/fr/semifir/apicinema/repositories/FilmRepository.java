@@ -1,7 +1,11 @@
 package fr.semifir.apicinema.repositories;
 
 import fr.semifir.apicinema.entities.Film;
-import fr.semifir.apicinema.entities.Seance;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface FilmRepository extends MongoRepository<Film, String> { }
+import java.util.Collection;
+
+public interface FilmRepository extends MongoRepository<Film, String> {
+
+    long deleteByIdIn(Collection<String> ids);
+}
@@ -0,0 +1,414 @@
+package fr.semifir.apicinema.repositories;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lecture de Film -> Seance -> Salle -> Cinema sans la résolution @DBRef document par document.
+ * Les documents sont lus bruts, puis chaque niveau de références est chargé
+ * en une seule requête _id $in : lire N films coûte au plus 4 requêtes, quel que soit N.
+ *
+ * Chaque niveau passe par son EntityCache. Le cache ne contient que des entités "plates",
+ * dont la référence est un bouchon qui ne porte que l'id (Salle.cinema = Cinema(id, null)) :
+ * invalider un cinéma suffit, aucune salle en cache ne garde une copie périmée.
+ * Les entités liées sont des copies (withCinema, ...), les entités du cache ne sont jamais modifiées.
+ *
+ * Avec une Projection, seuls les champs demandés sont lus ; avec une Expansion, seules les références
+ * nommées sont résolues. Une référence non résolue garde son bouchon (ou null si la projection l'a écartée) :
+ * ?fields=nom sur les films ne coûte qu'une requête.
+ * Les niveaux liés viennent toujours des caches, entiers : c'est la sérialisation qui les réduit.
+ */
+public class GraphReader {
+
+    /**
+     * Nombre de documents résolus ensemble quand on parcourt un curseur
+     */
+    static final int STREAM_BATCH_SIZE = 500;
+
+    MongoTemplate template;
+    EntityCache<Cinema> cinemaCache;
+    EntityCache<Salle> salleCache;
+    EntityCache<Seance> seanceCache;
+    EntityCache<Film> filmCache;
+
+    public GraphReader(
+            MongoTemplate template,
+            EntityCache<Cinema> cinemaCache,
+            EntityCache<Salle> salleCache,
+            EntityCache<Seance> seanceCache,
+            EntityCache<Film> filmCache
+    ) {
+        this.template = template;
+        this.cinemaCache = cinemaCache;
+        this.salleCache = salleCache;
+        this.seanceCache = seanceCache;
+        this.filmCache = filmCache;
+    }
+
+    /**
+     * Valeur d'_id telle que Spring Data l'enregistre pour un id String
+     * @param id
+     * @return ObjectId si l'id en est un, sinon l'id tel quel
+     */
+    public static Object id(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    /**
+     * Requête sur un _id
+     * @param id
+     * @return
+     */
+    public static Query byId(String id) {
+        return new Query(Criteria.where("_id").is(id(id)));
+    }
+
+    /**
+     * Requête sur plusieurs _id
+     * @param ids
+     * @return
+     */
+    public static Query byIds(Collection<String> ids) {
+        List<Object> values = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            values.add(id(id));
+        }
+        return new Query(Criteria.where("_id").in(values));
+    }
+
+    /**
+     * Requête sur une référence @DBRef, par l'id du document référencé (salle.$id, ...)
+     * C'est la forme couverte par les index déclarés sur les entités
+     * @param field nom de la référence
+     * @param ids
+     * @return
+     */
+    public static Query byRef(String field, Collection<String> ids) {
+        List<Object> values = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            values.add(id(id));
+        }
+        return new Query(Criteria.where(field + ".$id").in(values));
+    }
+
+    public List<Cinema> cinemas(Query query) {
+        return this.cinemas(query, Projection.ALL);
+    }
+
+    public List<Salle> salles(Query query) {
+        return this.salles(query, Projection.ALL, Expansion.ALL);
+    }
+
+    public List<Seance> seances(Query query) {
+        return this.seances(query, Projection.ALL, Expansion.ALL);
+    }
+
+    public List<Film> films(Query query) {
+        return this.films(query, Projection.ALL, Expansion.ALL);
+    }
+
+    /*
+     * Lectures limitées aux champs demandés : la projection est appliquée à la requête,
+     * seules les références présentes dans la projection et dans l'expansion sont résolues
+     */
+
+    public List<Cinema> cinemas(Query query, Projection projection) {
+        return this.readCinemas(this.find(projection.apply(query), Cinema.class));
+    }
+
+    public List<Salle> salles(Query query, Projection projection, Expansion expansion) {
+        return this.linkSalles(this.readSalles(this.find(projection.apply(query), Salle.class)), projection, expansion);
+    }
+
+    public List<Seance> seances(Query query, Projection projection, Expansion expansion) {
+        return this.linkSeances(this.readSeances(this.find(projection.apply(query), Seance.class)), projection, expansion);
+    }
+
+    public List<Film> films(Query query, Projection projection, Expansion expansion) {
+        return this.linkFilms(this.readFilms(this.find(projection.apply(query), Film.class)), projection, expansion);
+    }
+
+    /**
+     * Ids des documents qui correspondent à la requête, sans lire le reste des documents
+     * @param query
+     * @param type
+     * @return
+     */
+    public List<String> ids(Query query, Class<?> type) {
+        query.fields().include("_id");
+        List<String> ids = new ArrayList<>();
+        for (Document document : this.find(query, type)) {
+            ids.add(document.get("_id").toString());
+        }
+        return ids;
+    }
+
+    public Optional<Cinema> cinema(String id) {
+        return Optional.ofNullable(this.cinemaCache.getAll(Set.of(id), this::loadCinemas).get(id));
+    }
+
+    public Optional<Salle> salle(String id) {
+        return this.salle(id, Projection.ALL, Expansion.ALL);
+    }
+
+    public Optional<Seance> seance(String id) {
+        return this.seance(id, Projection.ALL, Expansion.ALL);
+    }
+
+    public Optional<Film> film(String id) {
+        return this.film(id, Projection.ALL, Expansion.ALL);
+    }
+
+    /*
+     * Lectures par id : le document vient du cache, entier, seules les références demandées sont résolues
+     */
+
+    public Optional<Salle> salle(String id, Projection projection, Expansion expansion) {
+        return this.first(this.linkSalles(this.values(this.salleCache.getAll(Set.of(id), this::loadSalles)), projection, expansion));
+    }
+
+    public Optional<Seance> seance(String id, Projection projection, Expansion expansion) {
+        return this.first(this.linkSeances(this.values(this.seanceCache.getAll(Set.of(id), this::loadSeances)), projection, expansion));
+    }
+
+    public Optional<Film> film(String id, Projection projection, Expansion expansion) {
+        return this.first(this.linkFilms(this.values(this.filmCache.getAll(Set.of(id), this::loadFilms)), projection, expansion));
+    }
+
+    public Stream<Salle> streamSalles(Query query) {
+        return this.streamSalles(query, Projection.ALL, Expansion.ALL);
+    }
+
+    public Stream<Seance> streamSeances(Query query) {
+        return this.streamSeances(query, Projection.ALL, Expansion.ALL);
+    }
+
+    public Stream<Film> streamFilms(Query query) {
+        return this.streamFilms(query, Projection.ALL, Expansion.ALL);
+    }
+
+    public Stream<Salle> streamSalles(Query query, Projection projection, Expansion expansion) {
+        return this.stream(projection.apply(query), Salle.class, documents -> this.linkSalles(this.readSalles(documents), projection, expansion));
+    }
+
+    public Stream<Seance> streamSeances(Query query, Projection projection, Expansion expansion) {
+        return this.stream(projection.apply(query), Seance.class, documents -> this.linkSeances(this.readSeances(documents), projection, expansion));
+    }
+
+    public Stream<Film> streamFilms(Query query, Projection projection, Expansion expansion) {
+        return this.stream(projection.apply(query), Film.class, documents -> this.linkFilms(this.readFilms(documents), projection, expansion));
+    }
+
+    /*
+     * Lecture des documents bruts en entités plates, références réduites à leur id
+     */
+
+    private List<Cinema> readCinemas(List<Document> documents) {
+        List<Cinema> cinemas = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            cinemas.add(this.read(Cinema.class, document));
+        }
+        return cinemas;
+    }
+
+    private List<Salle> readSalles(List<Document> documents) {
+        List<Salle> salles = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            String cinemaId = referenceId(document.remove("cinema"));
+            Salle salle = this.read(Salle.class, document);
+            salle.setCinema(cinemaId == null ? null : new Cinema(cinemaId, null));
+            salles.add(salle);
+        }
+        return salles;
+    }
+
+    private List<Seance> readSeances(List<Document> documents) {
+        List<Seance> seances = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            String salleId = referenceId(document.remove("salle"));
+            Seance seance = this.read(Seance.class, document);
+            seance.setSalle(salleId == null ? null : new Salle(salleId, null, null, null));
+            seances.add(seance);
+        }
+        return seances;
+    }
+
+    private List<Film> readFilms(List<Document> documents) {
+        List<Film> films = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            String seanceId = referenceId(document.remove("seance"));
+            Film film = this.read(Film.class, document);
+            film.setSeance(seanceId == null ? null : new Seance(seanceId, null, null));
+            films.add(film);
+        }
+        return films;
+    }
+
+    /*
+     * Chargement des absents du cache : une requête _id $in par niveau
+     */
+
+    private Map<String, Cinema> loadCinemas(Set<String> ids) {
+        return index(this.readCinemas(this.find(byIds(ids), Cinema.class)), Cinema::getId);
+    }
+
+    private Map<String, Salle> loadSalles(Set<String> ids) {
+        return index(this.readSalles(this.find(byIds(ids), Salle.class)), Salle::getId);
+    }
+
+    private Map<String, Seance> loadSeances(Set<String> ids) {
+        return index(this.readSeances(this.find(byIds(ids), Seance.class)), Seance::getId);
+    }
+
+    private Map<String, Film> loadFilms(Set<String> ids) {
+        return index(this.readFilms(this.find(byIds(ids), Film.class)), Film::getId);
+    }
+
+    /*
+     * Remplacement des bouchons par les entités liées, niveau par niveau
+     */
+
+    private List<Salle> linkSalles(List<Salle> salles, Projection projection, Expansion expansion) {
+        if (!projection.includes("cinema") || !expansion.includes("cinema")) {
+            return salles;
+        }
+        Map<String, Cinema> cinemas = this.cinemaCache.getAll(referenceIds(salles, Salle::getCinema, Cinema::getId), this::loadCinemas);
+        List<Salle> linked = new ArrayList<>(salles.size());
+        for (Salle salle : salles) {
+            linked.add(salle.withCinema(salle.getCinema() == null ? null : cinemas.get(salle.getCinema().getId())));
+        }
+        return linked;
+    }
+
+    private List<Seance> linkSeances(List<Seance> seances, Projection projection, Expansion expansion) {
+        if (!projection.includes("salle") || !expansion.includes("salle")) {
+            return seances;
+        }
+        Map<String, Salle> flat = this.salleCache.getAll(referenceIds(seances, Seance::getSalle, Salle::getId), this::loadSalles);
+        Map<String, Salle> salles = index(this.linkSalles(this.values(flat), projection.nested("salle"), expansion.nested("salle")), Salle::getId);
+        List<Seance> linked = new ArrayList<>(seances.size());
+        for (Seance seance : seances) {
+            linked.add(seance.withSalle(seance.getSalle() == null ? null : salles.get(seance.getSalle().getId())));
+        }
+        return linked;
+    }
+
+    private List<Film> linkFilms(List<Film> films, Projection projection, Expansion expansion) {
+        if (!projection.includes("seance") || !expansion.includes("seance")) {
+            return films;
+        }
+        Map<String, Seance> flat = this.seanceCache.getAll(referenceIds(films, Film::getSeance, Seance::getId), this::loadSeances);
+        Map<String, Seance> seances = index(this.linkSeances(this.values(flat), projection.nested("seance"), expansion.nested("seance")), Seance::getId);
+        List<Film> linked = new ArrayList<>(films.size());
+        for (Film film : films) {
+            linked.add(film.withSeance(film.getSeance() == null ? null : seances.get(film.getSeance().getId())));
+        }
+        return linked;
+    }
+
+    private List<Document> find(Query query, Class<?> type) {
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    private <T> T read(Class<T> type, Document document) {
+        return this.template.getConverter().read(type, document);
+    }
+
+    /**
+     * Parcourt un curseur Mongo en résolvant les références par lots de STREAM_BATCH_SIZE
+     */
+    private <T> Stream<T> stream(Query query, Class<T> type, Function<List<Document>, List<T>> link) {
+        CloseableIterator<Document> cursor = this.template.stream(
+                query, Document.class, this.template.getCollectionName(type));
+        Iterator<List<Document>> batches = new Iterator<List<Document>>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public List<Document> next() {
+                if (!cursor.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<Document> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+                while (cursor.hasNext() && batch.size() < STREAM_BATCH_SIZE) {
+                    batch.add(cursor.next());
+                }
+                return batch;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .flatMap(batch -> link.apply(batch).stream())
+                .onClose(cursor::close);
+    }
+
+    private <T> List<T> values(Map<String, T> byId) {
+        return new ArrayList<>(byId.values());
+    }
+
+    private <T> Optional<T> first(List<T> entities) {
+        return entities.isEmpty() ? Optional.empty() : Optional.of(entities.get(0));
+    }
+
+    /**
+     * Ids des bouchons d'une référence
+     */
+    private static <T, R> Set<String> referenceIds(List<T> entities, Function<T, R> reference, Function<R, String> id) {
+        Set<String> ids = new HashSet<>();
+        for (T entity : entities) {
+            R referenced = reference.apply(entity);
+            if (referenced != null) {
+                ids.add(id.apply(referenced));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Id référencé, que le driver ait décodé la référence en DBRef ou en {$ref, $id}
+     */
+    private static String referenceId(Object reference) {
+        Object id = null;
+        if (reference instanceof DBRef) {
+            id = ((DBRef) reference).getId();
+        } else if (reference instanceof Document) {
+            id = ((Document) reference).get("$id");
+        }
+        return id == null ? null : id.toString();
+    }
+
+    private static <T> Map<String, T> index(List<T> entities, Function<T, String> id) {
+        Map<String, T> byId = new HashMap<>(entities.size() * 2);
+        for (T entity : entities) {
+            byId.put(id.apply(entity), entity);
+        }
+        return byId;
+    }
+}
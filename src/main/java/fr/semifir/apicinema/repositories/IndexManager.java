@@ -0,0 +1,73 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Crée au démarrage les index déclarés sur les entités (@CompoundIndex, @Indexed),
+ * puis vérifie qu'ils existent bien côté Mongo.
+ * Spring Boot ne les crée plus de lui-même (spring.data.mongodb.auto-index-creation=false par défaut).
+ */
+public class IndexManager {
+
+    static final List<Class<?>> ENTITIES = List.of(Cinema.class, Salle.class, Seance.class, Film.class, Reservation.class);
+
+    MongoTemplate template;
+    IndexResolver resolver;
+
+    public IndexManager(MongoTemplate template) {
+        this.template = template;
+        this.resolver = IndexResolver.create(template.getConverter().getMappingContext());
+    }
+
+    /**
+     * Crée les index manquants, ensureIndex ne fait rien pour ceux qui existent déjà
+     * @throws IllegalStateException si un index déclaré est toujours absent après création
+     */
+    public void ensureIndexes() throws IllegalStateException {
+        for (Class<?> type : ENTITIES) {
+            IndexOperations operations = this.template.indexOps(type);
+            for (IndexDefinition definition : this.resolver.resolveIndexFor(type)) {
+                operations.ensureIndex(definition);
+            }
+        }
+        List<String> missing = this.missingIndexes();
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Index absents après création : " + missing);
+        }
+    }
+
+    /**
+     * Index déclarés sur les entités mais absents de Mongo
+     * @return collection.nom de chaque index manquant
+     */
+    public List<String> missingIndexes() {
+        List<String> missing = new ArrayList<>();
+        for (Class<?> type : ENTITIES) {
+            Set<String> existing = new HashSet<>();
+            for (IndexInfo info : this.template.indexOps(type).getIndexInfo()) {
+                existing.add(info.getName());
+            }
+            for (IndexDefinition definition : this.resolver.resolveIndexFor(type)) {
+                String name = definition.getIndexOptions().getString("name");
+                if (!existing.contains(name)) {
+                    missing.add(this.template.getCollectionName(type) + "." + name);
+                }
+            }
+        }
+        return missing;
+    }
+}
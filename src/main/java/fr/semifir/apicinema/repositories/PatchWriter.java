@@ -0,0 +1,211 @@
+package fr.semifir.apicinema.repositories;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.semifir.apicinema.entities.InsertOnly;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Écritures d'un seul document par un update ciblé, sans relire ni réécrire le document entier.
+ *
+ * Un JSON Merge Patch (RFC 7396) devient un seul findAndModify : un champ présent devient un $set,
+ * un champ à null un $unset, les champs absents ne sont pas touchés. Une référence se modifie par son id,
+ * {"salle": {"id": "..."}}, et le convertisseur en fait le DBRef.
+ *
+ * Chaque document porte une version (@Version), incrémentée à chaque écriture et renvoyée dans les DTO.
+ * Le client renvoie la version lue dans son PUT ou son PATCH ; elle n'est pas écrite : c'est la version
+ * attendue, ajoutée au filtre.
+ * Si le document a changé depuis, rien n'est écrit et c'est une ConflictException, sans nouvel essai :
+ * le client relit le document et décide, le serveur ne rejoue jamais une écriture concurrente.
+ *
+ * Les champs @InsertOnly (Seance.remaining) ne sont écrits qu'à la création du document :
+ * un PATCH qui les donne est refusé, un remplacement les ignore.
+ */
+public class PatchWriter {
+
+    MongoTemplate template;
+    ObjectMapper objectMapper;
+
+    public PatchWriter(MongoTemplate template, ObjectMapper objectMapper) {
+        this.template = template;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Applique un JSON Merge Patch au document et incrémente sa version
+     * Un patch vide (ou qui ne donne que la version) n'écrit rien et retourne le document
+     * @param id
+     * @param patch objet JSON avec les champs à modifier, et la version attendue s'il y a lieu
+     * @param type
+     * @return l'entité après le patch
+     * @throws NotFoundException si le document n'existe pas
+     * @throws ConflictException si la version attendue n'est plus celle du document
+     * @throws IllegalArgumentException si le patch n'est pas un objet, touche l'id, un champ @InsertOnly
+     * ou un champ inconnu, ou si une valeur n'a pas le bon type
+     */
+    public <T> T patch(String id, JsonNode patch, Class<T> type) throws NotFoundException, ConflictException, IllegalArgumentException {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("Le patch doit être un objet JSON");
+        }
+        MongoPersistentEntity<?> entity = this.template.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+        Query query = GraphReader.byId(id);
+        Long expected = null;
+        Update update = new Update();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            MongoPersistentProperty property = entity.getPersistentProperty(field.getKey());
+            if (property == null || property.isIdProperty() || property.isAnnotationPresent(InsertOnly.class)) {
+                throw new IllegalArgumentException("Champ non modifiable : " + field.getKey());
+            }
+            JsonNode value = field.getValue();
+            if (property.isVersionProperty()) {
+                if (!value.isNull()) {
+                    if (!value.isIntegralNumber()) {
+                        throw new IllegalArgumentException("Version invalide : " + value);
+                    }
+                    expected = value.longValue();
+                    query.addCriteria(Criteria.where(property.getFieldName()).is(expected));
+                }
+            } else if (value.isNull()) {
+                update.unset(property.getFieldName());
+            } else {
+                update.set(property.getFieldName(), this.value(property, value));
+            }
+        }
+        T patched;
+        if (update.getUpdateObject().isEmpty()) {
+            patched = this.template.findOne(query, type);
+        } else {
+            MongoPersistentProperty version = entity.getVersionProperty();
+            if (version != null) {
+                update.inc(version.getFieldName(), 1);
+            }
+            patched = this.template.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), type);
+        }
+        if (patched == null) {
+            // Un seul aller-retour de plus, et seulement en cas d'échec, pour distinguer 404 et 409
+            if (expected == null || !this.template.exists(GraphReader.byId(id), type)) {
+                throw new NotFoundException("Le document n'a pas été trouvé");
+            }
+            throw new ConflictException("Le document n'est plus à la version " + expected);
+        }
+        return patched;
+    }
+
+    /**
+     * Remplace le document, ou le crée, en incrémentant sa version : le PUT d'une entité qui a un id.
+     * Sans version donnée, le document est remplacé sans vérification ; avec une version,
+     * seulement s'il en est encore à cette version.
+     * @param entity entité avec un id
+     * @param type
+     * @return l'entité enregistrée, avec sa nouvelle version
+     * @throws ConflictException si la version donnée n'est plus celle du document, ou s'il n'existe pas
+     */
+    public <T> T replace(T entity, Class<T> type) throws ConflictException {
+        MongoConverter converter = this.template.getConverter();
+        T replaced = this.template.findAndModify(
+                replaced(converter, entity),
+                replacement(converter, entity),
+                // Avec une version, un document absent n'est pas recréé : c'est un conflit, comme pour save()
+                FindAndModifyOptions.options().returnNew(true).upsert(version(converter, entity) == null),
+                type);
+        if (replaced == null) {
+            throw new ConflictException("Le document n'est plus à la version attendue");
+        }
+        return replaced;
+    }
+
+    /**
+     * Filtre du remplacement de l'entité : son id, et sa version si elle en a une
+     * @param converter
+     * @param entity entité avec un id
+     * @return
+     */
+    public static Query replaced(MongoConverter converter, Object entity) {
+        MongoPersistentEntity<?> persistentEntity = converter.getMappingContext().getRequiredPersistentEntity(entity.getClass());
+        Object id = persistentEntity.getIdentifierAccessor(entity).getRequiredIdentifier();
+        Query query = GraphReader.byId(id.toString());
+        Object expected = version(converter, entity);
+        if (expected != null) {
+            query.addCriteria(Criteria.where(persistentEntity.getRequiredVersionProperty().getFieldName()).is(expected));
+        }
+        return query;
+    }
+
+    /**
+     * @param converter
+     * @param entity
+     * @return la version donnée par l'entité, null si elle n'en a pas
+     */
+    public static Object version(MongoConverter converter, Object entity) {
+        MongoPersistentEntity<?> persistentEntity = converter.getMappingContext().getRequiredPersistentEntity(entity.getClass());
+        MongoPersistentProperty version = persistentEntity.getVersionProperty();
+        return version == null ? null : persistentEntity.getPropertyAccessor(entity).getProperty(version);
+    }
+
+    /**
+     * Update qui fait le travail d'un replaceOne en incrémentant la version :
+     * $set des champs écrits par le convertisseur, $unset des champs null de l'entité,
+     * $setOnInsert des champs @InsertOnly, qu'une mise à jour ne touche jamais
+     * Un replaceOne ne peut pas faire de $inc, et une version remise à null casserait les PATCH suivants
+     * @param converter
+     * @param entity
+     * @return
+     */
+    public static Update replacement(MongoConverter converter, Object entity) {
+        MongoPersistentEntity<?> persistentEntity = converter.getMappingContext().getRequiredPersistentEntity(entity.getClass());
+        MongoPersistentProperty version = persistentEntity.getVersionProperty();
+        Document document = new Document();
+        converter.write(entity, document);
+        document.remove("_id");
+        Update update = new Update();
+        for (MongoPersistentProperty property : persistentEntity) {
+            if (property.isIdProperty() || property.isVersionProperty()) {
+                continue;
+            }
+            if (property.isAnnotationPresent(InsertOnly.class)) {
+                Object initial = document.remove(property.getFieldName());
+                if (initial != null) {
+                    update.setOnInsert(property.getFieldName(), initial);
+                }
+                continue;
+            }
+            if (!document.containsKey(property.getFieldName())) {
+                update.unset(property.getFieldName());
+            }
+        }
+        if (version != null) {
+            document.remove(version.getFieldName());
+            update.inc(version.getFieldName(), 1);
+        }
+        // _class compris
+        document.forEach(update::set);
+        return update;
+    }
+
+    /**
+     * Valeur du patch convertie dans le type du champ
+     * Seul l'id d'une référence se change ici : le document référencé a son propre PATCH
+     */
+    private Object value(MongoPersistentProperty property, JsonNode value) {
+        if (property.isDbReference()
+                && (!value.isObject() || value.size() != 1 || !value.path("id").isTextual())) {
+            throw new IllegalArgumentException("Une référence se modifie par son id : " + property.getName());
+        }
+        return this.objectMapper.convertValue(value, property.getType());
+    }
+}
@@ -0,0 +1,152 @@
+package fr.semifir.apicinema.repositories;
+
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Champs demandés par ?fields=nom,seance.date : chaque nom est un champ du document,
+ * les noms pointés descendent dans les références (seance.salle.cinema).
+ * Le premier niveau devient une projection Mongo, les niveaux suivants bornent les références
+ * que le GraphReader résout (avec l'Expansion) : une référence non demandée n'est jamais lue.
+ */
+public final class Projection {
+
+    /**
+     * Tous les champs, toutes les références : le comportement sans ?fields=
+     */
+    public static final Projection ALL = new Projection(null);
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_]*");
+
+    /**
+     * Champs demandés et leur sous-projection, null pour tous les champs
+     */
+    private final Map<String, Projection> fields;
+
+    private Projection(Map<String, Projection> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * Lit une liste de champs séparés par des virgules
+     * Le nom of() permet à Spring de convertir directement un @RequestParam en Projection
+     * @param fields null ou vide pour tous les champs
+     * @return
+     * @throws IllegalArgumentException si un nom de champ n'est pas valide
+     */
+    public static Projection of(String fields) throws IllegalArgumentException {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Map<String, Object> tree = new LinkedHashMap<>();
+        for (String field : fields.split(",")) {
+            Map<String, Object> level = tree;
+            String[] names = field.trim().split("\\.", -1);
+            for (int i = 0; i < names.length; i++) {
+                if (!NAME.matcher(names[i]).matches()) {
+                    throw new IllegalArgumentException("Champ invalide : " + field);
+                }
+                boolean last = i == names.length - 1;
+                Object nested = level.get(names[i]);
+                if (last || nested == ALL) {
+                    // Un champ demandé en entier l'emporte sur ses sous-champs
+                    level.put(names[i], ALL);
+                    break;
+                }
+                if (nested == null) {
+                    nested = new LinkedHashMap<String, Object>();
+                    level.put(names[i], nested);
+                }
+                level = cast(nested);
+            }
+        }
+        return build(tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> cast(Object level) {
+        return (Map<String, Object>) level;
+    }
+
+    private static Projection build(Map<String, Object> tree) {
+        Map<String, Projection> fields = new LinkedHashMap<>();
+        tree.forEach((name, nested) -> fields.put(name, nested == ALL ? ALL : build(cast(nested))));
+        return new Projection(Collections.unmodifiableMap(fields));
+    }
+
+    /**
+     * @param projection
+     * @return la projection, ou ALL si elle est null
+     */
+    public static Projection orAll(Projection projection) {
+        return projection == null ? ALL : projection;
+    }
+
+    public boolean isAll() {
+        return this.fields == null;
+    }
+
+    /**
+     * @param field
+     * @return vrai si le champ est demandé, en entier ou en partie
+     */
+    public boolean includes(String field) {
+        return this.isAll() || this.fields.containsKey(field);
+    }
+
+    /**
+     * Projection à appliquer à l'entité référencée par le champ
+     * @param field un champ pour lequel includes() est vrai
+     * @return
+     */
+    public Projection nested(String field) {
+        return this.isAll() ? ALL : this.fields.getOrDefault(field, ALL);
+    }
+
+    /**
+     * Un chemin est gardé s'il mène à un champ demandé, s'il est sous un champ demandé en entier,
+     * ou s'il se termine par id : les références gardent toujours leur id
+     * @param path noms des champs depuis la racine
+     * @return
+     */
+    public boolean includes(List<String> path) {
+        Projection projection = this;
+        for (String field : path) {
+            if (projection.isAll() || "id".equals(field)) {
+                return true;
+            }
+            if (!projection.fields.containsKey(field)) {
+                return false;
+            }
+            projection = projection.fields.get(field);
+        }
+        return true;
+    }
+
+    /**
+     * Ajoute à la requête la projection Mongo des champs de premier niveau, _id compris
+     * @param query
+     * @return la même requête
+     */
+    public Query apply(Query query) {
+        if (!this.isAll()) {
+            for (String field : this.fields.keySet()) {
+                if (!"id".equals(field)) {
+                    query.fields().include(field);
+                }
+            }
+            query.fields().include("_id");
+        }
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return this.isAll() ? "*" : this.fields.toString();
+    }
+}
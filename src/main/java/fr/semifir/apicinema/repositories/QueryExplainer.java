@@ -0,0 +1,82 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.dtos.diagnostic.QueryPlanDTO;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lance explain (verbosity queryPlanner) sur une requête et résume le plan gagnant.
+ * Les filtres sont envoyés tels quels : les requêtes doivent déjà utiliser les valeurs
+ * stockées en base (ObjectId pour _id et $id), comme celles de GraphReader et Pagination.
+ */
+public class QueryExplainer {
+
+    static final String COLLSCAN = "COLLSCAN";
+
+    MongoTemplate template;
+
+    public QueryExplainer(MongoTemplate template) {
+        this.template = template;
+    }
+
+    public QueryPlanDTO explain(String name, Class<?> type, Query query) {
+        String collection = this.template.getCollectionName(type);
+        Document find = new Document("find", collection)
+                .append("filter", query.getQueryObject())
+                .append("sort", query.getSortObject());
+        if (query.getLimit() > 0) {
+            find.append("limit", query.getLimit());
+        }
+        Document result = this.template.getDb().runCommand(
+                new Document("explain", find).append("verbosity", "queryPlanner"));
+        List<String> stages = stages(winningPlan(result));
+        return new QueryPlanDTO(
+                name,
+                collection,
+                query.getQueryObject().toJson(),
+                query.getSortObject().toJson(),
+                stages,
+                stages.contains(COLLSCAN)
+        );
+    }
+
+    /**
+     * Plan gagnant d'un résultat d'explain, y compris quand le moteur SBE l'emballe dans queryPlan
+     * @param explain
+     * @return
+     */
+    static Document winningPlan(Document explain) {
+        Document plan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        if (plan.containsKey("queryPlan")) {
+            return plan.get("queryPlan", Document.class);
+        }
+        return plan;
+    }
+
+    /**
+     * Étapes d'un plan, parcours en profondeur par inputStage / inputStages
+     * @param plan
+     * @return
+     */
+    static List<String> stages(Document plan) {
+        List<String> stages = new ArrayList<>();
+        collect(plan, stages);
+        return stages;
+    }
+
+    private static void collect(Document plan, List<String> stages) {
+        stages.add(plan.getString("stage"));
+        if (plan.containsKey("inputStage")) {
+            collect(plan.get("inputStage", Document.class), stages);
+        }
+        if (plan.containsKey("inputStages")) {
+            for (Document input : plan.getList("inputStages", Document.class)) {
+                collect(input, stages);
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Reservation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Date;
+import java.util.List;
+
+public interface ReservationRepository extends MongoRepository<Reservation, String> {
+
+    List<Reservation> findBySeanceId(String seanceId);
+
+    List<Reservation> findByStatusAndExpiresAtBefore(String status, Date date);
+}
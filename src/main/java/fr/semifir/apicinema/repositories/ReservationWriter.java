@@ -0,0 +1,62 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Reservation;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Changements d'état d'une réservation, chacun en une seule opération Mongo conditionnelle :
+ * de deux appels concurrents sur la même réservation, un seul reçoit le document,
+ * et c'est lui seul qui rend les places.
+ */
+public class ReservationWriter {
+
+    MongoTemplate template;
+
+    public ReservationWriter(MongoTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Supprime une réservation
+     * @param id
+     * @return la réservation telle qu'elle était, vide si un autre appel l'a déjà supprimée
+     */
+    public Optional<Reservation> remove(String id) {
+        return Optional.ofNullable(this.template.findAndRemove(GraphReader.byId(id), Reservation.class));
+    }
+
+    /**
+     * Confirme une réservation encore tenue et dont l'échéance n'est pas passée
+     * @param id
+     * @param now
+     * @return la réservation CONFIRMED, vide si elle n'existe plus, est déjà confirmée ou a expiré
+     */
+    public Optional<Reservation> confirm(String id, Date now) {
+        Query query = GraphReader.byId(id)
+                .addCriteria(Criteria.where("status").is(Reservation.HELD))
+                .addCriteria(Criteria.where("expiresAt").gt(now));
+        Update update = new Update().set("status", Reservation.CONFIRMED).unset("expiresAt");
+        return Optional.ofNullable(this.template.findAndModify(
+                query, update, FindAndModifyOptions.options().returnNew(true), Reservation.class));
+    }
+
+    /**
+     * Supprime une réservation encore tenue dont l'échéance est passée
+     * @param id
+     * @param now
+     * @return la réservation supprimée, vide si elle a été confirmée, annulée ou déjà supprimée
+     */
+    public Optional<Reservation> removeExpired(String id, Date now) {
+        Query query = GraphReader.byId(id)
+                .addCriteria(Criteria.where("status").is(Reservation.HELD))
+                .addCriteria(Criteria.where("expiresAt").lte(now));
+        return Optional.ofNullable(this.template.findAndRemove(query, Reservation.class));
+    }
+}
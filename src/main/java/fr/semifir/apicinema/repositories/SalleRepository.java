@@ -3,4 +3,9 @@ package fr.semifir.apicinema.repositories;
 import fr.semifir.apicinema.entities.Salle;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface SalleRepository extends MongoRepository<Salle, String> { }
+import java.util.Collection;
+
+public interface SalleRepository extends MongoRepository<Salle, String> {
+
+    long deleteByIdIn(Collection<String> ids);
+}
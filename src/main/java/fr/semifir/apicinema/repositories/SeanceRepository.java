@@ -1,7 +1,11 @@
 package fr.semifir.apicinema.repositories;
 
-import fr.semifir.apicinema.entities.Salle;
 import fr.semifir.apicinema.entities.Seance;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
-public interface SeanceRepository extends MongoRepository<Seance, String> { }
+import java.util.Collection;
+
+public interface SeanceRepository extends MongoRepository<Seance, String> {
+
+    long deleteByIdIn(Collection<String> ids);
+}
@@ -0,0 +1,110 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compteur de places restantes d'une séance, tenu par Mongo dans Seance.remaining.
+ * Réserver est un seul findAndModify { remaining >= n } -> $inc -n : la condition et l'écriture
+ * sont atomiques sur le document, correctes quel que soit le nombre d'instances de l'API.
+ * Les réservations passent par des Document, pas par l'entité : elles ne changent pas Seance.version,
+ * un PATCH en cours d'édition n'échoue pas parce que des places ont été vendues entre-temps.
+ * Seules ces méthodes modifient remaining : les écritures du seance ne le posent qu'à sa création (@InsertOnly).
+ */
+public class SeatCounter {
+
+    MongoTemplate template;
+
+    public SeatCounter(MongoTemplate template) {
+        this.template = template;
+    }
+
+    /**
+     * Retire n places si elles sont encore disponibles
+     * Un échec relit le seul champ remaining pour en donner la raison : un compteur créé n'est jamais retiré,
+     * s'il existe à la relecture il existait déjà à la réservation
+     * @param seanceId
+     * @param n
+     * @return les places restantes après la réservation, vide si la séance n'a pas encore de compteur
+     * @throws NotFoundException si la séance n'existe pas
+     * @throws ConflictException si la séance a un compteur mais plus n places
+     */
+    public Optional<Integer> book(String seanceId, int n) throws NotFoundException, ConflictException {
+        Query query = GraphReader.byId(seanceId).addCriteria(Criteria.where("remaining").gte(n));
+        Optional<Integer> remaining = this.modify(query, new Update().inc("remaining", -n));
+        if (remaining.isPresent()) {
+            return remaining;
+        }
+        Query counted = GraphReader.byId(seanceId);
+        counted.fields().include("remaining");
+        Document document = this.template.findOne(counted, Document.class, this.template.getCollectionName(Seance.class));
+        if (document == null) {
+            throw new NotFoundException("Le seance n'a pas été trouvé");
+        }
+        if (document.get("remaining") != null) {
+            throw new ConflictException("Il ne reste pas assez de places");
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Rend n places, par exemple à l'annulation d'une réservation
+     * @param seanceId
+     * @param n
+     * @return les places restantes, vide si la séance n'a pas de compteur
+     */
+    public Optional<Integer> release(String seanceId, int n) {
+        Query query = GraphReader.byId(seanceId).addCriteria(Criteria.where("remaining").exists(true));
+        return this.modify(query, new Update().inc("remaining", n));
+    }
+
+    /**
+     * Crée le compteur d'une séance qui n'en a pas encore, sans toucher à un compteur existant
+     * @param seanceId
+     * @param capacity
+     */
+    public void initialize(String seanceId, int capacity) {
+        Query query = GraphReader.byId(seanceId).addCriteria(Criteria.where("remaining").exists(false));
+        this.template.updateFirst(query, new Update().set("remaining", capacity), Seance.class);
+    }
+
+    /**
+     * Compteurs actuels de plusieurs séances, en une requête sans lire le reste des documents
+     * @param seanceIds
+     * @return remaining par id, les séances sans compteur sont absentes
+     */
+    public Map<String, Integer> remaining(Collection<String> seanceIds) {
+        Query query = GraphReader.byIds(seanceIds);
+        query.fields().include("remaining");
+        Map<String, Integer> remaining = new HashMap<>();
+        for (Document document : this.template.find(query, Document.class, this.template.getCollectionName(Seance.class))) {
+            if (document.get("remaining") != null) {
+                remaining.put(document.get("_id").toString(), document.getInteger("remaining"));
+            }
+        }
+        return remaining;
+    }
+
+    private Optional<Integer> modify(Query query, Update update) {
+        query.fields().include("remaining");
+        Document modified = this.template.findAndModify(
+                query,
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                Document.class,
+                this.template.getCollectionName(Seance.class));
+        return modified == null ? Optional.empty() : Optional.of(modified.getInteger("remaining"));
+    }
+}
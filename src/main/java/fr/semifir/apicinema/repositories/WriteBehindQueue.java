@@ -0,0 +1,296 @@
+package fr.semifir.apicinema.repositories;
+
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Écritures différées (write-behind) : les mises à jour attendent au plus window dans une file par id,
+ * où la dernière écriture d'un même id remplace les précédentes, puis partent ensemble en un bulkWrite.
+ * La file est bornée : pleine, elle refuse les nouveaux ids et c'est l'appelant qui les écrit,
+ * ce qui ralentit les clients plutôt que la mémoire ; un flush ne se fait jamais dans le thread de l'appelant.
+ *
+ * Une lecture faite avant l'écriture voit encore l'ancien document (au plus window).
+ * Les suppressions doivent annuler les écritures en attente (cancel) pour ne pas être écrasées par elles.
+ * Une file désactivée (disabled()) refuse toutes les écritures : l'appelant écrit tout de suite.
+ *
+ * L'écriture est au mieux (best-effort) : une écriture acceptée est perdue si l'instance s'arrête
+ * brutalement avant le flush, ou si Mongo la refuse maxAttempts fois (comptée dans api.write_behind.dropped).
+ * Une erreur de tout le bulkWrite (Mongo indisponible) remet tout en attente sans compter de tentative.
+ */
+public class WriteBehindQueue<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    private final String name;
+    private final int capacity;
+    private final Duration window;
+    private final int maxAttempts;
+
+    /**
+     * Écritures en attente, par id, gardées par this
+     */
+    private final Map<String, T> pending = new LinkedHashMap<>();
+
+    /**
+     * Écritures refusées par Mongo, par id, gardées par this : une nouvelle écriture de l'id repart de zéro
+     */
+    private final Map<String, Integer> attempts = new HashMap<>();
+
+    /**
+     * Un seul flush à la fois, et pas d'annulation pendant un flush
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * null pour une file désactivée
+     */
+    private final ScheduledExecutorService scheduler;
+    private Function<List<T>, List<BatchResultDTO>> flusher;
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private Timer flushTimer;
+
+    /**
+     * @param name nom de la collection, tag des métriques
+     * @param capacity nombre d'ids en attente au-delà duquel l'appelant écrit lui-même les nouveaux ids
+     * @param window délai entre deux écritures
+     * @param maxAttempts écritures refusées par Mongo avant d'abandonner une entité
+     * @param registry null sans métriques
+     */
+    public WriteBehindQueue(String name, int capacity, Duration window, int maxAttempts, MeterRegistry registry) {
+        this(name, capacity, window, maxAttempts, registry, true);
+    }
+
+    private WriteBehindQueue(String name, int capacity, Duration window, int maxAttempts, MeterRegistry registry, boolean enabled) {
+        this.name = name;
+        this.capacity = capacity;
+        this.window = window;
+        this.maxAttempts = maxAttempts;
+        this.scheduler = !enabled ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (registry != null) {
+            this.bindTo(registry);
+        }
+    }
+
+    /**
+     * File qui n'attend jamais : offer() refuse tout, quand api.write-behind.enabled est faux
+     * @param name nom de la collection
+     * @return
+     */
+    public static <T> WriteBehindQueue<T> disabled(String name) {
+        return new WriteBehindQueue<>(name, 0, Duration.ZERO, 0, null, false);
+    }
+
+    /**
+     * Démarre les écritures périodiques
+     * @param flusher écrit les entités d'un coup, un résultat par entité
+     */
+    public void start(Function<List<T>, List<BatchResultDTO>> flusher) {
+        this.flusher = flusher;
+        if (this.scheduler == null) {
+            return;
+        }
+        long window = this.window.toMillis();
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Met l'entité en attente, à la place de celle du même id s'il y en a une
+     * @param id
+     * @param entity
+     * @return false si la file est désactivée, ou pleine et sans écriture de cet id : l'appelant doit écrire l'entité lui-même
+     */
+    public boolean offer(String id, T entity) {
+        if (this.scheduler == null) {
+            return false;
+        }
+        synchronized (this) {
+            if (this.pending.size() >= this.capacity && !this.pending.containsKey(id)) {
+                return false;
+            }
+            this.offered.increment();
+            this.attempts.remove(id);
+            if (this.pending.put(id, entity) != null) {
+                this.coalesced.increment();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Annule les écritures en attente de ces ids, en attendant la fin d'un flush en cours
+     * @param ids
+     */
+    public void cancel(Collection<String> ids) {
+        synchronized (this.flushLock) {
+            synchronized (this) {
+                ids.forEach(id -> {
+                    this.pending.remove(id);
+                    this.attempts.remove(id);
+                });
+            }
+        }
+    }
+
+    /**
+     * Écrit tout ce qui est en attente. En cas d'erreur, les entités non remplacées entre-temps
+     * sont remises en attente pour le prochain flush ; une entité refusée maxAttempts fois est abandonnée.
+     */
+    public void flush() {
+        synchronized (this.flushLock) {
+            List<String> ids;
+            List<T> entities;
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+                ids = new ArrayList<>(this.pending.keySet());
+                entities = new ArrayList<>(this.pending.values());
+                this.pending.clear();
+            }
+            long start = System.nanoTime();
+            List<BatchResultDTO> results;
+            try {
+                results = this.flusher.apply(entities);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    for (int i = 0; i < ids.size(); i++) {
+                        this.pending.putIfAbsent(ids.get(i), entities.get(i));
+                    }
+                }
+                throw e;
+            } finally {
+                if (this.flushTimer != null) {
+                    this.flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+            this.retry(ids, entities, results);
+        }
+    }
+
+    /**
+     * Remet en attente les entités refusées, sauf si une écriture plus récente du même id les a remplacées
+     */
+    private void retry(List<String> ids, List<T> entities, List<BatchResultDTO> results) {
+        int failed = 0;
+        synchronized (this) {
+            for (BatchResultDTO result : results) {
+                String id = ids.get(result.getIndex());
+                if (!BatchResultDTO.FAILED.equals(result.getStatus())) {
+                    this.attempts.remove(id);
+                    continue;
+                }
+                failed++;
+                if (this.pending.containsKey(id)) {
+                    // Remplacée par une écriture plus récente, qui a ses propres essais
+                    continue;
+                }
+                int attempt = this.attempts.merge(id, 1, Integer::sum);
+                if (attempt < this.maxAttempts) {
+                    this.pending.put(id, entities.get(result.getIndex()));
+                } else {
+                    this.attempts.remove(id);
+                    this.dropped.increment();
+                    log.error("Write-behind {} : écriture de {} abandonnée après {} essais, {}", this.name, id, attempt, result.getError());
+                }
+            }
+        }
+        if (failed > 0) {
+            log.warn("Write-behind {} : {} écritures sur {} en échec", this.name, failed, entities.size());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind {} : écriture reportée, {}", this.name, e.getMessage());
+        }
+    }
+
+    /**
+     * Arrête les écritures périodiques et écrit ce qui reste : à l'arrêt de l'application
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException {
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            this.scheduler.awaitTermination(this.window.toMillis() + 5000, TimeUnit.MILLISECONDS);
+        }
+        if (this.flusher != null) {
+            this.flush();
+        }
+    }
+
+    /**
+     * @param id
+     * @return vrai si une écriture de cet id est en attente
+     */
+    public synchronized boolean contains(String id) {
+        return this.pending.containsKey(id);
+    }
+
+    public synchronized int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * @return nombre d'écritures abandonnées après maxAttempts refus
+     */
+    public long dropped() {
+        return this.dropped.sum();
+    }
+
+    /**
+     * api.write_behind.depth (en attente), api.write_behind.writes, api.write_behind.coalesced,
+     * api.write_behind.coalescing_ratio (écritures remplacées avant d'avoir été faites), api.write_behind.flush
+     * et api.write_behind.dropped (écritures abandonnées, perdues)
+     */
+    private void bindTo(MeterRegistry registry) {
+        Gauge.builder("api.write_behind.depth", this, WriteBehindQueue::size)
+                .tag("resource", this.name)
+                .register(registry);
+        FunctionCounter.builder("api.write_behind.writes", this.offered, LongAdder::sum)
+                .tag("resource", this.name)
+                .register(registry);
+        FunctionCounter.builder("api.write_behind.coalesced", this.coalesced, LongAdder::sum)
+                .tag("resource", this.name)
+                .register(registry);
+        Gauge.builder("api.write_behind.coalescing_ratio", this, queue -> {
+                    long offered = queue.offered.sum();
+                    return offered == 0 ? 0 : queue.coalesced.sum() / (double) offered;
+                })
+                .tag("resource", this.name)
+                .register(registry);
+        FunctionCounter.builder("api.write_behind.dropped", this.dropped, LongAdder::sum)
+                .tag("resource", this.name)
+                .register(registry);
+        this.flushTimer = Timer.builder("api.write_behind.flush")
+                .tag("resource", this.name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,42 @@
+package fr.semifir.apicinema.repositories;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+
+/**
+ * Fabrique des files write-behind des services, avec les mêmes réglages (api.write-behind.*) pour toutes les collections
+ */
+public class WriteBehindQueues {
+
+    boolean enabled;
+    int capacity;
+    Duration window;
+    int maxAttempts;
+    MeterRegistry registry;
+
+    /**
+     * @param enabled faux pour des files désactivées
+     * @param capacity voir WriteBehindQueue
+     * @param window voir WriteBehindQueue
+     * @param maxAttempts voir WriteBehindQueue
+     * @param registry null sans métriques
+     */
+    public WriteBehindQueues(boolean enabled, int capacity, Duration window, int maxAttempts, MeterRegistry registry) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.window = window;
+        this.maxAttempts = maxAttempts;
+        this.registry = registry;
+    }
+
+    /**
+     * @param name nom de la collection, tag des métriques
+     * @return une nouvelle file, désactivée si les écritures différées le sont
+     */
+    public <T> WriteBehindQueue<T> create(String name) {
+        return this.enabled
+                ? new WriteBehindQueue<>(name, this.capacity, this.window, this.maxAttempts, this.registry)
+                : WriteBehindQueue.disabled(name);
+    }
+}
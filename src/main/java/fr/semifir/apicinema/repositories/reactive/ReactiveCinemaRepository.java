@@ -0,0 +1,18 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Cinema;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReactiveCinemaRepository extends ReactiveMongoRepository<Cinema, String> {
+
+    Flux<Cinema> findAllBy(Pageable pageable);
+
+    Flux<Cinema> findByIdGreaterThan(String id, Pageable pageable);
+
+    Mono<Long> deleteByIdIn(Collection<String> ids);
+}
@@ -0,0 +1,12 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Film;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReactiveFilmRepository extends ReactiveMongoRepository<Film, String> {
+
+    Mono<Long> deleteByIdIn(Collection<String> ids);
+}
@@ -0,0 +1,159 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.Projection;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Version réactive du GraphReader. Le Mongo réactif ne sait pas résoudre les @DBRef :
+ * les documents sont lus bruts par lots, puis chaque niveau de références est chargé
+ * avec une requête _id $in par lot.
+ */
+public class ReactiveGraphReader {
+
+    /**
+     * Nombre de documents dont les références sont résolues ensemble
+     */
+    static final int BATCH_SIZE = 500;
+
+    ReactiveMongoTemplate template;
+
+    public ReactiveGraphReader(ReactiveMongoTemplate template) {
+        this.template = template;
+    }
+
+    public Flux<Cinema> cinemas(Query query) {
+        return this.cinemas(query, Projection.ALL);
+    }
+
+    public Flux<Salle> salles(Query query) {
+        return this.salles(query, Projection.ALL, Expansion.ALL);
+    }
+
+    public Flux<Seance> seances(Query query) {
+        return this.seances(query, Projection.ALL, Expansion.ALL);
+    }
+
+    public Flux<Film> films(Query query) {
+        return this.films(query, Projection.ALL, Expansion.ALL);
+    }
+
+    /*
+     * Lectures limitées aux champs de la Projection et aux références de l'Expansion,
+     * comme celles du GraphReader : une référence non lue reste un bouchon qui ne porte que l'id
+     */
+
+    public Flux<Cinema> cinemas(Query query, Projection projection) {
+        return this.find(projection.apply(query), Cinema.class).map(document -> this.read(Cinema.class, document));
+    }
+
+    public Flux<Salle> salles(Query query, Projection projection, Expansion expansion) {
+        return this.find(projection.apply(query), Salle.class).buffer(BATCH_SIZE)
+                .concatMap(documents -> this.linkSalles(documents, projection, expansion));
+    }
+
+    public Flux<Seance> seances(Query query, Projection projection, Expansion expansion) {
+        return this.find(projection.apply(query), Seance.class).buffer(BATCH_SIZE)
+                .concatMap(documents -> this.linkSeances(documents, projection, expansion));
+    }
+
+    public Flux<Film> films(Query query, Projection projection, Expansion expansion) {
+        return this.find(projection.apply(query), Film.class).buffer(BATCH_SIZE)
+                .concatMap(documents -> this.linkFilms(documents, projection, expansion));
+    }
+
+    private Flux<Salle> linkSalles(List<Document> documents, Projection projection, Expansion expansion) {
+        boolean linked = projection.includes("cinema") && expansion.includes("cinema");
+        Mono<Map<String, Cinema>> cinemas = linked
+                ? this.resolve(documents, "cinema", query -> this.cinemas(query, projection.nested("cinema")), Cinema::getId)
+                : Mono.just(Map.of());
+        return cinemas.flatMapMany(byId -> Flux.fromIterable(documents).map(document -> {
+            String cinemaId = referenceId(document.remove("cinema"));
+            Salle salle = this.read(Salle.class, document);
+            salle.setCinema(cinemaId == null ? null : linked ? byId.get(cinemaId) : new Cinema(cinemaId, null));
+            return salle;
+        }));
+    }
+
+    private Flux<Seance> linkSeances(List<Document> documents, Projection projection, Expansion expansion) {
+        boolean linked = projection.includes("salle") && expansion.includes("salle");
+        Mono<Map<String, Salle>> salles = linked
+                ? this.resolve(documents, "salle", query -> this.salles(query, projection.nested("salle"), expansion.nested("salle")), Salle::getId)
+                : Mono.just(Map.of());
+        return salles.flatMapMany(byId -> Flux.fromIterable(documents).map(document -> {
+            String salleId = referenceId(document.remove("salle"));
+            Seance seance = this.read(Seance.class, document);
+            seance.setSalle(salleId == null ? null : linked ? byId.get(salleId) : new Salle(salleId, null, null, null));
+            return seance;
+        }));
+    }
+
+    private Flux<Film> linkFilms(List<Document> documents, Projection projection, Expansion expansion) {
+        boolean linked = projection.includes("seance") && expansion.includes("seance");
+        Mono<Map<String, Seance>> seances = linked
+                ? this.resolve(documents, "seance", query -> this.seances(query, projection.nested("seance"), expansion.nested("seance")), Seance::getId)
+                : Mono.just(Map.of());
+        return seances.flatMapMany(byId -> Flux.fromIterable(documents).map(document -> {
+            String seanceId = referenceId(document.remove("seance"));
+            Film film = this.read(Film.class, document);
+            film.setSeance(seanceId == null ? null : linked ? byId.get(seanceId) : new Seance(seanceId, null, null));
+            return film;
+        }));
+    }
+
+    /**
+     * Charge en une requête toutes les références d'un champ @DBRef du lot
+     */
+    private <T> Mono<Map<String, T>> resolve(
+            List<Document> documents,
+            String field,
+            Function<Query, Flux<T>> loader,
+            Function<T, String> id
+    ) {
+        Set<String> ids = new HashSet<>();
+        for (Document document : documents) {
+            String referenced = referenceId(document.get(field));
+            if (referenced != null) {
+                ids.add(referenced);
+            }
+        }
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return loader.apply(GraphReader.byIds(ids)).collectMap(id);
+    }
+
+    private Flux<Document> find(Query query, Class<?> type) {
+        return this.template.find(query, Document.class, this.template.getCollectionName(type));
+    }
+
+    private <T> T read(Class<T> type, Document document) {
+        return this.template.getConverter().read(type, document);
+    }
+
+    private static String referenceId(Object reference) {
+        Object id = null;
+        if (reference instanceof DBRef) {
+            id = ((DBRef) reference).getId();
+        } else if (reference instanceof Document) {
+            id = ((Document) reference).get("$id");
+        }
+        return id == null ? null : id.toString();
+    }
+}
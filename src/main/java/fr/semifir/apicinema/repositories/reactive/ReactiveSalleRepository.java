@@ -0,0 +1,12 @@
+package fr.semifir.apicinema.repositories.reactive;
+
+import fr.semifir.apicinema.entities.Salle;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+public interface ReactiveSalleRepository extends ReactiveMongoRepository<Salle, String> {
+
+    Mono<Long> deleteByIdIn(Collection<String> ids);
+}
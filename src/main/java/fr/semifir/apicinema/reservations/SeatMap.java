@@ -0,0 +1,236 @@
+package fr.semifir.apicinema.reservations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Plan des places d'une séance : un bit par place (1 = tenue ou réservée), rangé dans des long.
+ * Prendre ou libérer des places est un compareAndSet par mot de 64 places, sans verrou :
+ * deux réservations sur la même place ne peuvent pas réussir toutes les deux.
+ *
+ * Une demande porte sur plusieurs places : les mots sont pris dans l'ordre croissant,
+ * et tout ce qui a déjà été pris est rendu dès qu'une place est occupée (tout ou rien).
+ *
+ * Les places tenues (hold) ont une échéance. Confirmer et faire expirer une tenue
+ * retirent tous deux la tenue de la table : un seul des deux peut gagner.
+ */
+public class SeatMap {
+
+    private final int capacity;
+    private final AtomicLongArray words;
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+
+    public SeatMap(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Nombre de places négatif");
+        }
+        this.capacity = capacity;
+        this.words = new AtomicLongArray((capacity + 63) / 64);
+    }
+
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Nombre de places ni tenues ni réservées, instantané sans verrou
+     * @return
+     */
+    public int available() {
+        int taken = 0;
+        for (int i = 0; i < this.words.length(); i++) {
+            taken += Long.bitCount(this.words.get(i));
+        }
+        return this.capacity - taken;
+    }
+
+    public boolean isTaken(int seat) {
+        this.check(seat);
+        return (this.words.get(seat >>> 6) & (1L << seat)) != 0;
+    }
+
+    /**
+     * Prend toutes les places demandées, ou aucune
+     * @param seats numéros de place, de 0 à capacity - 1
+     * @return false si une des places est déjà prise
+     * @throws IllegalArgumentException si une place n'existe pas ou est demandée deux fois
+     */
+    public boolean claim(int[] seats) throws IllegalArgumentException {
+        long[] masks = this.masks(seats);
+        for (int word = 0; word < masks.length; word++) {
+            long mask = masks[word];
+            if (mask == 0) {
+                continue;
+            }
+            while (true) {
+                long current = this.words.get(word);
+                if ((current & mask) != 0) {
+                    this.clear(masks, word);
+                    return false;
+                }
+                if (this.words.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cherche count places qui se suivent et les prend
+     * @param count
+     * @return les places prises, null s'il n'y a plus count places libres à la suite
+     */
+    public int[] claimContiguous(int count) {
+        if (count <= 0 || count > this.capacity) {
+            throw new IllegalArgumentException("Nombre de places invalide : " + count);
+        }
+        int start = 0;
+        while (start + count <= this.capacity) {
+            int run = 0;
+            int seat = start;
+            while (seat < this.capacity && run < count) {
+                run = this.isTaken(seat) ? 0 : run + 1;
+                seat++;
+            }
+            if (run < count) {
+                return null;
+            }
+            int[] seats = new int[count];
+            for (int i = 0; i < count; i++) {
+                seats[i] = seat - count + i;
+            }
+            if (this.claim(seats)) {
+                return seats;
+            }
+            // Une autre demande a pris une de ces places entre la lecture et le claim
+            start = seat - count + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Libère des places prises par claim()
+     * @param seats
+     */
+    public void release(int[] seats) {
+        long[] masks = this.masks(seats);
+        this.clear(masks, masks.length);
+    }
+
+    /**
+     * Prend des places jusqu'à l'échéance, en attendant une confirmation
+     * @param holdId
+     * @param seats
+     * @param expiresAt échéance en millisecondes epoch
+     * @return false si une des places est déjà prise
+     */
+    public boolean hold(String holdId, int[] seats, long expiresAt) {
+        if (!this.claim(seats)) {
+            return false;
+        }
+        this.holds.put(holdId, new Hold(seats.clone(), expiresAt));
+        return true;
+    }
+
+    /**
+     * Comme hold(), sur count places côte à côte choisies par claimContiguous()
+     * @param holdId
+     * @param count
+     * @param expiresAt échéance en millisecondes epoch
+     * @return les places tenues, null s'il n'y a plus count places libres à la suite
+     */
+    public int[] holdContiguous(String holdId, int count, long expiresAt) {
+        int[] seats = this.claimContiguous(count);
+        if (seats != null) {
+            this.holds.put(holdId, new Hold(seats.clone(), expiresAt));
+        }
+        return seats;
+    }
+
+    /**
+     * Les places tenues deviennent réservées
+     * @param holdId
+     * @return false si la tenue a déjà expiré, été annulée ou confirmée
+     */
+    public boolean confirm(String holdId) {
+        return this.holds.remove(holdId) != null;
+    }
+
+    /**
+     * Annule une tenue et libère ses places
+     * @param holdId
+     * @return false si la tenue n'existe plus
+     */
+    public boolean cancel(String holdId) {
+        Hold hold = this.holds.remove(holdId);
+        if (hold == null) {
+            return false;
+        }
+        this.release(hold.seats);
+        return true;
+    }
+
+    /**
+     * Libère les places des tenues arrivées à échéance
+     * @param now millisecondes epoch
+     * @return les ids des tenues expirées
+     */
+    public List<String> expire(long now) {
+        List<String> expired = new ArrayList<>();
+        this.holds.forEach((holdId, hold) -> {
+            if (hold.expiresAt <= now && this.holds.remove(holdId, hold)) {
+                this.release(hold.seats);
+                expired.add(holdId);
+            }
+        });
+        return expired;
+    }
+
+    private long[] masks(int[] seats) {
+        long[] masks = new long[this.words.length()];
+        for (int seat : seats) {
+            this.check(seat);
+            long bit = 1L << seat;
+            if ((masks[seat >>> 6] & bit) != 0) {
+                throw new IllegalArgumentException("Place demandée deux fois : " + seat);
+            }
+            masks[seat >>> 6] |= bit;
+        }
+        return masks;
+    }
+
+    /**
+     * Rend les bits des masques sur les mots [0, end), qui appartiennent à l'appelant
+     */
+    private void clear(long[] masks, int end) {
+        for (int word = 0; word < end; word++) {
+            long mask = masks[word];
+            if (mask != 0) {
+                long current;
+                do {
+                    current = this.words.get(word);
+                } while (!this.words.compareAndSet(word, current, current & ~mask));
+            }
+        }
+    }
+
+    private void check(int seat) {
+        if (seat < 0 || seat >= this.capacity) {
+            throw new IllegalArgumentException("Place inexistante : " + seat);
+        }
+    }
+
+    private static final class Hold {
+        final int[] seats;
+        final long expiresAt;
+
+        Hold(int[] seats, long expiresAt) {
+            this.seats = seats;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
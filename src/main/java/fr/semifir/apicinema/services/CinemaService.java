@@ -1,31 +1,51 @@
 package fr.semifir.apicinema.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.semifir.apicinema.caches.EntityCache;
 import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
 import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
 import fr.semifir.apicinema.repositories.CinemaRepository;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class CinemaService {
 
     CinemaRepository repository;
-    ModelMapper mapper;
+    EntityCache<Cinema> cache;
+    CollectionVersions versions;
+    EntityMapper mapper;
+    PatchWriter patches;
 
+    /**
+     * @param patches écritures ciblées, pour les PATCH et les PUT sans version
+     */
     public CinemaService(
             CinemaRepository repository,
-            ModelMapper mapper
+            EntityCache<Cinema> cache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            PatchWriter patches
             ) {
         this.repository = repository;
+        this.cache = cache;
+        this.versions = versions;
         this.mapper = mapper;
+        this.patches = patches;
     }
 
     /**
-     * Retour une liste de Cinema
+     * Retour une liste de Cinema, plafonnée à Pagination.UNPAGED_LIMIT éléments
      * @return List<Cinema>
      */
     public List<CinemaDTO> findAll() {
@@ -34,7 +54,7 @@ public class CinemaService {
         // J'appelle mon repo pour récupérer mes cinémas
         // Je boucle directement avec un Foreach le retour de mon repo
         // J'utlise une lambda
-        this.repository.findAll().forEach(cinema -> {
+        this.repository.findAllBy(Pagination.unpaged()).forEach(cinema -> {
             // Je map l'entité Cinema en CinemaDTO
             CinemaDTO cinemaDTO = mapper.map(cinema, CinemaDTO.class);
             // Je l'ajoute à mon tableau
@@ -43,13 +63,36 @@ public class CinemaService {
         return cinemaDTOS;
     }
 
+    /**
+     * Retourne une page de Cinema triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return PageDTO<CinemaDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<CinemaDTO> findPage(String after, int limit) throws IllegalArgumentException {
+        List<Cinema> cinemas = after == null
+                ? this.repository.findAllBy(Pagination.pageable(limit))
+                : this.repository.findByIdGreaterThan(Pagination.decode(after), Pagination.pageable(limit));
+        return Pagination.page(cinemas, limit, Cinema::getId, cinema -> mapper.map(cinema, CinemaDTO.class));
+    }
+
+    /**
+     * Parcourt tous les Cinema avec un curseur Mongo, sans les charger en mémoire
+     * Le Stream retourné doit être fermé par l'appelant
+     * @return Stream<CinemaDTO>
+     */
+    public Stream<CinemaDTO> stream() {
+        return this.repository.streamAllBy().map(cinema -> mapper.map(cinema, CinemaDTO.class));
+    }
+
     /**
      * Je récupère un cinema selon son ID
      * @param id
      * @return
      */
     public Optional<CinemaDTO> findByID(String id) throws NotFoundException {
-        Optional<Cinema> cinema = this.repository.findById(id);
+        Optional<Cinema> cinema = this.cache.get(id, this.repository::findById);
         Optional<CinemaDTO> cinemaDTO;
         if (cinema.isPresent()) {
            cinemaDTO = Optional.of(mapper.map(cinema.get(), CinemaDTO.class));
@@ -63,10 +106,38 @@ public class CinemaService {
      * Save & update un cinema
      * @param cinema
      * @return
+     * @throws ConflictException si la version donnée n'est plus celle du cinema
      */
-    public CinemaDTO save(CinemaDTO cinema) {
+    public CinemaDTO save(CinemaDTO cinema) throws ConflictException {
         Cinema toSave = this.mapper.map(cinema, Cinema.class);
-        return mapper.map(this.repository.save(toSave), CinemaDTO.class);
+        Cinema saved;
+        try {
+            saved = toSave.getId() != null && toSave.getVersion() == null
+                    // Sans version, la mise à jour remplace le document sans vérification
+                    ? this.patches.replace(toSave, Cinema.class)
+                    : this.repository.save(toSave);
+        } catch (OptimisticLockingFailureException e) {
+            throw new ConflictException("Le cinema n'est plus à la version " + toSave.getVersion());
+        }
+        this.cache.invalidate(saved.getId());
+        this.versions.bump(Cinema.class);
+        return mapper.map(saved, CinemaDTO.class);
+    }
+
+    /**
+     * Modifie les champs donnés d'un cinema (JSON Merge Patch) par un update ciblé, sans réécrire le document
+     * @param id
+     * @param patch champs à modifier, et la version attendue s'il y a lieu
+     * @return le cinema modifié
+     * @throws NotFoundException si le cinema n'existe pas
+     * @throws ConflictException si la version donnée n'est plus celle du cinema
+     * @throws IllegalArgumentException si le patch n'est pas valide
+     */
+    public CinemaDTO patch(String id, JsonNode patch) throws NotFoundException, ConflictException, IllegalArgumentException {
+        Cinema patched = this.patches.patch(id, patch, Cinema.class);
+        this.cache.invalidate(id);
+        this.versions.bump(Cinema.class);
+        return mapper.map(patched, CinemaDTO.class);
     }
 
     /**
@@ -75,5 +146,19 @@ public class CinemaService {
      */
     public void delete(Cinema cinema) {
         this.repository.delete(cinema);
+        this.cache.invalidate(cinema.getId());
+        this.versions.bump(Cinema.class);
+    }
+
+    /**
+     * Je supprime des cinemas selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return le nombre de cinemas supprimés
+     */
+    public long deleteByIds(List<String> ids) {
+        long deleted = this.repository.deleteByIdIn(ids);
+        this.cache.invalidateAll(ids);
+        this.versions.bump(Cinema.class);
+        return deleted;
     }
 }
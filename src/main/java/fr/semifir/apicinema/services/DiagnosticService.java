@@ -0,0 +1,68 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.dtos.diagnostic.QueryPlanDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.IndexManager;
+import fr.semifir.apicinema.repositories.QueryExplainer;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class DiagnosticService {
+
+    IndexManager indexManager;
+    QueryExplainer explainer;
+
+    public DiagnosticService(IndexManager indexManager, QueryExplainer explainer) {
+        this.indexManager = indexManager;
+        this.explainer = explainer;
+    }
+
+    /**
+     * J'explique chaque requête envoyée par les services, avec des ids quelconques :
+     * le plan choisi ne dépend que de la forme de la requête
+     * @return un plan par requête, collscan à true si Mongo parcourt toute la collection
+     */
+    public List<QueryPlanDTO> explainAll() {
+        List<String> sample = List.of(new ObjectId().toHexString());
+        String cursor = Pagination.encode(sample.get(0));
+        List<QueryPlanDTO> plans = new ArrayList<>();
+        this.explainPaging(plans, "cinemas", Cinema.class, cursor, sample);
+        this.explainPaging(plans, "salles", Salle.class, cursor, sample);
+        this.explainPaging(plans, "seances", Seance.class, cursor, sample);
+        this.explainPaging(plans, "films", Film.class, cursor, sample);
+        plans.add(this.explainer.explain("salles.byCinema", Salle.class, GraphReader.byRef("cinema", sample)));
+        plans.add(this.explainer.explain("seances.bySalle", Seance.class,
+                GraphReader.byRef("salle", sample).with(Sort.by("date"))));
+        Date now = new Date();
+        Date tomorrow = new Date(now.getTime() + 24 * 3600 * 1000);
+        plans.add(this.explainer.explain("seances.search", Seance.class,
+                SeanceService.searchQuery(sample, now, tomorrow, null, Pagination.DEFAULT_LIMIT)));
+        plans.add(this.explainer.explain("seances.searchByDate", Seance.class,
+                SeanceService.searchQuery(null, now, tomorrow, null, Pagination.DEFAULT_LIMIT)));
+        plans.add(this.explainer.explain("films.bySeance", Film.class, GraphReader.byRef("seance", sample)));
+        return plans;
+    }
+
+    /**
+     * Index déclarés sur les entités mais absents de Mongo
+     * @return
+     */
+    public List<String> missingIndexes() {
+        return this.indexManager.missingIndexes();
+    }
+
+    private void explainPaging(List<QueryPlanDTO> plans, String name, Class<?> type, String cursor, List<String> sample) {
+        plans.add(this.explainer.explain(name + ".unpaged", type, Pagination.unpagedQuery()));
+        plans.add(this.explainer.explain(name + ".page", type, Pagination.query(cursor, Pagination.DEFAULT_LIMIT)));
+        plans.add(this.explainer.explain(name + ".byIds", type, GraphReader.byIds(sample)));
+    }
+}
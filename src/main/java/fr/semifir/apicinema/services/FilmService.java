@@ -1,51 +1,150 @@
 package fr.semifir.apicinema.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.semifir.apicinema.caches.EntityCache;
 import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
 import fr.semifir.apicinema.dtos.film.FilmDTO;
 import fr.semifir.apicinema.entities.Film;
 import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.Projection;
 import fr.semifir.apicinema.repositories.FilmRepository;
 import fr.semifir.apicinema.repositories.SeanceRepository;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.mappers.EntityMapper;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.query.Query;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class FilmService {
 
     FilmRepository repository;
-    ModelMapper mapper;
+    GraphReader reader;
+    BulkWriter writer;
+    EntityCache<Film> cache;
+    CollectionVersions versions;
+    EntityMapper mapper;
+    PatchWriter patches;
 
+    /**
+     * @param patches écritures ciblées, pour les PATCH et les PUT sans version
+     */
     public FilmService(
             FilmRepository repository,
-            ModelMapper mapper
+            GraphReader reader,
+            BulkWriter writer,
+            EntityCache<Film> cache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            PatchWriter patches
             ) {
         this.repository = repository;
+        this.reader = reader;
+        this.writer = writer;
+        this.cache = cache;
+        this.versions = versions;
         this.mapper = mapper;
+        this.patches = patches;
     }
 
     /**
-     * Retour une liste de Film
+     * Retour une liste de Film, plafonnée à Pagination.UNPAGED_LIMIT éléments
      * @return List<Film>
      */
     public List<FilmDTO> findAll() {
+        return this.findAll(null, null);
+    }
+
+    /**
+     * Retour une liste de Film réduite aux champs demandés, plafonnée à Pagination.UNPAGED_LIMIT éléments
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return List<FilmDTO>
+     */
+    public List<FilmDTO> findAll(Projection fields, Expansion expand) {
         List<FilmDTO> filmDTOS = new ArrayList<>();
-        this.repository.findAll().forEach(film -> {
+        this.reader.films(Pagination.unpagedQuery(), Projection.orAll(fields), Expansion.orNone(expand)).forEach(film -> {
             FilmDTO filmDTO = mapper.map(film, FilmDTO.class);
             filmDTOS.add(filmDTO);
         });
         return filmDTOS;
     }
 
+    /**
+     * Retourne une page de Film triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return PageDTO<FilmDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<FilmDTO> findPage(String after, int limit) throws IllegalArgumentException {
+        return this.findPage(after, limit, null, null);
+    }
+
+    /**
+     * Retourne une page de Film réduite aux champs demandés
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return PageDTO<FilmDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<FilmDTO> findPage(String after, int limit, Projection fields, Expansion expand) throws IllegalArgumentException {
+        List<Film> films = this.reader.films(Pagination.query(after, limit), Projection.orAll(fields), Expansion.orNone(expand));
+        return Pagination.page(films, limit, Film::getId, film -> mapper.map(film, FilmDTO.class));
+    }
+
+    /**
+     * Parcourt tous les Film avec un curseur Mongo, sans les charger en mémoire
+     * Le Stream retourné doit être fermé par l'appelant
+     * @return Stream<FilmDTO>
+     */
+    public Stream<FilmDTO> stream() {
+        return this.stream(null, null);
+    }
+
+    /**
+     * Parcourt tous les Film réduits aux champs demandés
+     * Le Stream retourné doit être fermé par l'appelant
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Stream<FilmDTO>
+     */
+    public Stream<FilmDTO> stream(Projection fields, Expansion expand) {
+        return this.reader.streamFilms(new Query(), Projection.orAll(fields), Expansion.orNone(expand)).map(film -> mapper.map(film, FilmDTO.class));
+    }
+
     /**
      * Je récupère un film selon son ID
      * @param id
      * @return
      */
     public Optional<FilmDTO> findByID(String id) throws NotFoundException {
-        Optional<Film> film = this.repository.findById(id);
+        return this.findByID(id, null, null);
+    }
+
+    /**
+     * Je récupère un film selon son ID, sans résoudre les références non demandées
+     * @param id
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return
+     */
+    public Optional<FilmDTO> findByID(String id, Projection fields, Expansion expand) throws NotFoundException {
+        Optional<Film> film = this.reader.film(id, Projection.orAll(fields), Expansion.orNone(expand));
         Optional<FilmDTO> seanceDTO;
         if (film.isPresent()) {
            seanceDTO = Optional.of(mapper.map(film.get(), FilmDTO.class));
@@ -59,10 +158,52 @@ public class FilmService {
      * Save & update un film
      * @param film
      * @return
+     * @throws ConflictException si la version donnée n'est plus celle du film
      */
-    public FilmDTO save(FilmDTO film) {
+    public FilmDTO save(FilmDTO film) throws ConflictException {
         Film toSave = this.mapper.map(film, Film.class);
-        return mapper.map(this.repository.save(toSave), FilmDTO.class);
+        Film saved;
+        try {
+            saved = toSave.getId() != null && toSave.getVersion() == null
+                    // Sans version, la mise à jour remplace le document sans vérification
+                    ? this.patches.replace(toSave, Film.class)
+                    : this.repository.save(toSave);
+        } catch (OptimisticLockingFailureException e) {
+            throw new ConflictException("Le film n'est plus à la version " + toSave.getVersion());
+        }
+        this.cache.invalidate(saved.getId());
+        this.versions.bump(Film.class);
+        return mapper.map(saved, FilmDTO.class);
+    }
+
+    /**
+     * Modifie les champs donnés d'un film (JSON Merge Patch) par un update ciblé, sans réécrire le document
+     * @param id
+     * @param patch champs à modifier, et la version attendue s'il y a lieu
+     * @return le film modifié
+     * @throws NotFoundException si le film n'existe pas
+     * @throws ConflictException si la version donnée n'est plus celle du film
+     * @throws IllegalArgumentException si le patch n'est pas valide
+     */
+    public FilmDTO patch(String id, JsonNode patch) throws NotFoundException, ConflictException, IllegalArgumentException {
+        Film patched = this.patches.patch(id, patch, Film.class);
+        this.cache.invalidate(id);
+        this.versions.bump(Film.class);
+        return mapper.map(patched, FilmDTO.class);
+    }
+
+    /**
+     * Save & update de plusieurs films en bulkWrite non ordonnés
+     * @param films
+     * @return un résultat par film, avec l'id créé
+     */
+    public List<BatchResultDTO> saveAll(List<FilmDTO> films) {
+        List<Film> toSave = new ArrayList<>(films.size());
+        films.forEach(film -> toSave.add(this.mapper.map(film, Film.class)));
+        List<BatchResultDTO> results = this.writer.write(toSave, Film.class);
+        results.forEach(result -> this.cache.invalidate(result.getId()));
+        this.versions.bump(Film.class);
+        return results;
     }
 
     /**
@@ -71,5 +212,19 @@ public class FilmService {
      */
     public void delete(FilmDTO film) {
         this.repository.deleteById(film.getId());
+        this.cache.invalidate(film.getId());
+        this.versions.bump(Film.class);
+    }
+
+    /**
+     * Je supprime des films selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return le nombre de films supprimés
+     */
+    public long deleteByIds(List<String> ids) {
+        long deleted = this.repository.deleteByIdIn(ids);
+        this.cache.invalidateAll(ids);
+        this.versions.bump(Film.class);
+        return deleted;
     }
 }
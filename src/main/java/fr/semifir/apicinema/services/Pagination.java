@@ -0,0 +1,121 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.repositories.GraphReader;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Pagination par curseur (keyset) : chaque page reprend après la dernière clé
+ * de la page précédente avec une requête sur un intervalle d'_id, jamais avec un skip.
+ */
+public final class Pagination {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+    /**
+     * Plafond des findAll() non paginés
+     */
+    public static final int UNPAGED_LIMIT = 1000;
+
+    private Pagination() { }
+
+    /**
+     * Borne la taille de page demandée entre 1 et MAX_LIMIT
+     * @param limit
+     * @return
+     */
+    public static int clamp(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * Je demande un élément de plus que la page pour savoir s'il y a une suite
+     * @param limit
+     * @return
+     */
+    public static Pageable pageable(int limit) {
+        return PageRequest.of(0, clamp(limit) + 1, Sort.by("id"));
+    }
+
+    /**
+     * Pageable utilisé par les findAll() historiques
+     * @return
+     */
+    public static Pageable unpaged() {
+        return PageRequest.of(0, UNPAGED_LIMIT, Sort.by("id"));
+    }
+
+    /**
+     * Équivalent de pageable(limit) pour les lectures brutes du GraphReader
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit
+     * @return
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public static Query query(String after, int limit) throws IllegalArgumentException {
+        Query query = new Query().with(Sort.by("_id")).limit(clamp(limit) + 1);
+        if (after != null) {
+            query.addCriteria(Criteria.where("_id").gt(GraphReader.id(decode(after))));
+        }
+        return query;
+    }
+
+    /**
+     * Équivalent de unpaged() pour les lectures brutes du GraphReader
+     * @return
+     */
+    public static Query unpagedQuery() {
+        return new Query().with(Sort.by("_id")).limit(UNPAGED_LIMIT);
+    }
+
+    /**
+     * Encode une clé de tri en curseur opaque
+     * @param key
+     * @return
+     */
+    public static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur
+     * @param cursor
+     * @return
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public static String decode(String cursor) throws IllegalArgumentException {
+        String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+        return key;
+    }
+
+    /**
+     * Construit la page à partir des limit + 1 entités lues
+     * @param entities entités lues avec pageable(limit)
+     * @param limit taille de page demandée
+     * @param key clé de tri de l'entité, encodée dans le curseur
+     * @param mapper conversion entité -> DTO
+     * @return
+     */
+    public static <E, D> PageDTO<D> page(List<E> entities, int limit, Function<E, String> key, Function<E, D> mapper) {
+        int size = clamp(limit);
+        List<D> content = new ArrayList<>(Math.min(size, entities.size()));
+        for (int i = 0; i < entities.size() && i < size; i++) {
+            content.add(mapper.apply(entities.get(i)));
+        }
+        String next = entities.size() > size ? encode(key.apply(entities.get(size - 1))) : null;
+        return new PageDTO<>(content, next);
+    }
+}
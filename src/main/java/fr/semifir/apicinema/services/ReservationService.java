@@ -0,0 +1,245 @@
+package fr.semifir.apicinema.services;
+
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.repositories.ReservationRepository;
+import fr.semifir.apicinema.repositories.ReservationWriter;
+import fr.semifir.apicinema.reservations.SeatMap;
+import org.bson.types.ObjectId;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Réservation de places : le plan des places de chaque séance est tenu en mémoire (SeatMap),
+ * Mongo garde les réservations pour reconstruire le plan au redémarrage.
+ * Les réservations d'une même séance doivent donc passer par la même instance de l'API.
+ * Le compteur de la séance (SeanceService.book, SeatCounter) reste la seule limite de places :
+ * une tenue le décrémente, l'annulation ou l'expiration de la réservation le rend.
+ * Une tenue échue ne rend ses places au compteur qu'au passage de expireHolds().
+ */
+public class ReservationService {
+
+    ReservationRepository repository;
+    ReservationWriter writer;
+    GraphReader reader;
+    SeanceService seanceService;
+    EntityMapper mapper;
+    Duration holdTimeout;
+    Clock clock;
+    Map<String, SeatMap> seatMaps = new ConcurrentHashMap<>();
+
+    public ReservationService(
+            ReservationRepository repository,
+            ReservationWriter writer,
+            GraphReader reader,
+            SeanceService seanceService,
+            EntityMapper mapper,
+            Duration holdTimeout,
+            Clock clock
+            ) {
+        this.repository = repository;
+        this.writer = writer;
+        this.reader = reader;
+        this.seanceService = seanceService;
+        this.mapper = mapper;
+        this.holdTimeout = holdTimeout;
+        this.clock = clock;
+    }
+
+    /**
+     * Je tiens des places pendant holdTimeout, en attendant la confirmation
+     * @param request les places demandées, ou un nombre de places côte à côte
+     * @return la réservation HELD
+     * @throws NotFoundException si la séance n'existe pas
+     * @throws ConflictException si les places ne sont plus libres, ou si le compteur de la séance est épuisé
+     * @throws IllegalArgumentException si la demande n'est pas valide
+     */
+    public ReservationDTO hold(ReservationRequestDTO request) throws NotFoundException, ConflictException, IllegalArgumentException {
+        SeatMap seatMap = this.seatMap(request.getSeanceId());
+        String id = new ObjectId().toHexString();
+        long expiresAt = this.clock.millis() + this.holdTimeout.toMillis();
+        int[] seats = this.claim(seatMap, id, request, expiresAt);
+        if (seats == null) {
+            // Des tenues expirées peuvent encore occuper les places
+            seatMap.expire(this.clock.millis());
+            seats = this.claim(seatMap, id, request, expiresAt);
+        }
+        if (seats == null) {
+            throw new ConflictException("Les places demandées ne sont plus disponibles");
+        }
+        List<Integer> numbers = new ArrayList<>(seats.length);
+        for (int seat : seats) {
+            numbers.add(seat);
+        }
+        try {
+            this.seanceService.book(request.getSeanceId(), seats.length);
+        } catch (RuntimeException e) {
+            seatMap.cancel(id);
+            throw e;
+        }
+        try {
+            Reservation reservation = this.repository.insert(
+                    new Reservation(id, request.getSeanceId(), numbers, Reservation.HELD, new Date(expiresAt)));
+            return this.mapper.map(reservation, ReservationDTO.class);
+        } catch (RuntimeException e) {
+            seatMap.cancel(id);
+            this.seanceService.release(request.getSeanceId(), seats.length);
+            throw e;
+        }
+    }
+
+    /**
+     * Je confirme une réservation tenue, avant son échéance
+     * La tenue est retirée du plan avant l'écriture Mongo : l'expiration ne peut plus rendre ses places,
+     * et si Mongo refuse (tenue annulée ou échue entre-temps) c'est cet appel qui les rend
+     * @param id
+     * @return la réservation CONFIRMED
+     * @throws NotFoundException si la réservation n'existe pas
+     * @throws ConflictException si la tenue a expiré ou vient d'être annulée
+     */
+    public ReservationDTO confirm(String id) throws NotFoundException, ConflictException {
+        Reservation reservation = this.find(id);
+        if (Reservation.CONFIRMED.equals(reservation.getStatus())) {
+            return this.mapper.map(reservation, ReservationDTO.class);
+        }
+        long now = this.clock.millis();
+        if (reservation.getExpiresAt() == null || reservation.getExpiresAt().getTime() <= now) {
+            throw new ConflictException("La réservation a expiré");
+        }
+        SeatMap seatMap = this.seatMap(reservation.getSeanceId());
+        if (!seatMap.confirm(id)) {
+            // Un autre appel a pu la confirmer à l'instant
+            Reservation current = this.find(id);
+            if (Reservation.CONFIRMED.equals(current.getStatus())) {
+                return this.mapper.map(current, ReservationDTO.class);
+            }
+            throw new ConflictException("La réservation a expiré");
+        }
+        Reservation confirmed = this.writer.confirm(id, new Date(now)).orElse(null);
+        if (confirmed == null) {
+            seatMap.release(seats(reservation));
+            throw new ConflictException("La réservation a expiré ou a été annulée");
+        }
+        return this.mapper.map(confirmed, ReservationDTO.class);
+    }
+
+    /**
+     * J'annule une réservation, tenue ou confirmée, et je libère ses places
+     * La réservation est d'abord retirée de Mongo : seul l'appel qui l'a retirée libère les places
+     * @param id
+     * @throws NotFoundException si la réservation n'existe pas ou vient d'être annulée
+     */
+    public void cancel(String id) throws NotFoundException {
+        Reservation reservation = this.writer.remove(id)
+                .orElseThrow(() -> new NotFoundException("La réservation n'a pas été trouvée"));
+        // Plan pas encore chargé : il sera lu sans cette réservation
+        SeatMap seatMap = this.seatMaps.get(reservation.getSeanceId());
+        // Une tenue encore en mémoire rend ses places ; sinon elle a expiré (places déjà rendues) ou a été confirmée
+        if (seatMap != null && !seatMap.cancel(id) && Reservation.CONFIRMED.equals(reservation.getStatus())) {
+            seatMap.release(seats(reservation));
+        }
+        this.seanceService.release(reservation.getSeanceId(), reservation.getSeats().size());
+    }
+
+    /**
+     * Libère les places des tenues échues et supprime leurs réservations
+     * Chaque réservation est retirée sous condition (toujours HELD, toujours échue) :
+     * le compteur n'est rendu qu'une fois, même si plusieurs instances balaient en même temps
+     * ou si une confirmation passe entre la lecture et la suppression
+     * @return le nombre de réservations supprimées
+     */
+    @Scheduled(fixedDelayString = "${api.reservation.sweep-interval:5000}")
+    public long expireHolds() {
+        long now = this.clock.millis();
+        this.seatMaps.values().forEach(seatMap -> seatMap.expire(now));
+        long expired = 0;
+        // Toutes les tenues échues, y compris celles laissées par une instance arrêtée avant leur échéance
+        for (Reservation reservation : this.repository.findByStatusAndExpiresAtBefore(Reservation.HELD, new Date(now))) {
+            if (this.writer.removeExpired(reservation.getId(), new Date(now)).isPresent()) {
+                this.seanceService.release(reservation.getSeanceId(), reservation.getSeats().size());
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Plan des places d'une séance, construit au premier accès à partir de Salle.nbrPlace
+     * et des réservations enregistrées
+     * @param seanceId
+     * Les lectures Mongo se font hors de la map : dans computeIfAbsent elles bloqueraient
+     * les autres séances rangées dans le même segment. Deux premiers accès simultanés lisent tous deux,
+     * le premier plan enregistré est gardé.
+     * @return
+     * @throws NotFoundException si la séance ou sa salle n'existe pas
+     * @throws ConflictException si le nombre de places de la salle n'est pas connu
+     */
+    SeatMap seatMap(String seanceId) throws NotFoundException, ConflictException {
+        if (seanceId == null) {
+            throw new IllegalArgumentException("La séance est obligatoire");
+        }
+        SeatMap seatMap = this.seatMaps.get(seanceId);
+        if (seatMap != null) {
+            return seatMap;
+        }
+        SeatMap loaded = this.load(seanceId);
+        SeatMap existing = this.seatMaps.putIfAbsent(seanceId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private SeatMap load(String seanceId) throws NotFoundException, ConflictException {
+        Seance seance = this.reader.seance(seanceId, Projection.ALL, Expansion.of("salle"))
+                .orElseThrow(() -> new NotFoundException("Le seance n'a pas été trouvé"));
+        if (seance.getSalle() == null) {
+            throw new NotFoundException("La salle de la séance n'a pas été trouvée");
+        }
+        if (seance.getSalle().getNbrPlace() == null) {
+            throw new ConflictException("La capacité de la salle n'est pas connue");
+        }
+        SeatMap seatMap = new SeatMap(seance.getSalle().getNbrPlace());
+        long now = this.clock.millis();
+        for (Reservation reservation : this.repository.findBySeanceId(seanceId)) {
+            if (Reservation.CONFIRMED.equals(reservation.getStatus())) {
+                seatMap.claim(seats(reservation));
+            } else if (reservation.getExpiresAt() != null && reservation.getExpiresAt().getTime() > now) {
+                seatMap.hold(reservation.getId(), seats(reservation), reservation.getExpiresAt().getTime());
+            }
+        }
+        return seatMap;
+    }
+
+    private Reservation find(String id) throws NotFoundException {
+        return this.repository.findById(id)
+                .orElseThrow(() -> new NotFoundException("La réservation n'a pas été trouvée"));
+    }
+
+    private int[] claim(SeatMap seatMap, String id, ReservationRequestDTO request, long expiresAt) {
+        if (request.getSeats() != null && !request.getSeats().isEmpty()) {
+            int[] seats = request.getSeats().stream().mapToInt(Integer::intValue).toArray();
+            return seatMap.hold(id, seats, expiresAt) ? seats : null;
+        }
+        if (request.getCount() == null) {
+            throw new IllegalArgumentException("seats ou count est obligatoire");
+        }
+        return seatMap.holdContiguous(id, request.getCount(), expiresAt);
+    }
+
+    private static int[] seats(Reservation reservation) {
+        return reservation.getSeats().stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -1,48 +1,153 @@
 package fr.semifir.apicinema.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
 import fr.semifir.apicinema.dtos.salle.SalleDTO;
 import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.Projection;
 import fr.semifir.apicinema.repositories.SalleRepository;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.repositories.WriteBehindQueue;
+import fr.semifir.apicinema.mappers.EntityMapper;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.query.Query;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class SalleService {
 
     SalleRepository repository;
-    ModelMapper mapper;
+    GraphReader reader;
+    BulkWriter writer;
+    EntityCache<Salle> cache;
+    CollectionVersions versions;
+    EntityMapper mapper;
+    PatchWriter patches;
+    WriteBehindQueue<Salle> queue;
 
+    /**
+     * @param queue écritures différées des mises à jour, WriteBehindQueue.disabled() pour écrire tout de suite
+     * @param patches écritures ciblées, pour les PATCH et les PUT sans version
+     */
     public SalleService(
             SalleRepository repository,
-            ModelMapper mapper
+            GraphReader reader,
+            BulkWriter writer,
+            EntityCache<Salle> cache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            WriteBehindQueue<Salle> queue,
+            PatchWriter patches
             ) {
         this.repository = repository;
+        this.reader = reader;
+        this.writer = writer;
+        this.cache = cache;
+        this.versions = versions;
         this.mapper = mapper;
+        this.queue = queue;
+        this.patches = patches;
+        queue.start(this::write);
     }
 
     /**
-     * Retour une liste de Salle
+     * Retour une liste de Salle, plafonnée à Pagination.UNPAGED_LIMIT éléments
      * @return List<Salle>
      */
     public List<SalleDTO> findAll() {
+        return this.findAll(null, null);
+    }
+
+    /**
+     * Retour une liste de Salle réduite aux champs demandés, plafonnée à Pagination.UNPAGED_LIMIT éléments
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return List<SalleDTO>
+     */
+    public List<SalleDTO> findAll(Projection fields, Expansion expand) {
         List<SalleDTO> salleDTOS = new ArrayList<>();
-        this.repository.findAll().forEach(salle -> {
+        this.reader.salles(Pagination.unpagedQuery(), Projection.orAll(fields), Expansion.orNone(expand)).forEach(salle -> {
             SalleDTO salleDTO = mapper.map(salle, SalleDTO.class);
             salleDTOS.add(salleDTO);
         });
         return salleDTOS;
     }
 
+    /**
+     * Retourne une page de Salle triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return PageDTO<SalleDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<SalleDTO> findPage(String after, int limit) throws IllegalArgumentException {
+        return this.findPage(after, limit, null, null);
+    }
+
+    /**
+     * Retourne une page de Salle réduite aux champs demandés
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return PageDTO<SalleDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<SalleDTO> findPage(String after, int limit, Projection fields, Expansion expand) throws IllegalArgumentException {
+        List<Salle> salles = this.reader.salles(Pagination.query(after, limit), Projection.orAll(fields), Expansion.orNone(expand));
+        return Pagination.page(salles, limit, Salle::getId, salle -> mapper.map(salle, SalleDTO.class));
+    }
+
+    /**
+     * Parcourt tous les Salle avec un curseur Mongo, sans les charger en mémoire
+     * Le Stream retourné doit être fermé par l'appelant
+     * @return Stream<SalleDTO>
+     */
+    public Stream<SalleDTO> stream() {
+        return this.stream(null, null);
+    }
+
+    /**
+     * Parcourt tous les Salle réduits aux champs demandés
+     * Le Stream retourné doit être fermé par l'appelant
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Stream<SalleDTO>
+     */
+    public Stream<SalleDTO> stream(Projection fields, Expansion expand) {
+        return this.reader.streamSalles(new Query(), Projection.orAll(fields), Expansion.orNone(expand)).map(salle -> mapper.map(salle, SalleDTO.class));
+    }
+
     /**
      * Je récupère un salle selon son ID
      * @param id
      * @return
      */
     public Optional<SalleDTO> findByID(String id) throws NotFoundException {
-        Optional<Salle> salle = this.repository.findById(id);
+        return this.findByID(id, null, null);
+    }
+
+    /**
+     * Je récupère un salle selon son ID, sans résoudre les références non demandées
+     * @param id
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return
+     */
+    public Optional<SalleDTO> findByID(String id, Projection fields, Expansion expand) throws NotFoundException {
+        Optional<Salle> salle = this.reader.salle(id, Projection.orAll(fields), Expansion.orNone(expand));
         Optional<SalleDTO> salleDTO;
         if (salle.isPresent()) {
            salleDTO = Optional.of(mapper.map(salle.get(), SalleDTO.class));
@@ -52,14 +157,101 @@ public class SalleService {
         return salleDTO;
     }
 
+    /**
+     * Met une mise à jour sans version en attente d'écriture différée (write-behind)
+     * L'écriture est au mieux : elle peut encore échouer, ou être perdue si l'instance s'arrête brutalement
+     * @param salle
+     * @return false si elle doit être écrite tout de suite par save() : création, version donnée ou file désactivée
+     */
+    public boolean defer(SalleDTO salle) {
+        if (salle.getId() == null || salle.getVersion() != null) {
+            return false;
+        }
+        Salle toSave = this.mapper.map(salle, Salle.class);
+        return this.queue.offer(toSave.getId(), toSave);
+    }
+
     /**
      * Save & update un salle
      * @param salle
      * @return
+     * @throws ConflictException si la version donnée n'est plus celle du salle
      */
-    public SalleDTO save(SalleDTO salle) {
+    public SalleDTO save(SalleDTO salle) throws ConflictException {
         Salle toSave = this.mapper.map(salle, Salle.class);
-        return mapper.map(this.repository.save(toSave), SalleDTO.class);
+        if (toSave.getId() != null && this.queue.contains(toSave.getId())) {
+            // Le PUT en attente passe avant celui-ci, sinon il l'écraserait au prochain flush
+            this.queue.flush();
+        }
+        Salle saved;
+        try {
+            saved = toSave.getId() != null && toSave.getVersion() == null
+                    // Sans version, la mise à jour remplace le document sans vérification
+                    ? this.patches.replace(toSave, Salle.class)
+                    : this.repository.save(toSave);
+        } catch (OptimisticLockingFailureException e) {
+            throw new ConflictException("Le salle n'est plus à la version " + toSave.getVersion());
+        }
+        this.cache.invalidate(saved.getId());
+        this.versions.bump(Salle.class);
+        return mapper.map(saved, SalleDTO.class);
+    }
+
+    /**
+     * Modifie les champs donnés d'un salle (JSON Merge Patch) par un update ciblé, sans réécrire le document
+     * @param id
+     * @param patch champs à modifier, et la version attendue s'il y a lieu
+     * @return le salle modifié
+     * @throws NotFoundException si le salle n'existe pas
+     * @throws ConflictException si la version donnée n'est plus celle du salle
+     * @throws IllegalArgumentException si le patch n'est pas valide
+     */
+    public SalleDTO patch(String id, JsonNode patch) throws NotFoundException, ConflictException, IllegalArgumentException {
+        if (this.queue.contains(id)) {
+            // Le PUT en attente passe avant le patch, sinon il l'écraserait au prochain flush
+            this.queue.flush();
+        }
+        Salle patched = this.patches.patch(id, patch, Salle.class);
+        this.cache.invalidate(id);
+        this.versions.bump(Salle.class);
+        return mapper.map(patched, SalleDTO.class);
+    }
+
+    /**
+     * Save & update de plusieurs salles en bulkWrite non ordonnés
+     * @param salles
+     * @return un résultat par salle, avec l'id créé
+     */
+    public List<BatchResultDTO> saveAll(List<SalleDTO> salles) {
+        List<Salle> toSave = new ArrayList<>(salles.size());
+        salles.forEach(salle -> toSave.add(this.mapper.map(salle, Salle.class)));
+        this.cancelPending(toSave);
+        return this.write(toSave);
+    }
+
+    /**
+     * Écriture en bulkWrite, aussi utilisée par le write-behind
+     * @param salles
+     * @return
+     */
+    List<BatchResultDTO> write(List<Salle> salles) {
+        List<BatchResultDTO> results = this.writer.write(salles, Salle.class);
+        results.forEach(result -> this.cache.invalidate(result.getId()));
+        this.versions.bump(Salle.class);
+        return results;
+    }
+
+    /**
+     * Une mise à jour en attente ne doit pas écraser une écriture plus récente
+     */
+    private void cancelPending(List<Salle> salles) {
+        List<String> ids = new ArrayList<>();
+        salles.forEach(salle -> {
+            if (salle.getId() != null) {
+                ids.add(salle.getId());
+            }
+        });
+        this.queue.cancel(ids);
     }
 
     /**
@@ -67,6 +259,32 @@ public class SalleService {
      * @param salle
      */
     public void delete(Salle salle) {
+        if (salle.getId() != null) {
+            this.queue.cancel(List.of(salle.getId()));
+        }
         this.repository.delete(salle);
+        this.cache.invalidate(salle.getId());
+        this.versions.bump(Salle.class);
+    }
+
+    /**
+     * Je supprime des salles selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return le nombre de salles supprimés
+     */
+    public long deleteByIds(List<String> ids) {
+        this.queue.cancel(ids);
+        long deleted = this.repository.deleteByIdIn(ids);
+        this.cache.invalidateAll(ids);
+        this.versions.bump(Salle.class);
+        return deleted;
+    }
+
+    /**
+     * Écrit les mises à jour encore en attente, à l'arrêt de l'application
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException {
+        this.queue.close();
     }
 }
@@ -1,49 +1,265 @@
 package fr.semifir.apicinema.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.seance.BookingDTO;
 import fr.semifir.apicinema.dtos.seance.SeanceDTO;
 import fr.semifir.apicinema.entities.Salle;
 import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.Projection;
 import fr.semifir.apicinema.repositories.SeanceRepository;
-import org.modelmapper.ModelMapper;
+import fr.semifir.apicinema.repositories.SeatCounter;
+import fr.semifir.apicinema.repositories.WriteBehindQueue;
+import fr.semifir.apicinema.mappers.EntityMapper;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public class SeanceService {
 
     SeanceRepository repository;
-    ModelMapper mapper;
+    GraphReader reader;
+    BulkWriter writer;
+    SeatCounter counter;
+    EntityCache<Seance> cache;
+    CollectionVersions versions;
+    EntityMapper mapper;
+    PatchWriter patches;
+    WriteBehindQueue<Seance> queue;
 
+    /**
+     * @param queue écritures différées des mises à jour, WriteBehindQueue.disabled() pour écrire tout de suite
+     * @param patches écritures ciblées, pour les PATCH et les PUT sans version
+     */
     public SeanceService(
             SeanceRepository repository,
-            ModelMapper mapper
+            GraphReader reader,
+            BulkWriter writer,
+            SeatCounter counter,
+            EntityCache<Seance> cache,
+            CollectionVersions versions,
+            EntityMapper mapper,
+            WriteBehindQueue<Seance> queue,
+            PatchWriter patches
             ) {
         this.repository = repository;
+        this.reader = reader;
+        this.writer = writer;
+        this.counter = counter;
+        this.cache = cache;
+        this.versions = versions;
         this.mapper = mapper;
+        this.queue = queue;
+        this.patches = patches;
+        queue.start(this::write);
     }
 
     /**
-     * Retour une liste de Seance
+     * Retour une liste de Seance, plafonnée à Pagination.UNPAGED_LIMIT éléments
      * @return List<Seance>
      */
     public List<SeanceDTO> findAll() {
+        return this.findAll(null, null);
+    }
+
+    /**
+     * Retour une liste de Seance réduite aux champs demandés, plafonnée à Pagination.UNPAGED_LIMIT éléments
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return List<SeanceDTO>
+     */
+    public List<SeanceDTO> findAll(Projection fields, Expansion expand) {
         List<SeanceDTO> seanceDTOS = new ArrayList<>();
-        this.repository.findAll().forEach(seance -> {
+        this.reader.seances(Pagination.unpagedQuery(), Projection.orAll(fields), Expansion.orNone(expand)).forEach(seance -> {
             SeanceDTO seanceDTO = mapper.map(seance, SeanceDTO.class);
             seanceDTOS.add(seanceDTO);
         });
         return seanceDTOS;
     }
 
+    /**
+     * Retourne une page de Seance triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return PageDTO<SeanceDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<SeanceDTO> findPage(String after, int limit) throws IllegalArgumentException {
+        return this.findPage(after, limit, null, null);
+    }
+
+    /**
+     * Retourne une page de Seance réduite aux champs demandés
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return PageDTO<SeanceDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<SeanceDTO> findPage(String after, int limit, Projection fields, Expansion expand) throws IllegalArgumentException {
+        List<Seance> seances = this.reader.seances(Pagination.query(after, limit), Projection.orAll(fields), Expansion.orNone(expand));
+        return Pagination.page(seances, limit, Seance::getId, seance -> mapper.map(seance, SeanceDTO.class));
+    }
+
+    /**
+     * Recherche les Seance d'un cinéma et/ou d'une salle sur un intervalle de dates, triées par date
+     * Le cinéma est d'abord résolu en ids de salles, puis une seule requête sur l'index (salle.$id, date, _id)
+     * @param cinema id du cinéma, null pour tous
+     * @param salle id de la salle, null pour toutes
+     * @param from début inclus, null pour sans borne
+     * @param to fin exclue, null pour sans borne
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return PageDTO<SeanceDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<SeanceDTO> search(String cinema, String salle, Date from, Date to, String after, int limit) throws IllegalArgumentException {
+        return this.search(cinema, salle, from, to, after, limit, null, null);
+    }
+
+    /**
+     * search() réduit aux champs demandés
+     * La date est toujours lue : elle porte le curseur
+     * @param cinema
+     * @param salle
+     * @param from
+     * @param to
+     * @param after
+     * @param limit
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return PageDTO<SeanceDTO>
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    public PageDTO<SeanceDTO> search(String cinema, String salle, Date from, Date to, String after, int limit, Projection fields, Expansion expand) throws IllegalArgumentException {
+        List<String> salles = null;
+        if (cinema != null) {
+            salles = this.reader.ids(GraphReader.byRef("cinema", List.of(cinema)), Salle.class);
+            if (salle != null) {
+                salles = salles.contains(salle) ? List.of(salle) : List.of();
+            }
+        } else if (salle != null) {
+            salles = List.of(salle);
+        }
+        if (salles != null && salles.isEmpty()) {
+            return new PageDTO<>(new ArrayList<>(), null);
+        }
+        Query query = searchQuery(salles, from, to, after, limit);
+        if (fields != null && !fields.isAll()) {
+            query.fields().include("date");
+        }
+        List<Seance> seances = this.reader.seances(query, Projection.orAll(fields), Expansion.orNone(expand));
+        return Pagination.page(seances, limit, SeanceService::searchKey, seance -> mapper.map(seance, SeanceDTO.class));
+    }
+
+    /**
+     * Requête de search(), triée par (date, _id) : le curseur porte la date et l'id de la dernière séance
+     * @param salles ids des salles, null pour toutes
+     * @param from
+     * @param to
+     * @param after
+     * @param limit
+     * @return
+     * @throws IllegalArgumentException si le curseur n'est pas valide
+     */
+    static Query searchQuery(List<String> salles, Date from, Date to, String after, int limit) throws IllegalArgumentException {
+        Query query = salles != null ? GraphReader.byRef("salle", salles) : new Query();
+        query.with(Sort.by("date", "_id")).limit(Pagination.clamp(limit) + 1);
+        Date lower = from;
+        Criteria tieBreak = null;
+        if (after != null) {
+            String[] key = Pagination.decode(after).split(":", 2);
+            if (key.length != 2) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            Date last = new Date(Long.parseLong(key[0]));
+            // Les séances à la même date que la dernière lue ne sont reprises qu'après son _id
+            tieBreak = new Criteria().orOperator(
+                    Criteria.where("date").gt(last),
+                    Criteria.where("date").is(last).and("_id").gt(GraphReader.id(key[1])));
+            lower = from == null || last.after(from) ? last : from;
+        }
+        // Sans borne, les séances sans date sont écartées : elles n'ont pas de clé de curseur
+        Criteria date = Criteria.where("date");
+        if (lower == null && to == null) {
+            date.ne(null);
+        }
+        if (lower != null) {
+            date.gte(lower);
+        }
+        if (to != null) {
+            date.lt(to);
+        }
+        query.addCriteria(date);
+        if (tieBreak != null) {
+            query.addCriteria(tieBreak);
+        }
+        return query;
+    }
+
+    private static String searchKey(Seance seance) {
+        return seance.getDate().getTime() + ":" + seance.getId();
+    }
+
+    /**
+     * Parcourt tous les Seance avec un curseur Mongo, sans les charger en mémoire
+     * Le Stream retourné doit être fermé par l'appelant
+     * @return Stream<SeanceDTO>
+     */
+    public Stream<SeanceDTO> stream() {
+        return this.stream(null, null);
+    }
+
+    /**
+     * Parcourt tous les Seance réduits aux champs demandés
+     * Le Stream retourné doit être fermé par l'appelant
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Stream<SeanceDTO>
+     */
+    public Stream<SeanceDTO> stream(Projection fields, Expansion expand) {
+        return this.reader.streamSeances(new Query(), Projection.orAll(fields), Expansion.orNone(expand)).map(seance -> mapper.map(seance, SeanceDTO.class));
+    }
+
     /**
      * Je récupère un seance selon son ID
      * @param id
      * @return
      */
     public Optional<SeanceDTO> findByID(String id) throws NotFoundException {
-        Optional<Seance> seance = this.repository.findById(id);
+        return this.findByID(id, null, null);
+    }
+
+    /**
+     * Je récupère un seance selon son ID, sans résoudre les références non demandées
+     * @param id
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return
+     */
+    public Optional<SeanceDTO> findByID(String id, Projection fields, Expansion expand) throws NotFoundException {
+        Optional<Seance> seance = this.reader.seance(id, Projection.orAll(fields), Expansion.orNone(expand));
         Optional<SeanceDTO> seanceDTO;
         if (seance.isPresent()) {
            seanceDTO = Optional.of(mapper.map(seance.get(), SeanceDTO.class));
@@ -53,14 +269,100 @@ public class SeanceService {
         return seanceDTO;
     }
 
+    /**
+     * Met une mise à jour sans version en attente d'écriture différée (write-behind)
+     * L'écriture est au mieux : elle peut encore échouer, ou être perdue si l'instance s'arrête brutalement
+     * @param seance
+     * @return false si elle doit être écrite tout de suite par save() : création, version donnée ou file désactivée
+     */
+    public boolean defer(SeanceDTO seance) {
+        if (seance.getId() == null || seance.getVersion() != null) {
+            return false;
+        }
+        Seance toSave = this.mapper.map(seance, Seance.class);
+        return this.queue.offer(toSave.getId(), toSave);
+    }
+
     /**
      * Save & update un seance
+     * remaining donné par le client est ignoré : un nouveau seance part de Salle.nbrPlace,
+     * une mise à jour garde le compteur tenu par SeatCounter
      * @param seance
      * @return
+     * @throws ConflictException si la version donnée n'est plus celle du seance
      */
-    public SeanceDTO save(SeanceDTO seance) {
+    public SeanceDTO save(SeanceDTO seance) throws ConflictException {
         Seance toSave = this.mapper.map(seance, Seance.class);
-        return mapper.map(this.repository.save(toSave), SeanceDTO.class);
+        if (toSave.getId() != null && this.queue.contains(toSave.getId())) {
+            // Le PUT en attente passe avant celui-ci, sinon il l'écraserait au prochain flush
+            this.queue.flush();
+        }
+        this.initialRemaining(List.of(toSave));
+        Seance saved = toSave.getId() != null
+                // Mise à jour par un update ciblé : repository.save réécrirait remaining
+                ? this.patches.replace(toSave, Seance.class)
+                : this.repository.save(toSave);
+        this.cache.invalidate(saved.getId());
+        this.versions.bump(Seance.class);
+        return mapper.map(saved, SeanceDTO.class);
+    }
+
+    /**
+     * Modifie les champs donnés d'un seance (JSON Merge Patch) par un update ciblé, sans réécrire le document
+     * @param id
+     * @param patch champs à modifier, et la version attendue s'il y a lieu
+     * @return le seance modifié
+     * @throws NotFoundException si le seance n'existe pas
+     * @throws ConflictException si la version donnée n'est plus celle du seance
+     * @throws IllegalArgumentException si le patch n'est pas valide
+     */
+    public SeanceDTO patch(String id, JsonNode patch) throws NotFoundException, ConflictException, IllegalArgumentException {
+        if (this.queue.contains(id)) {
+            // Le PUT en attente passe avant le patch, sinon il l'écraserait au prochain flush
+            this.queue.flush();
+        }
+        Seance patched = this.patches.patch(id, patch, Seance.class);
+        this.cache.invalidate(id);
+        this.versions.bump(Seance.class);
+        return mapper.map(patched, SeanceDTO.class);
+    }
+
+    /**
+     * Save & update de plusieurs seances en bulkWrite non ordonnés
+     * @param seances
+     * @return un résultat par seance, avec l'id créé
+     */
+    public List<BatchResultDTO> saveAll(List<SeanceDTO> seances) {
+        List<Seance> toSave = new ArrayList<>(seances.size());
+        seances.forEach(seance -> toSave.add(this.mapper.map(seance, Seance.class)));
+        this.cancelPending(toSave);
+        return this.write(toSave);
+    }
+
+    /**
+     * Écriture en bulkWrite, aussi utilisée par le write-behind
+     * @param seances
+     * @return
+     */
+    List<BatchResultDTO> write(List<Seance> seances) {
+        this.initialRemaining(seances);
+        List<BatchResultDTO> results = this.writer.write(seances, Seance.class);
+        results.forEach(result -> this.cache.invalidate(result.getId()));
+        this.versions.bump(Seance.class);
+        return results;
+    }
+
+    /**
+     * Une mise à jour en attente ne doit pas écraser une écriture plus récente
+     */
+    private void cancelPending(List<Seance> seances) {
+        List<String> ids = new ArrayList<>();
+        seances.forEach(seance -> {
+            if (seance.getId() != null) {
+                ids.add(seance.getId());
+            }
+        });
+        this.queue.cancel(ids);
     }
 
     /**
@@ -68,6 +370,96 @@ public class SeanceService {
      * @param seance
      */
     public void delete(Seance seance) {
+        if (seance.getId() != null) {
+            this.queue.cancel(List.of(seance.getId()));
+        }
         this.repository.delete(seance);
+        this.cache.invalidate(seance.getId());
+        this.versions.bump(Seance.class);
+    }
+
+    /**
+     * Je supprime des seances selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return le nombre de seances supprimés
+     */
+    public long deleteByIds(List<String> ids) {
+        this.queue.cancel(ids);
+        long deleted = this.repository.deleteByIdIn(ids);
+        this.cache.invalidateAll(ids);
+        this.versions.bump(Seance.class);
+        return deleted;
+    }
+
+    /**
+     * Je réserve des places sur un seance, directement dans Mongo (SeatCounter)
+     * @param id
+     * @param seats nombre de places
+     * @return la réservation, avec les places restantes
+     * @throws NotFoundException si le seance n'existe pas
+     * @throws ConflictException s'il ne reste pas assez de places, ou si la capacité de la salle n'est pas connue
+     */
+    public BookingDTO book(String id, int seats) throws NotFoundException, ConflictException {
+        if (seats <= 0) {
+            throw new IllegalArgumentException("Nombre de places invalide : " + seats);
+        }
+        Optional<Integer> remaining = this.counter.book(id, seats);
+        if (remaining.isEmpty()) {
+            // Seance enregistré avant l'ajout du compteur : je le crée à partir de la salle
+            Seance seance = this.reader.seance(id, Projection.ALL, Expansion.of("salle"))
+                    .orElseThrow(() -> new NotFoundException("Le seance n'a pas été trouvé"));
+            if (seance.getSalle() == null || seance.getSalle().getNbrPlace() == null) {
+                throw new ConflictException("La capacité de la salle n'est pas connue");
+            }
+            this.counter.initialize(id, seance.getSalle().getNbrPlace());
+            remaining = this.counter.book(id, seats);
+        }
+        this.cache.invalidate(id);
+        this.versions.bump(Seance.class);
+        return new BookingDTO(id, seats, remaining.orElseThrow(() -> new NotFoundException("Le seance n'a pas été trouvé")));
+    }
+
+    /**
+     * Je rends des places au compteur d'un seance, à l'annulation ou à l'expiration d'une réservation
+     * @param id
+     * @param seats nombre de places
+     */
+    public void release(String id, int seats) {
+        this.counter.release(id, seats);
+        this.cache.invalidate(id);
+        this.versions.bump(Seance.class);
+    }
+
+    /**
+     * remaining de départ, Salle.nbrPlace, à la place de celui donné par le client
+     * Il n'est écrit qu'à la création du document (@InsertOnly) : seul SeatCounter modifie ensuite le compteur
+     * @param seances
+     */
+    private void initialRemaining(List<Seance> seances) {
+        Set<String> salleIds = new HashSet<>();
+        for (Seance seance : seances) {
+            seance.setRemaining(null);
+            if (seance.getSalle() != null && seance.getSalle().getId() != null) {
+                salleIds.add(seance.getSalle().getId());
+            }
+        }
+        if (salleIds.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> capacities = new HashMap<>();
+        this.reader.salles(GraphReader.byIds(salleIds), Projection.ALL, Expansion.NONE).forEach(salle -> capacities.put(salle.getId(), salle.getNbrPlace()));
+        for (Seance seance : seances) {
+            if (seance.getSalle() != null) {
+                seance.setRemaining(capacities.get(seance.getSalle().getId()));
+            }
+        }
+    }
+
+    /**
+     * Écrit les mises à jour encore en attente, à l'arrêt de l'application
+     * @throws InterruptedException
+     */
+    public void close() throws InterruptedException {
+        this.queue.close();
     }
 }
@@ -0,0 +1,118 @@
+package fr.semifir.apicinema.services.reactive;
+
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.reactive.ReactiveCinemaRepository;
+import fr.semifir.apicinema.services.Pagination;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Version non bloquante de CinemaService, utilisée par le profil reactive
+ */
+public class ReactiveCinemaService {
+
+    ReactiveCinemaRepository repository;
+    EntityMapper mapper;
+    ReactiveMongoTemplate template;
+
+    public ReactiveCinemaService(
+            ReactiveCinemaRepository repository,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+            ) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.template = template;
+    }
+
+    /**
+     * Retour un flux de Cinema, plafonné à Pagination.UNPAGED_LIMIT éléments
+     * @return Flux<CinemaDTO>
+     */
+    public Flux<CinemaDTO> findAll() {
+        return this.repository.findAllBy(Pagination.unpaged()).map(cinema -> mapper.map(cinema, CinemaDTO.class));
+    }
+
+    /**
+     * Retourne une page de Cinema triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return Mono<PageDTO<CinemaDTO>>, en erreur IllegalArgumentException si le curseur n'est pas valide
+     */
+    public Mono<PageDTO<CinemaDTO>> findPage(String after, int limit) {
+        Flux<Cinema> cinemas = Flux.defer(() -> after == null
+                ? this.repository.findAllBy(Pagination.pageable(limit))
+                : this.repository.findByIdGreaterThan(Pagination.decode(after), Pagination.pageable(limit)));
+        return cinemas.collectList()
+                .map(list -> Pagination.page(list, limit, Cinema::getId, cinema -> mapper.map(cinema, CinemaDTO.class)));
+    }
+
+    /**
+     * Tous les Cinema, sans plafond, pour les réponses NDJSON
+     * @return Flux<CinemaDTO>
+     */
+    public Flux<CinemaDTO> stream() {
+        return this.repository.findAll().map(cinema -> mapper.map(cinema, CinemaDTO.class));
+    }
+
+    /**
+     * Je récupère un cinema selon son ID
+     * @param id
+     * @return Mono<CinemaDTO>, en erreur NotFoundException s'il n'existe pas
+     */
+    public Mono<CinemaDTO> findByID(String id) {
+        return this.repository.findById(id)
+                .map(cinema -> mapper.map(cinema, CinemaDTO.class))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le cinema n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update un cinema
+     * @param cinema
+     * @return Mono<CinemaDTO>, en erreur ConflictException si la version donnée n'est plus la bonne
+     */
+    public Mono<CinemaDTO> save(CinemaDTO cinema) {
+        Cinema toSave = this.mapper.map(cinema, Cinema.class);
+        Mono<Cinema> saved = toSave.getId() != null && toSave.getVersion() == null
+                // Sans version, la mise à jour remplace le document sans vérification, comme PatchWriter.replace
+                ? this.template.findAndModify(
+                        GraphReader.byId(toSave.getId()),
+                        PatchWriter.replacement(this.template.getConverter(), toSave),
+                        FindAndModifyOptions.options().returnNew(true).upsert(true),
+                        Cinema.class)
+                : this.repository.save(toSave);
+        return saved
+                .onErrorMap(OptimisticLockingFailureException.class,
+                        e -> new ConflictException("Le cinema n'est plus à la version " + toSave.getVersion()))
+                .map(written -> mapper.map(written, CinemaDTO.class));
+    }
+
+    /**
+     * Je supprime mon cinema
+     * @param cinema
+     */
+    public Mono<Void> delete(Cinema cinema) {
+        return this.repository.delete(cinema);
+    }
+
+    /**
+     * Je supprime des cinemas selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return Mono<Long>, le nombre de cinemas supprimés
+     */
+    public Mono<Long> deleteByIds(List<String> ids) {
+        return this.repository.deleteByIdIn(ids);
+    }
+}
@@ -0,0 +1,167 @@
+package fr.semifir.apicinema.services.reactive;
+
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.repositories.reactive.ReactiveGraphReader;
+import fr.semifir.apicinema.repositories.reactive.ReactiveFilmRepository;
+import fr.semifir.apicinema.services.Pagination;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Version non bloquante de FilmService, utilisée par le profil reactive
+ */
+public class ReactiveFilmService {
+
+    ReactiveFilmRepository repository;
+    ReactiveGraphReader reader;
+    EntityMapper mapper;
+    ReactiveMongoTemplate template;
+
+    public ReactiveFilmService(
+            ReactiveFilmRepository repository,
+            ReactiveGraphReader reader,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+            ) {
+        this.repository = repository;
+        this.reader = reader;
+        this.mapper = mapper;
+        this.template = template;
+    }
+
+    /**
+     * Retour un flux de Film, plafonné à Pagination.UNPAGED_LIMIT éléments
+     * @return Flux<FilmDTO>
+     */
+    public Flux<FilmDTO> findAll() {
+        return this.findAll(null, null);
+    }
+
+    /**
+     * Retour un flux de Film réduit aux champs demandés, plafonné à Pagination.UNPAGED_LIMIT éléments
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Flux<FilmDTO>
+     */
+    public Flux<FilmDTO> findAll(Projection fields, Expansion expand) {
+        return this.reader.films(Pagination.unpagedQuery(), Projection.orAll(fields), Expansion.orNone(expand))
+                .map(film -> mapper.map(film, FilmDTO.class));
+    }
+
+    /**
+     * Retourne une page de Film triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return Mono<PageDTO<FilmDTO>>, en erreur IllegalArgumentException si le curseur n'est pas valide
+     */
+    public Mono<PageDTO<FilmDTO>> findPage(String after, int limit) {
+        return this.findPage(after, limit, null, null);
+    }
+
+    /**
+     * Retourne une page de Film réduite aux champs demandés
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Mono<PageDTO<FilmDTO>>, en erreur IllegalArgumentException si le curseur n'est pas valide
+     */
+    public Mono<PageDTO<FilmDTO>> findPage(String after, int limit, Projection fields, Expansion expand) {
+        Flux<Film> films = Flux.defer(() -> this.reader.films(Pagination.query(after, limit), Projection.orAll(fields), Expansion.orNone(expand)));
+        return films.collectList()
+                .map(list -> Pagination.page(list, limit, Film::getId, film -> mapper.map(film, FilmDTO.class)));
+    }
+
+    /**
+     * Tous les Film, sans plafond, pour les réponses NDJSON
+     * @return Flux<FilmDTO>
+     */
+    public Flux<FilmDTO> stream() {
+        return this.stream(null, null);
+    }
+
+    /**
+     * Tous les Film, réduits aux champs demandés, pour les réponses NDJSON
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Flux<FilmDTO>
+     */
+    public Flux<FilmDTO> stream(Projection fields, Expansion expand) {
+        return this.reader.films(new Query(), Projection.orAll(fields), Expansion.orNone(expand)).map(film -> mapper.map(film, FilmDTO.class));
+    }
+
+    /**
+     * Je récupère un film selon son ID
+     * @param id
+     * @return Mono<FilmDTO>, en erreur NotFoundException s'il n'existe pas
+     */
+    public Mono<FilmDTO> findByID(String id) {
+        return this.findByID(id, null, null);
+    }
+
+    /**
+     * Je récupère un film selon son ID, sans résoudre les références non demandées
+     * @param id
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Mono<FilmDTO>, en erreur NotFoundException s'il n'existe pas
+     */
+    public Mono<FilmDTO> findByID(String id, Projection fields, Expansion expand) {
+        return this.reader.films(GraphReader.byId(id), Projection.orAll(fields), Expansion.orNone(expand)).next()
+                .map(film -> mapper.map(film, FilmDTO.class))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le film n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update un film
+     * @param film
+     * @return Mono<FilmDTO>, en erreur ConflictException si la version donnée n'est plus la bonne
+     */
+    public Mono<FilmDTO> save(FilmDTO film) {
+        Film toSave = this.mapper.map(film, Film.class);
+        Mono<Film> saved = toSave.getId() != null && toSave.getVersion() == null
+                // Sans version, la mise à jour remplace le document sans vérification, comme PatchWriter.replace
+                ? this.template.findAndModify(
+                        GraphReader.byId(toSave.getId()),
+                        PatchWriter.replacement(this.template.getConverter(), toSave),
+                        FindAndModifyOptions.options().returnNew(true).upsert(true),
+                        Film.class)
+                : this.repository.save(toSave);
+        return saved
+                .onErrorMap(OptimisticLockingFailureException.class,
+                        e -> new ConflictException("Le film n'est plus à la version " + toSave.getVersion()))
+                .map(written -> mapper.map(written, FilmDTO.class));
+    }
+
+    /**
+     * Je supprime mon film
+     * @param film
+     */
+    public Mono<Void> delete(FilmDTO film) {
+        return this.repository.deleteById(film.getId());
+    }
+
+    /**
+     * Je supprime des films selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return Mono<Long>, le nombre de films supprimés
+     */
+    public Mono<Long> deleteByIds(List<String> ids) {
+        return this.repository.deleteByIdIn(ids);
+    }
+}
@@ -0,0 +1,167 @@
+package fr.semifir.apicinema.services.reactive;
+
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.repositories.reactive.ReactiveGraphReader;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSalleRepository;
+import fr.semifir.apicinema.services.Pagination;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Version non bloquante de SalleService, utilisée par le profil reactive
+ */
+public class ReactiveSalleService {
+
+    ReactiveSalleRepository repository;
+    ReactiveGraphReader reader;
+    EntityMapper mapper;
+    ReactiveMongoTemplate template;
+
+    public ReactiveSalleService(
+            ReactiveSalleRepository repository,
+            ReactiveGraphReader reader,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+            ) {
+        this.repository = repository;
+        this.reader = reader;
+        this.mapper = mapper;
+        this.template = template;
+    }
+
+    /**
+     * Retour un flux de Salle, plafonné à Pagination.UNPAGED_LIMIT éléments
+     * @return Flux<SalleDTO>
+     */
+    public Flux<SalleDTO> findAll() {
+        return this.findAll(null, null);
+    }
+
+    /**
+     * Retour un flux de Salle réduit aux champs demandés, plafonné à Pagination.UNPAGED_LIMIT éléments
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Flux<SalleDTO>
+     */
+    public Flux<SalleDTO> findAll(Projection fields, Expansion expand) {
+        return this.reader.salles(Pagination.unpagedQuery(), Projection.orAll(fields), Expansion.orNone(expand))
+                .map(salle -> mapper.map(salle, SalleDTO.class));
+    }
+
+    /**
+     * Retourne une page de Salle triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return Mono<PageDTO<SalleDTO>>, en erreur IllegalArgumentException si le curseur n'est pas valide
+     */
+    public Mono<PageDTO<SalleDTO>> findPage(String after, int limit) {
+        return this.findPage(after, limit, null, null);
+    }
+
+    /**
+     * Retourne une page de Salle réduite aux champs demandés
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Mono<PageDTO<SalleDTO>>, en erreur IllegalArgumentException si le curseur n'est pas valide
+     */
+    public Mono<PageDTO<SalleDTO>> findPage(String after, int limit, Projection fields, Expansion expand) {
+        Flux<Salle> salles = Flux.defer(() -> this.reader.salles(Pagination.query(after, limit), Projection.orAll(fields), Expansion.orNone(expand)));
+        return salles.collectList()
+                .map(list -> Pagination.page(list, limit, Salle::getId, salle -> mapper.map(salle, SalleDTO.class)));
+    }
+
+    /**
+     * Tous les Salle, sans plafond, pour les réponses NDJSON
+     * @return Flux<SalleDTO>
+     */
+    public Flux<SalleDTO> stream() {
+        return this.stream(null, null);
+    }
+
+    /**
+     * Tous les Salle, réduits aux champs demandés, pour les réponses NDJSON
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Flux<SalleDTO>
+     */
+    public Flux<SalleDTO> stream(Projection fields, Expansion expand) {
+        return this.reader.salles(new Query(), Projection.orAll(fields), Expansion.orNone(expand)).map(salle -> mapper.map(salle, SalleDTO.class));
+    }
+
+    /**
+     * Je récupère un salle selon son ID
+     * @param id
+     * @return Mono<SalleDTO>, en erreur NotFoundException s'il n'existe pas
+     */
+    public Mono<SalleDTO> findByID(String id) {
+        return this.findByID(id, null, null);
+    }
+
+    /**
+     * Je récupère un salle selon son ID, sans résoudre les références non demandées
+     * @param id
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Mono<SalleDTO>, en erreur NotFoundException s'il n'existe pas
+     */
+    public Mono<SalleDTO> findByID(String id, Projection fields, Expansion expand) {
+        return this.reader.salles(GraphReader.byId(id), Projection.orAll(fields), Expansion.orNone(expand)).next()
+                .map(salle -> mapper.map(salle, SalleDTO.class))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le salle n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update un salle
+     * @param salle
+     * @return Mono<SalleDTO>, en erreur ConflictException si la version donnée n'est plus la bonne
+     */
+    public Mono<SalleDTO> save(SalleDTO salle) {
+        Salle toSave = this.mapper.map(salle, Salle.class);
+        Mono<Salle> saved = toSave.getId() != null && toSave.getVersion() == null
+                // Sans version, la mise à jour remplace le document sans vérification, comme PatchWriter.replace
+                ? this.template.findAndModify(
+                        GraphReader.byId(toSave.getId()),
+                        PatchWriter.replacement(this.template.getConverter(), toSave),
+                        FindAndModifyOptions.options().returnNew(true).upsert(true),
+                        Salle.class)
+                : this.repository.save(toSave);
+        return saved
+                .onErrorMap(OptimisticLockingFailureException.class,
+                        e -> new ConflictException("Le salle n'est plus à la version " + toSave.getVersion()))
+                .map(written -> mapper.map(written, SalleDTO.class));
+    }
+
+    /**
+     * Je supprime mon salle
+     * @param salle
+     */
+    public Mono<Void> delete(Salle salle) {
+        return this.repository.delete(salle);
+    }
+
+    /**
+     * Je supprime des salles selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return Mono<Long>, le nombre de salles supprimés
+     */
+    public Mono<Long> deleteByIds(List<String> ids) {
+        return this.repository.deleteByIdIn(ids);
+    }
+}
@@ -0,0 +1,167 @@
+package fr.semifir.apicinema.services.reactive;
+
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.repositories.reactive.ReactiveGraphReader;
+import fr.semifir.apicinema.repositories.reactive.ReactiveSeanceRepository;
+import fr.semifir.apicinema.services.Pagination;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Version non bloquante de SeanceService, utilisée par le profil reactive
+ */
+public class ReactiveSeanceService {
+
+    ReactiveSeanceRepository repository;
+    ReactiveGraphReader reader;
+    EntityMapper mapper;
+    ReactiveMongoTemplate template;
+
+    public ReactiveSeanceService(
+            ReactiveSeanceRepository repository,
+            ReactiveGraphReader reader,
+            EntityMapper mapper,
+            ReactiveMongoTemplate template
+            ) {
+        this.repository = repository;
+        this.reader = reader;
+        this.mapper = mapper;
+        this.template = template;
+    }
+
+    /**
+     * Retour un flux de Seance, plafonné à Pagination.UNPAGED_LIMIT éléments
+     * @return Flux<SeanceDTO>
+     */
+    public Flux<SeanceDTO> findAll() {
+        return this.findAll(null, null);
+    }
+
+    /**
+     * Retour un flux de Seance réduit aux champs demandés, plafonné à Pagination.UNPAGED_LIMIT éléments
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Flux<SeanceDTO>
+     */
+    public Flux<SeanceDTO> findAll(Projection fields, Expansion expand) {
+        return this.reader.seances(Pagination.unpagedQuery(), Projection.orAll(fields), Expansion.orNone(expand))
+                .map(seance -> mapper.map(seance, SeanceDTO.class));
+    }
+
+    /**
+     * Retourne une page de Seance triée par id, qui reprend après le curseur
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @return Mono<PageDTO<SeanceDTO>>, en erreur IllegalArgumentException si le curseur n'est pas valide
+     */
+    public Mono<PageDTO<SeanceDTO>> findPage(String after, int limit) {
+        return this.findPage(after, limit, null, null);
+    }
+
+    /**
+     * Retourne une page de Seance réduite aux champs demandés
+     * @param after curseur de la page précédente, null pour la première page
+     * @param limit taille de la page
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Mono<PageDTO<SeanceDTO>>, en erreur IllegalArgumentException si le curseur n'est pas valide
+     */
+    public Mono<PageDTO<SeanceDTO>> findPage(String after, int limit, Projection fields, Expansion expand) {
+        Flux<Seance> seances = Flux.defer(() -> this.reader.seances(Pagination.query(after, limit), Projection.orAll(fields), Expansion.orNone(expand)));
+        return seances.collectList()
+                .map(list -> Pagination.page(list, limit, Seance::getId, seance -> mapper.map(seance, SeanceDTO.class)));
+    }
+
+    /**
+     * Tous les Seance, sans plafond, pour les réponses NDJSON
+     * @return Flux<SeanceDTO>
+     */
+    public Flux<SeanceDTO> stream() {
+        return this.stream(null, null);
+    }
+
+    /**
+     * Tous les Seance, réduits aux champs demandés, pour les réponses NDJSON
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Flux<SeanceDTO>
+     */
+    public Flux<SeanceDTO> stream(Projection fields, Expansion expand) {
+        return this.reader.seances(new Query(), Projection.orAll(fields), Expansion.orNone(expand)).map(seance -> mapper.map(seance, SeanceDTO.class));
+    }
+
+    /**
+     * Je récupère un seance selon son ID
+     * @param id
+     * @return Mono<SeanceDTO>, en erreur NotFoundException s'il n'existe pas
+     */
+    public Mono<SeanceDTO> findByID(String id) {
+        return this.findByID(id, null, null);
+    }
+
+    /**
+     * Je récupère un seance selon son ID, sans résoudre les références non demandées
+     * @param id
+     * @param fields champs à lire, null pour tous
+     * @param expand références à résoudre, null pour aucune
+     * @return Mono<SeanceDTO>, en erreur NotFoundException s'il n'existe pas
+     */
+    public Mono<SeanceDTO> findByID(String id, Projection fields, Expansion expand) {
+        return this.reader.seances(GraphReader.byId(id), Projection.orAll(fields), Expansion.orNone(expand)).next()
+                .map(seance -> mapper.map(seance, SeanceDTO.class))
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Le seance n'a pas été trouvé")));
+    }
+
+    /**
+     * Save & update un seance
+     * remaining donné par le client est ignoré : il n'est jamais écrit par une mise à jour,
+     * et un nouveau seance reçoit son compteur à la première réservation
+     * @param seance
+     * @return Mono<SeanceDTO>, en erreur ConflictException si la version donnée n'est plus la bonne
+     */
+    public Mono<SeanceDTO> save(SeanceDTO seance) {
+        Seance toSave = this.mapper.map(seance, Seance.class);
+        toSave.setRemaining(null);
+        Mono<Seance> saved = toSave.getId() != null
+                // Mise à jour par un update ciblé, comme PatchWriter.replace : repository.save réécrirait remaining
+                ? this.template.findAndModify(
+                        PatchWriter.replaced(this.template.getConverter(), toSave),
+                        PatchWriter.replacement(this.template.getConverter(), toSave),
+                        FindAndModifyOptions.options().returnNew(true).upsert(toSave.getVersion() == null),
+                        Seance.class)
+                        .switchIfEmpty(Mono.error(() -> new ConflictException("Le seance n'est plus à la version " + toSave.getVersion())))
+                : this.repository.save(toSave);
+        return saved.map(written -> mapper.map(written, SeanceDTO.class));
+    }
+
+    /**
+     * Je supprime mon seance
+     * @param seance
+     */
+    public Mono<Void> delete(Seance seance) {
+        return this.repository.delete(seance);
+    }
+
+    /**
+     * Je supprime des seances selon leurs ID, avec un seul deleteMany
+     * @param ids
+     * @return Mono<Long>, le nombre de seances supprimés
+     */
+    public Mono<Long> deleteByIds(List<String> ids) {
+        return this.repository.deleteByIdIn(ids);
+    }
+}
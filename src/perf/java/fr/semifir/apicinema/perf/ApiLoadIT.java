@@ -0,0 +1,191 @@
+package fr.semifir.apicinema.perf;
+
+import fr.semifir.apicinema.services.Pagination;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Test de charge de l'application complète contre un mongod embarqué : mvn -B verify -Pperf
+ *
+ * Le jeu de données (Dataset) est écrit au démarrage, puis THREADS clients enchaînent sans pause
+ * un mélange pondéré de lectures et d'écritures, d'abord pour chauffer, puis pour la mesure.
+ * Latences et débit par endpoint sont écrits dans perf.report (target/perf/load-report.txt).
+ * Les clients attendent chaque réponse avant d'envoyer la suivante : les percentiles ne comptent pas
+ * le temps que la requête suivante aurait passé à attendre (omission coordonnée).
+ *
+ * Tailles, durées et graine se règlent par -Dperf.* (voir le profil perf du pom.xml).
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.mongodb.embedded.version=5.0.5",
+                "spring.data.mongodb.port=0",
+                "api.mongo.slow-command-threshold=0"
+        }
+)
+public class ApiLoadIT {
+
+    private static final int CINEMAS = Integer.getInteger("perf.cinemas", 300);
+    private static final int SALLES_PER_CINEMA = Integer.getInteger("perf.salles-per-cinema", 10);
+    private static final int SEANCES_PER_SALLE = Integer.getInteger("perf.seances-per-salle", 400);
+    private static final int SEANCES_PER_FILM = Integer.getInteger("perf.seances-per-film", 10);
+    private static final int THREADS = Integer.getInteger("perf.threads", 32);
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("perf.warmup", 10));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("perf.duration", 60));
+    private static final long SEED = Long.getLong("perf.seed", 42);
+    private static final String REPORT = System.getProperty("perf.report", "target/perf/load-report.txt");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MongoTemplate template;
+
+    private HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private Dataset dataset;
+
+    /**
+     * Testing the throughput and latencies of the API under a mixed read / write load
+     * @throws Exception
+     */
+    @Test
+    public void testMixedLoad() throws Exception {
+        this.dataset = Dataset.seed(this.template, CINEMAS, SALLES_PER_CINEMA, SEANCES_PER_SALLE, SEANCES_PER_FILM, SEED);
+        List<Operation> operations = this.operations();
+
+        this.run(operations, WARMUP, new LoadReport());
+        LoadReport report = new LoadReport();
+        this.run(operations, DURATION, report);
+
+        report.write(Path.of(REPORT), List.of(
+                String.format("%d cinemas, %d salles, %d seances, %d films",
+                        this.dataset.cinemas.length, this.dataset.salles.length, this.dataset.seances.length, this.dataset.films.length),
+                String.format("%d threads, warmup %d s, duration %d s, seed %d",
+                        THREADS, WARMUP.getSeconds(), DURATION.getSeconds(), SEED)
+        ), DURATION.getSeconds());
+        Assertions.assertTrue(report.count() > 0);
+        Assertions.assertTrue(report.errors() * 100 <= report.count(), report.errors() + " erreurs sur " + report.count() + " requêtes");
+    }
+
+    /**
+     * Mélange de requêtes : poids relatifs, lectures en majorité
+     */
+    private List<Operation> operations() {
+        return List.of(
+                new Operation("GET /cinemas/{id}", 10, random -> this.get("/cinemas/" + pick(random, this.dataset.cinemas))),
+                new Operation("GET /salles/{id}", 10, random -> this.get("/salles/" + pick(random, this.dataset.salles))),
+                new Operation("GET /seances/{id}", 20, random -> this.get("/seances/" + pick(random, this.dataset.seances))),
+                new Operation("GET /seances?salle&from&to", 20, random -> {
+                    LocalDate day = LocalDate.ofInstant(Dataset.START, ZoneOffset.UTC).plusDays(random.nextInt(Dataset.DAYS));
+                    return this.get("/seances?limit=20&salle=" + pick(random, this.dataset.salles) + "&from=" + day + "&to=" + day.plusDays(1));
+                }),
+                new Operation("GET /films/{id}?expand", 10, random -> this.get("/films/" + pick(random, this.dataset.films) + "?expand=seance.salle.cinema")),
+                new Operation("GET /films?limit&after", 5, random -> this.get("/films?limit=50&after=" + Pagination.encode(pick(random, this.dataset.films).toHexString()))),
+                new Operation("POST /seances/{id}/book", 20, random -> this.request("/seances/" + pick(random, this.dataset.seances) + "/book?seats=1")
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build()),
+                new Operation("POST /films", 5, random -> this.request("/films")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                                "{\"nom\":\"Film %d\",\"duree\":%d,\"seance\":{\"id\":\"%s\"}}",
+                                random.nextInt(1000), 80 + random.nextInt(100), pick(random, this.dataset.seances))))
+                        .build())
+        );
+    }
+
+    /**
+     * THREADS clients pendant duration, chacun avec sa propre suite aléatoire
+     */
+    private void run(List<Operation> operations, Duration duration, LoadReport report) throws Exception {
+        int totalWeight = operations.stream().mapToInt(operation -> operation.weight).sum();
+        long end = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> clients = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Random random = new Random(SEED + i);
+            clients.add(executor.submit(() -> {
+                while (System.nanoTime() < end) {
+                    Operation operation = pick(random, operations, totalWeight);
+                    HttpRequest request = operation.request.apply(random);
+                    long start = System.nanoTime();
+                    boolean success;
+                    try {
+                        int status = this.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        // 409 : plus assez de places, une réponse attendue de /book
+                        success = status < 400 || status == 409;
+                    } catch (IOException e) {
+                        success = false;
+                    }
+                    report.record(operation.name, System.nanoTime() - start, success);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> client : clients) {
+            client.get(duration.toSeconds() + 60, TimeUnit.SECONDS);
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return this.request(path).GET().build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + this.port + path))
+                .header("Accept", "application/json")
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    private static ObjectId pick(Random random, ObjectId[] ids) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private static Operation pick(Random random, List<Operation> operations, int totalWeight) {
+        int drawn = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            drawn -= operation.weight;
+            if (drawn < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static class Operation {
+
+        private final String name;
+        private final int weight;
+        private final Function<Random, HttpRequest> request;
+
+        Operation(String name, int weight, Function<Random, HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package fr.semifir.apicinema.perf;
+
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Jeu de données du test de charge, écrit directement en documents (insertMany par paquets)
+ * sous la forme que produit MappingMongoConverter : _id ObjectId, références DBRef, _class.
+ * Les séances sont réparties sur DAYS jours à partir de START, avec leur compteur de places.
+ * Même graine, même jeu de données (aux ObjectId près).
+ */
+public class Dataset {
+
+    static final Instant START = Instant.parse("2022-01-03T00:00:00Z");
+
+    static final int DAYS = 60;
+
+    private static final int BATCH = 10_000;
+
+    final ObjectId[] cinemas;
+    final ObjectId[] salles;
+    final ObjectId[] seances;
+    final ObjectId[] films;
+
+    private Dataset(int cinemas, int salles, int seances, int films) {
+        this.cinemas = new ObjectId[cinemas];
+        this.salles = new ObjectId[salles];
+        this.seances = new ObjectId[seances];
+        this.films = new ObjectId[films];
+    }
+
+    /**
+     * Vide les collections puis les remplit
+     * @param template
+     * @param cinemas nombre de cinémas
+     * @param sallesPerCinema
+     * @param seancesPerSalle
+     * @param seancesPerFilm une séance sur seancesPerFilm porte un film
+     * @param seed
+     * @return les ids écrits, pour tirer les requêtes
+     */
+    public static Dataset seed(MongoTemplate template, int cinemas, int sallesPerCinema, int seancesPerSalle, int seancesPerFilm, long seed) {
+        Random random = new Random(seed);
+        int salles = cinemas * sallesPerCinema;
+        int seances = salles * seancesPerSalle;
+        Dataset dataset = new Dataset(cinemas, salles, seances, seances / seancesPerFilm);
+        for (Class<?> type : List.of(Cinema.class, Salle.class, Seance.class, Film.class)) {
+            template.getCollection(template.getCollectionName(type)).deleteMany(new Document());
+        }
+
+        Writer cinemaWriter = new Writer(template, Cinema.class);
+        for (int i = 0; i < cinemas; i++) {
+            dataset.cinemas[i] = new ObjectId();
+            cinemaWriter.add(new Document("_id", dataset.cinemas[i]).append("nom", "Cinéma " + i));
+        }
+        cinemaWriter.flush();
+
+        Writer salleWriter = new Writer(template, Salle.class);
+        int[] places = new int[salles];
+        for (int i = 0; i < salles; i++) {
+            dataset.salles[i] = new ObjectId();
+            places[i] = 50 + random.nextInt(250);
+            salleWriter.add(new Document("_id", dataset.salles[i])
+                    .append("numDeSalle", i % sallesPerCinema + 1)
+                    .append("nbrPlace", places[i])
+                    .append("cinema", new DBRef("cinema", dataset.cinemas[i / sallesPerCinema])));
+        }
+        salleWriter.flush();
+
+        Writer seanceWriter = new Writer(template, Seance.class);
+        for (int i = 0; i < seances; i++) {
+            int salle = i / seancesPerSalle;
+            dataset.seances[i] = new ObjectId();
+            // Séances à l'heure pile, de 10h à 23h
+            Instant date = START.plus(random.nextInt(DAYS), ChronoUnit.DAYS).plus(10 + random.nextInt(14), ChronoUnit.HOURS);
+            seanceWriter.add(new Document("_id", dataset.seances[i])
+                    .append("date", Date.from(date))
+                    .append("salle", new DBRef("salle", dataset.salles[salle]))
+                    .append("remaining", places[salle]));
+        }
+        seanceWriter.flush();
+
+        Writer filmWriter = new Writer(template, Film.class);
+        for (int i = 0; i < dataset.films.length; i++) {
+            dataset.films[i] = new ObjectId();
+            filmWriter.add(new Document("_id", dataset.films[i])
+                    .append("nom", "Film " + i)
+                    .append("duree", 80f + random.nextInt(100))
+                    .append("seance", new DBRef("seance", dataset.seances[i * seancesPerFilm])));
+        }
+        filmWriter.flush();
+        return dataset;
+    }
+
+    /**
+     * insertMany non ordonné par paquets de BATCH documents
+     */
+    private static class Writer {
+
+        private final MongoCollection<Document> collection;
+        private final String className;
+        private final List<Document> batch = new ArrayList<>(BATCH);
+
+        Writer(MongoTemplate template, Class<?> type) {
+            this.collection = template.getCollection(template.getCollectionName(type));
+            this.className = type.getName();
+        }
+
+        void add(Document document) {
+            this.batch.add(document.append("_class", this.className));
+            if (this.batch.size() == BATCH) {
+                this.flush();
+            }
+        }
+
+        void flush() {
+            if (!this.batch.isEmpty()) {
+                this.collection.insertMany(this.batch, new InsertManyOptions().ordered(false));
+                this.batch.clear();
+            }
+        }
+    }
+}
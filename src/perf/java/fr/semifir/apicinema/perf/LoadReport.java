@@ -0,0 +1,87 @@
+package fr.semifir.apicinema.perf;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latences par endpoint (HdrHistogram, en microsecondes, jusqu'à une minute)
+ * et rapport texte trié par endpoint, fait pour être comparé avec diff d'une exécution à l'autre
+ */
+public class LoadReport {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public void record(String endpoint, long nanos, boolean success) {
+        Endpoint stats = this.endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+        stats.latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_MICROS));
+        if (!success) {
+            stats.errors.increment();
+        }
+    }
+
+    public long count() {
+        return this.endpoints.values().stream().mapToLong(endpoint -> endpoint.latencies.getTotalCount()).sum();
+    }
+
+    public long errors() {
+        return this.endpoints.values().stream().mapToLong(endpoint -> endpoint.errors.sum()).sum();
+    }
+
+    /**
+     * @param file
+     * @param header lignes de description de l'exécution, écrites en commentaire
+     * @param seconds durée de la mesure, pour le débit
+     * @throws IOException
+     */
+    public void write(Path file, List<String> header, long seconds) throws IOException {
+        List<String> lines = new ArrayList<>();
+        header.forEach(line -> lines.add("# " + line));
+        lines.add(String.format(Locale.ROOT, "%-28s %9s %7s %9s %9s %9s %9s %9s",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        Histogram total = new Histogram(HIGHEST_MICROS, 3);
+        long errors = 0;
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(this.endpoints).entrySet()) {
+            Histogram latencies = entry.getValue().latencies.copy();
+            total.add(latencies);
+            errors += entry.getValue().errors.sum();
+            lines.add(line(entry.getKey(), latencies, entry.getValue().errors.sum(), seconds));
+        }
+        lines.add(line("TOTAL", total, errors, seconds));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private static String line(String endpoint, Histogram latencies, long errors, long seconds) {
+        return String.format(Locale.ROOT, "%-28s %9d %7d %9.1f %9.3f %9.3f %9.3f %9.3f",
+                endpoint,
+                latencies.getTotalCount(),
+                errors,
+                latencies.getTotalCount() / (double) seconds,
+                latencies.getValueAtPercentile(50) / 1000.0,
+                latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getValueAtPercentile(99.9) / 1000.0,
+                latencies.getMaxValue() / 1000.0);
+    }
+
+    private static class Endpoint {
+
+        private final ConcurrentHistogram latencies = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+
+        private final LongAdder errors = new LongAdder();
+    }
+}
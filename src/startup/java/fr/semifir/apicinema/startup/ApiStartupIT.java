@@ -0,0 +1,199 @@
+package fr.semifir.apicinema.startup;
+
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temps du lancement de la JVM à la première requête réussie, sur le jar du profil prod : mvn -B verify -Pprod
+ *
+ * Le jar de target/cds est lancé dans une JVM à part, contre le mongod embarqué du test (base startup).
+ * Un lancement d'entraînement avec le profil prod écrit l'archive AppCDS à l'arrêt de la JVM
+ * (-XX:ArchiveClassesAtExit) : elle contient les classes chargées par le démarrage et les premières requêtes.
+ * Suivent startup.runs lancements sans profil ni archive, alternés avec autant de lancements prod + archive.
+ * Chaque lancement est chronométré jusqu'à la première réponse 200 de FIRST_REQUEST, qui lit Mongo et résout les références.
+ * Min, médiane et max de chaque mode sont écrits dans startup.report (target/startup/startup-report.txt),
+ * la médiane du mode prod doit tenir dans startup.budget millisecondes.
+ *
+ * L'archive n'est valable que pour la JVM qui l'a écrite : le test lance le java qui l'exécute.
+ */
+@DataMongoTest(properties = {
+        "spring.mongodb.embedded.version=5.0.5",
+        "spring.data.mongodb.port=0",
+        "spring.data.mongodb.database=" + ApiStartupIT.DATABASE
+})
+public class ApiStartupIT {
+
+    static final String DATABASE = "startup";
+
+    private static final String JAR = System.getProperty("startup.jar", "target/cds/ApiCinema-0.0.1-SNAPSHOT-cds.jar");
+    private static final String ARCHIVE = System.getProperty("startup.archive", "target/cds/app.jsa");
+    private static final int RUNS = Integer.getInteger("startup.runs", 5);
+    private static final long BUDGET = Long.getLong("startup.budget", 15000);
+    private static final String REPORT = System.getProperty("startup.report", "target/startup/startup-report.txt");
+    private static final String FIRST_REQUEST = "/films?limit=20&expand=seance.salle.cinema";
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    @Autowired
+    private MongoTemplate template;
+
+    @Value("${local.mongo.port}")
+    private int mongoPort;
+
+    private HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    /**
+     * Testing the time to the first successful request, without and with the prod profile and its CDS archive
+     * @throws Exception
+     */
+    @Test
+    public void testTimeToFirstRequest() throws Exception {
+        this.seed();
+        Path archive = Path.of(ARCHIVE).toAbsolutePath();
+        Files.deleteIfExists(archive);
+        this.launch("training", List.of("-XX:ArchiveClassesAtExit=" + archive), true);
+        Assertions.assertTrue(Files.exists(archive), "Archive CDS non écrite : " + archive);
+
+        List<Long> baseline = new ArrayList<>();
+        List<Long> prod = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++) {
+            // Lancements alternés : une dérive de la machine pèse autant sur les deux modes
+            baseline.add(this.launch("default-" + i, List.of(), false));
+            prod.add(this.launch("prod-" + i, List.of("-XX:SharedArchiveFile=" + archive), true));
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add("Temps jusqu'à la première requête réussie (GET " + FIRST_REQUEST + "), en ms, " + RUNS + " lancements par mode");
+        lines.add("java " + System.getProperty("java.version") + ", " + System.getProperty("java.vm.name"));
+        lines.add(String.format("%-16s %8s %8s %8s", "mode", "min", "médiane", "max"));
+        lines.add(row("défaut", baseline));
+        lines.add(row("prod + AppCDS", prod));
+        Path report = Path.of(REPORT);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        Files.write(report, lines, StandardCharsets.UTF_8);
+        lines.forEach(System.out::println);
+
+        Assertions.assertTrue(median(prod) <= BUDGET,
+                "Médiane prod de " + median(prod) + " ms au-delà du budget de " + BUDGET + " ms, voir " + report);
+    }
+
+    /**
+     * Quelques documents de chaque collection : assez pour que la première requête résolve des références
+     */
+    private void seed() {
+        this.template.getDb().drop();
+        Instant first = Instant.parse("2022-01-03T20:00:00Z");
+        for (int c = 0; c < 5; c++) {
+            Cinema cinema = this.template.insert(new Cinema(null, "Cinema " + c));
+            for (int s = 0; s < 4; s++) {
+                Salle salle = this.template.insert(new Salle(null, s + 1, 100, cinema));
+                for (int n = 0; n < 5; n++) {
+                    Seance seance = this.template.insert(new Seance(null, Date.from(first.plus(n, ChronoUnit.DAYS)), salle, 100));
+                    this.template.insert(new Film(null, "Film " + c + "-" + s + "-" + n, 120f, seance));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lance le jar, attend la première réponse 200 puis arrête la JVM par un SIGTERM,
+     * pour que l'archive d'un lancement d'entraînement soit écrite à la sortie
+     * @param name nom du lancement, et de son fichier de log à côté du rapport
+     * @param jvmOptions
+     * @param prod vrai pour le profil prod
+     * @return millisecondes entre le lancement de la JVM et la première réponse 200
+     */
+    private long launch(String name, List<String> jvmOptions, boolean prod) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        if (prod) {
+            command.add("-Dspring.profiles.active=prod");
+        }
+        command.add("-jar");
+        command.add(Path.of(JAR).toAbsolutePath().toString());
+        command.add("--server.port=" + port);
+        command.add("--spring.data.mongodb.port=" + this.mongoPort);
+        command.add("--spring.data.mongodb.database=" + DATABASE);
+        // Le mongod embarqué n'est pas un replica set : pas de change stream
+        command.add("--api.cache.change-stream.enabled=false");
+        Path log = Path.of(REPORT).toAbsolutePath().getParent().resolve(name + ".log");
+        Files.createDirectories(log.getParent());
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile());
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + FIRST_REQUEST))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            long deadline = start + TIMEOUT.toNanos();
+            while (true) {
+                Assertions.assertTrue(process.isAlive(), name + " : la JVM s'est arrêtée, voir " + log);
+                Assertions.assertTrue(System.nanoTime() < deadline, name + " : pas de réponse après " + TIMEOUT + ", voir " + log);
+                try {
+                    if (this.client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Le port n'est pas encore ouvert
+                }
+                Thread.sleep(10);
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(List<Long> times) {
+        List<Long> sorted = new ArrayList<>(times);
+        sorted.sort(null);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static String row(String mode, List<Long> times) {
+        return String.format("%-16s %8d %8d %8d", mode,
+                times.stream().mapToLong(Long::longValue).min().orElse(0),
+                median(times),
+                times.stream().mapToLong(Long::longValue).max().orElse(0));
+    }
+}
@@ -0,0 +1,106 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SpecializedEntityMapper;
+import fr.semifir.apicinema.mappers.TimedEntityMapper;
+import fr.semifir.apicinema.metrics.CallMetrics;
+import fr.semifir.apicinema.repositories.CinemaRepository;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.services.CinemaService;
+import fr.semifir.apicinema.services.reactive.ReactiveCinemaService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.modelmapper.ModelMapper;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Checks the api.calls, api.not_found and api.mapper meters on a CinemaService proxied like in the application
+ */
+public class CallMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    private CinemaRepository repository;
+
+    private CinemaService service;
+
+    @BeforeEach
+    public void setup() {
+        this.registry = new SimpleMeterRegistry();
+        this.repository = Mockito.mock(CinemaRepository.class);
+        EntityMapper mapper = new TimedEntityMapper(
+                new SpecializedEntityMapper(new ModelMapperEntityMapper(new ModelMapper())), this.registry);
+        CinemaService target = new CinemaService(this.repository,
+                                                 new EntityCache<>("cinema", 100, Duration.ofMinutes(1)),
+                                                 Mockito.mock(CollectionVersions.class),
+                                                 mapper,
+                                                 Mockito.mock(PatchWriter.class));
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new CallMetrics(this.registry));
+        this.service = factory.getProxy();
+    }
+
+    /**
+     * Testing that a service call is timed, tagged by layer, resource and operation
+     */
+    @Test
+    public void testServiceCallIsTimed() {
+        BDDMockito.given(this.repository.findById("1")).willReturn(Optional.of(new Cinema("1", "Gaumont")));
+        this.service.findByID("1");
+        this.service.findByID("1");
+
+        Assertions.assertEquals(2, this.registry.get(CallMetrics.CALLS)
+                .tag("layer", "service")
+                .tag("resource", "cinema")
+                .tag("operation", "findByID")
+                .timer().count());
+        Assertions.assertEquals(2, this.registry.get(TimedEntityMapper.NAME)
+                .tag("resource", "cinema")
+                .tag("operation", "toDTO")
+                .timer().count());
+    }
+
+    /**
+     * Testing that a NotFoundException is counted and still thrown
+     */
+    @Test
+    public void testNotFoundIsCounted() {
+        Assertions.assertThrows(NotFoundException.class, () -> this.service.findByID("2"));
+
+        Assertions.assertEquals(1, this.registry.get(CallMetrics.NOT_FOUND)
+                .tag("resource", "cinema")
+                .tag("operation", "findByID")
+                .counter().count());
+        Assertions.assertEquals(1, this.registry.get(CallMetrics.CALLS).tag("operation", "findByID").timer().count());
+    }
+
+    /**
+     * Testing the resource tag of the different kinds of beans
+     */
+    @Test
+    public void testResourceNames() {
+        Object repositoryProxy = Proxy.newProxyInstance(CinemaRepository.class.getClassLoader(),
+                                                        new Class<?>[] {CinemaRepository.class},
+                                                        (proxy, method, args) -> null);
+
+        Assertions.assertEquals("cinema", CallMetrics.resource(CinemaService.class));
+        Assertions.assertEquals("cinema", CallMetrics.resource(ReactiveCinemaService.class));
+        Assertions.assertEquals("cinema", CallMetrics.resource(repositoryProxy.getClass()));
+        Assertions.assertEquals("graphreader", CallMetrics.resource(GraphReader.class));
+    }
+}
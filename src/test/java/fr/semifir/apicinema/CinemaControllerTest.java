@@ -1,9 +1,13 @@
 package fr.semifir.apicinema;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import fr.semifir.apicinema.controllers.CinemaController;
 import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
 import fr.semifir.apicinema.services.CinemaService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -18,7 +22,9 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 
 @WebMvcTest(CinemaController.class)
@@ -41,6 +47,62 @@ public class CinemaControllerTest {
                     .andExpect(MockMvcResultMatchers.jsonPath("$").isEmpty());
     }
 
+    /**
+     * Testing method findPage() with a limit
+     * @throws Exception
+     */
+    @Test
+    public void testFindPageCinemas() throws Exception {
+        CinemaDTO cinemaDTO = new CinemaDTO("11111111111", "Luxor");
+        BDDMockito.given(service.findPage(null, 1)).willReturn(new PageDTO<>(List.of(cinemaDTO), "MTExMTExMTExMTE"));
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("limit", "1"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].id").value(cinemaDTO.getId()))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.next").value("MTExMTExMTExMTE"));
+    }
+
+    /**
+     * Testing method findPage() when the cursor is not valid
+     * @throws Exception
+     */
+    @Test
+    public void testFindPageCinemasWhereCursorNotValid() throws Exception {
+        BDDMockito.given(service.findPage("???", 10)).willThrow(new IllegalArgumentException());
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("after", "???").param("limit", "10"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    /**
+     * Testing that the NDJSON stream applies ?fields= to each line
+     * @throws Exception
+     */
+    @Test
+    public void testStreamCinemasWithFields() throws Exception {
+        BDDMockito.given(service.stream()).willReturn(Stream.of(new CinemaDTO("11111111111", "Luxor", 3L)));
+
+        MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("fields", "nom").accept(MediaType.APPLICATION_NDJSON))
+                                        .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                                        .andReturn();
+        String body = this.mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                                  .andExpect(MockMvcResultMatchers.status().isOk())
+                                  .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Assertions.assertEquals("{\"id\":\"11111111111\",\"nom\":\"Luxor\"}\n", body);
+    }
+
+    /**
+     * Testing that an invalid ?fields= is refused on every GET
+     * @throws Exception
+     */
+    @Test
+    public void testFindCinemasWhereFieldsNotValid() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("fields", "nom..id"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("limit", "1").param("fields", "1nom"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route + "/11111111111").param("fields", "nom."))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
     /**
      * Testing method findById when id is not valid
      * @throws Exception
@@ -117,6 +179,70 @@ public class CinemaControllerTest {
         Assertions.assertNotEquals(oldCinemaDTO, resultCinemaDTO);
     }
 
+    /**
+     * Testing method update() where the cinema changed since the given version
+     * @throws Exception
+     */
+    @Test
+    public void testUpdateCinemaWhereVersionConflicts() throws Exception {
+        CinemaDTO cinemaDTO = new CinemaDTO("11111111111", "Pathé", 3L);
+        BDDMockito.when(service.save(ArgumentMatchers.any(CinemaDTO.class))).thenThrow(new ConflictException());
+        this.mockMvc.perform(MockMvcRequestBuilders.put(route)
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(new Gson().toJson(cinemaDTO)))
+                    .andExpect(MockMvcResultMatchers.status().isConflict());
+    }
+
+    /**
+     * Testing method save() when the given version is outdated
+     * @throws Exception
+     */
+    @Test
+    public void testSaveCinemaWhereVersionConflicts() throws Exception {
+        CinemaDTO cinemaDTO = new CinemaDTO("11111111111", "Pathé", 3L);
+        BDDMockito.when(service.save(ArgumentMatchers.any(CinemaDTO.class))).thenThrow(new ConflictException());
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route)
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(new Gson().toJson(cinemaDTO)))
+                    .andExpect(MockMvcResultMatchers.status().isConflict());
+    }
+
+    /**
+     * Testing method patch()
+     * @throws Exception
+     */
+    @Test
+    public void testPatchCinema() throws Exception {
+        BDDMockito.given(service.patch(ArgumentMatchers.eq("11111111111"), ArgumentMatchers.any(JsonNode.class)))
+                .willReturn(new CinemaDTO("11111111111", "Pathé", 4L));
+        this.mockMvc.perform(MockMvcRequestBuilders.patch(route + "/11111111111")
+                                                    .contentType("application/merge-patch+json")
+                                                    .content("{\"nom\": \"Pathé\", \"version\": 3}"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.nom").value("Pathé"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.version").value(4));
+    }
+
+    /**
+     * Testing method patch() where the version is outdated, or the cinema doesn't exist
+     * @throws Exception
+     */
+    @Test
+    public void testPatchCinemaWhereVersionConflicts() throws Exception {
+        BDDMockito.given(service.patch(ArgumentMatchers.eq("11111111111"), ArgumentMatchers.any(JsonNode.class)))
+                .willThrow(new ConflictException());
+        BDDMockito.given(service.patch(ArgumentMatchers.eq("22222222222"), ArgumentMatchers.any(JsonNode.class)))
+                .willThrow(new NotFoundException("Le cinema n'a pas été trouvé"));
+        this.mockMvc.perform(MockMvcRequestBuilders.patch(route + "/11111111111")
+                                                    .contentType("application/merge-patch+json")
+                                                    .content("{\"nom\": \"Pathé\", \"version\": 3}"))
+                    .andExpect(MockMvcResultMatchers.status().isConflict());
+        this.mockMvc.perform(MockMvcRequestBuilders.patch(route + "/22222222222")
+                                                    .contentType("application/merge-patch+json")
+                                                    .content("{\"nom\": \"Pathé\"}"))
+                    .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
     /**
      * Testing delete() method
      * @throws Exception
@@ -131,4 +257,39 @@ public class CinemaControllerTest {
                     .andExpect(MockMvcResultMatchers.jsonPath("$").isBoolean())
                     .andExpect(MockMvcResultMatchers.jsonPath("$").value("true"));
     }
+
+    /**
+     * Testing method deleteById()
+     * @throws Exception
+     */
+    @Test
+    public void testDeleteCinemaById() throws Exception {
+        BDDMockito.given(service.deleteByIds(List.of("11111111111"))).willReturn(1L);
+        this.mockMvc.perform(MockMvcRequestBuilders.delete(route + "/11111111111"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$").value(1));
+    }
+
+    /**
+     * Testing method deleteById() where cinema doesn't exist
+     * @throws Exception
+     */
+    @Test
+    public void testDeleteCinemaByIdWhereCinemaNotFound() throws Exception {
+        BDDMockito.given(service.deleteByIds(List.of("11111111111"))).willReturn(0L);
+        this.mockMvc.perform(MockMvcRequestBuilders.delete(route + "/11111111111"))
+                    .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+
+    /**
+     * Testing method deleteByIds()
+     * @throws Exception
+     */
+    @Test
+    public void testDeleteCinemasByIds() throws Exception {
+        BDDMockito.given(service.deleteByIds(List.of("111", "222", "333"))).willReturn(2L);
+        this.mockMvc.perform(MockMvcRequestBuilders.delete(route).param("ids", "111,222,333"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$").value(2));
+    }
 }
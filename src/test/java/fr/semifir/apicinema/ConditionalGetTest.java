@@ -0,0 +1,93 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.controllers.CinemaController;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.services.CinemaService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * ETag / If-None-Match on GET, checked against the collection versions before the controller runs
+ */
+@WebMvcTest(CinemaController.class)
+public class ConditionalGetTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CinemaService service;
+
+    @MockBean
+    private CollectionVersions versions;
+
+    private String route = "/cinemas";
+
+    /**
+     * Testing that a matching If-None-Match returns 304 without calling the service
+     * @throws Exception
+     */
+    @Test
+    public void testNotModified() throws Exception {
+        BDDMockito.given(versions.get(ArgumentMatchers.anyList())).willReturn(Map.of("cinema", 1L));
+        BDDMockito.given(service.findAll()).willReturn(List.of(new CinemaDTO("gb4fdg65df7g45", "Luxor")));
+
+        String etag = this.mockMvc.perform(MockMvcRequestBuilders.get(route))
+                                  .andExpect(MockMvcResultMatchers.status().isOk())
+                                  .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                                  .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(MockMvcResultMatchers.status().isNotModified())
+                    .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ETAG, etag));
+        Mockito.verify(service, Mockito.times(1)).findAll();
+    }
+
+    /**
+     * Testing that a write (new version) invalidates the ETag
+     * @throws Exception
+     */
+    @Test
+    public void testModifiedAfterWrite() throws Exception {
+        BDDMockito.given(versions.get(ArgumentMatchers.anyList())).willReturn(Map.of("cinema", 1L));
+        BDDMockito.given(service.findAll()).willReturn(List.of(new CinemaDTO("gb4fdg65df7g45", "Luxor")));
+        String etag = this.mockMvc.perform(MockMvcRequestBuilders.get(route))
+                                  .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        BDDMockito.given(versions.get(ArgumentMatchers.anyList())).willReturn(Map.of("cinema", 2L));
+        String next = this.mockMvc.perform(MockMvcRequestBuilders.get(route).header(HttpHeaders.IF_NONE_MATCH, etag))
+                                  .andExpect(MockMvcResultMatchers.status().isOk())
+                                  .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotEquals(etag, next);
+    }
+
+    /**
+     * Testing that the ETag depends on the URL
+     * @throws Exception
+     */
+    @Test
+    public void testEtagPerUrl() throws Exception {
+        BDDMockito.given(versions.get(ArgumentMatchers.anyList())).willReturn(Map.of("cinema", 1L));
+        BDDMockito.given(service.findAll()).willReturn(List.of());
+        BDDMockito.given(service.findByID("gb4fdg65df7g45")).willReturn(Optional.of(new CinemaDTO("gb4fdg65df7g45", "Luxor")));
+        String all = this.mockMvc.perform(MockMvcRequestBuilders.get(route))
+                                 .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route + "/gb4fdg65df7g45").header(HttpHeaders.IF_NONE_MATCH, all))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+}
@@ -0,0 +1,117 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class EntityCacheTest {
+
+    private EntityCache<Cinema> cache = new EntityCache<>("cinema", 100, Duration.ofMinutes(1));
+
+    /**
+     * Testing hit and miss counters
+     */
+    @Test
+    public void testHitAndMiss() {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Assertions.assertEquals(Optional.of(cinema), cache.get(cinema.getId(), id -> Optional.of(cinema)));
+        Assertions.assertEquals(Optional.of(cinema), cache.get(cinema.getId(), id -> Optional.empty()));
+
+        Assertions.assertEquals(1, cache.stats().hitCount());
+        Assertions.assertEquals(1, cache.stats().missCount());
+    }
+
+    /**
+     * Testing that a missing entity is not cached
+     */
+    @Test
+    public void testMissingEntityIsNotCached() {
+        Assertions.assertEquals(Optional.empty(), cache.get("nope", id -> Optional.empty()));
+        Cinema cinema = new Cinema("nope", "Luxor");
+        Assertions.assertEquals(Optional.of(cinema), cache.get("nope", id -> Optional.of(cinema)));
+    }
+
+    /**
+     * Testing that a write invalidating during a read does not leave the old value in cache
+     */
+    @Test
+    public void testInvalidationDuringLoadIsNotLost() throws Exception {
+        AtomicReference<Cinema> database = new AtomicReference<>(new Cinema("gb4fdg65df7g45", "Luxor"));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // The reader loads the old value, then waits for the write to finish
+            Future<Optional<Cinema>> read = executor.submit(() -> cache.get("gb4fdg65df7g45", id -> {
+                Cinema old = database.get();
+                loading.countDown();
+                try {
+                    written.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Optional.of(old);
+            }));
+            loading.await(5, TimeUnit.SECONDS);
+            database.set(new Cinema("gb4fdg65df7g45", "Pathé"));
+            cache.invalidate("gb4fdg65df7g45");
+            written.countDown();
+            Assertions.assertEquals("Luxor", read.get(5, TimeUnit.SECONDS).orElseThrow().getNom());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The next read must see the written value
+        Assertions.assertEquals("Pathé", cache.get("gb4fdg65df7g45", id -> Optional.of(database.get())).orElseThrow().getNom());
+    }
+
+    /**
+     * Testing that getAll only loads the missing ids
+     */
+    @Test
+    public void testGetAllLoadsMissingOnly() {
+        Cinema luxor = new Cinema("1", "Luxor");
+        Cinema pathe = new Cinema("2", "Pathé");
+        cache.get("1", id -> Optional.of(luxor));
+
+        Map<String, Cinema> found = cache.getAll(Set.of("1", "2"), ids -> {
+            Assertions.assertEquals(Set.of("2"), ids);
+            return Map.of("2", pathe);
+        });
+
+        Assertions.assertEquals(Map.of("1", luxor, "2", pathe), found);
+    }
+
+    /**
+     * Testing that the cache is emptied only when the collection version moves forward
+     */
+    @Test
+    public void testSyncWithCollectionVersion() {
+        Cinema luxor = new Cinema("gb4fdg65df7g45", "Luxor");
+        Cinema renamed = new Cinema("gb4fdg65df7g45", "Le Luxor");
+        cache.sync(3);
+        cache.get(luxor.getId(), id -> Optional.of(luxor));
+
+        cache.sync(3);
+        Assertions.assertEquals(Optional.of(luxor), cache.get(luxor.getId(), id -> Optional.of(renamed)));
+
+        // Écrit sur une autre instance : le cache ne doit plus servir l'ancien document
+        cache.sync(4);
+        Assertions.assertEquals(Optional.of(renamed), cache.get(luxor.getId(), id -> Optional.of(renamed)));
+
+        cache.sync(2);
+        Assertions.assertEquals(Optional.of(renamed), cache.get(luxor.getId(), id -> Optional.of(luxor)));
+    }
+}
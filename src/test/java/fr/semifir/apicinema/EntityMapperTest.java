@@ -0,0 +1,102 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.mappers.SpecializedEntityMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.Date;
+
+public class EntityMapperTest {
+
+    private EntityMapper reflective = new ModelMapperEntityMapper(new ModelMapper());
+
+    private EntityMapper specialized = new SpecializedEntityMapper(reflective);
+
+    /**
+     * Both paths must give equal results
+     * @param source
+     * @param destinationType
+     */
+    private <D> void assertSameMapping(Object source, Class<D> destinationType) {
+        D expected = reflective.map(source, destinationType);
+        D actual = specialized.map(source, destinationType);
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertNotSame(source, actual);
+    }
+
+    /**
+     * Testing Cinema <-> CinemaDTO
+     */
+    @Test
+    public void testMapCinema() {
+        assertSameMapping(new Cinema("gb4fdg65df7g45", "Luxor"), CinemaDTO.class);
+        assertSameMapping(new CinemaDTO("gb4fdg65df7g45", "Luxor"), Cinema.class);
+        assertSameMapping(new CinemaDTO(null, null), Cinema.class);
+    }
+
+    /**
+     * Testing Salle <-> SalleDTO, with and without cinema
+     */
+    @Test
+    public void testMapSalle() {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        assertSameMapping(new Salle("46nf45bx", 1, 99, cinema), SalleDTO.class);
+        assertSameMapping(new SalleDTO("46nf45bx", 1, 99, cinema), Salle.class);
+        assertSameMapping(new Salle("46nf45bx", 1, 99, null), SalleDTO.class);
+    }
+
+    /**
+     * Testing Seance <-> SeanceDTO with the whole Salle -> Cinema graph
+     */
+    @Test
+    public void testMapSeance() {
+        Salle salle = new Salle("46nf45bx", 1, 99, new Cinema("gb4fdg65df7g45", "Luxor"));
+        assertSameMapping(new Seance("sdfghjk", new Date(), salle), SeanceDTO.class);
+        assertSameMapping(new SeanceDTO("sdfghjk", new Date(), salle), Seance.class);
+        assertSameMapping(new Seance("sdfghjk", null, null), SeanceDTO.class);
+        assertSameMapping(new Seance("sdfghjk", new Date(), salle, 42), SeanceDTO.class);
+    }
+
+    /**
+     * Testing Film <-> FilmDTO with the whole Seance -> Salle -> Cinema graph
+     */
+    @Test
+    public void testMapFilm() {
+        Salle salle = new Salle("46nf45bx", 1, 99, new Cinema("gb4fdg65df7g45", "Luxor"));
+        Seance seance = new Seance("sdfghjk", new Date(), salle);
+        assertSameMapping(new Film("dfghjk", "La dernière", 120f, seance), FilmDTO.class);
+        assertSameMapping(new FilmDTO("dfghjk", "La dernière", 120f, seance), Film.class);
+        assertSameMapping(new Film("dfghjk", "La dernière", null, null), FilmDTO.class);
+    }
+
+    /**
+     * Testing that nested references are copied, not shared
+     */
+    @Test
+    public void testMapCopiesReferences() {
+        Salle salle = new Salle("46nf45bx", 1, 99, new Cinema("gb4fdg65df7g45", "Luxor"));
+        SeanceDTO seanceDTO = specialized.map(new Seance("sdfghjk", new Date(), salle), SeanceDTO.class);
+        Assertions.assertNotSame(salle, seanceDTO.getSalle());
+        Assertions.assertNotSame(salle.getCinema(), seanceDTO.getSalle().getCinema());
+    }
+
+    /**
+     * Testing that unknown types go through the fallback
+     */
+    @Test
+    public void testMapFallback() {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Assertions.assertEquals(cinema, specialized.map(cinema, Cinema.class));
+    }
+}
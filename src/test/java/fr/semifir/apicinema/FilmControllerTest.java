@@ -7,6 +7,8 @@ import fr.semifir.apicinema.dtos.film.FilmDTO;
 import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.entities.Salle;
 import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.Projection;
 import fr.semifir.apicinema.services.FilmService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -22,6 +24,7 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -158,4 +161,80 @@ public class FilmControllerTest {
                     .andExpect(MockMvcResultMatchers.jsonPath("$").isBoolean())
                     .andExpect(MockMvcResultMatchers.jsonPath("$").value("true"));
     }
+
+    /**
+     * Testing method findAll() with ?fields=nom : only the id and the name are written
+     * @throws Exception
+     */
+    @Test
+    public void testFindAllFilmWithFields() throws Exception {
+        Seance seance = new Seance("456ds4gds", new Date(), new Salle("456", 1, 123, new Cinema("d54fg65df", "Gaumont")));
+        FilmDTO filmDTO = new FilmDTO("dfghjk", "La dernière", 120f, seance);
+
+        BDDMockito.given(service.findAll(ArgumentMatchers.any(Projection.class), ArgumentMatchers.isNull())).willReturn(List.of(filmDTO));
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("fields", "nom"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("dfghjk"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].nom").value("La dernière"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].duree").doesNotExist())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].seance").doesNotExist());
+        BDDMockito.then(service).should().findAll(ArgumentMatchers.any(Projection.class), ArgumentMatchers.isNull());
+    }
+
+    /**
+     * Testing method findById() with a nested field : the references keep their id
+     * @throws Exception
+     */
+    @Test
+    public void testFindOneFilmWithNestedFields() throws Exception {
+        Seance seance = new Seance("456ds4gds", new Date(), new Salle("456", 1, 123, new Cinema("d54fg65df", "Gaumont")));
+        FilmDTO filmDTO = new FilmDTO("dfghjk", "La dernière", 120f, seance);
+
+        BDDMockito.given(service.findByID(ArgumentMatchers.eq("dfghjk"), ArgumentMatchers.any(Projection.class), ArgumentMatchers.isNull())).willReturn(Optional.of(filmDTO));
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route + "/dfghjk").param("fields", "nom,seance.salle.numDeSalle"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.nom").value("La dernière"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seance.id").value("456ds4gds"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seance.date").doesNotExist())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seance.salle.numDeSalle").value(1))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seance.salle.nbrPlace").doesNotExist())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seance.salle.cinema").doesNotExist());
+    }
+
+    /**
+     * Testing method findAll() with an invalid field name
+     * @throws Exception
+     */
+    @Test
+    public void testFindAllFilmWithInvalidFields() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("fields", "nom,$where"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    /**
+     * Testing that an unresolved reference is written as its id only
+     * @throws Exception
+     */
+    @Test
+    public void testFindAllFilmWritesStubsAsId() throws Exception {
+        FilmDTO filmDTO = new FilmDTO("dfghjk", "La dernière", 120f, new Seance("456ds4gds", null, null));
+
+        BDDMockito.given(service.findAll()).willReturn(List.of(filmDTO));
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].seance.id").value("456ds4gds"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].seance.date").doesNotExist())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].seance.remaining").doesNotExist());
+    }
+
+    /**
+     * Testing method findAll() with ?expand= : the expansion is passed to the service
+     * @throws Exception
+     */
+    @Test
+    public void testFindAllFilmWithExpand() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("expand", "seance.salle"))
+                    .andExpect(MockMvcResultMatchers.status().isOk());
+        BDDMockito.then(service).should().findAll(ArgumentMatchers.isNull(), ArgumentMatchers.any(Expansion.class));
+    }
 }
@@ -0,0 +1,289 @@
+package fr.semifir.apicinema;
+
+import com.mongodb.DBRef;
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.Projection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the Mongo queries issued to read the Film -> Seance -> Salle -> Cinema graph
+ */
+public class GraphReaderTest {
+
+    private MongoTemplate template;
+
+    private GraphReader reader;
+
+    private EntityCache<Salle> salleCache = new EntityCache<>("salle", 100, Duration.ofMinutes(1));
+
+    private Map<String, List<Document>> collections = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        this.template = Mockito.mock(MongoTemplate.class);
+        BDDMockito.given(this.template.getConverter()).willReturn(converter);
+        BDDMockito.given(this.template.getCollectionName(Cinema.class)).willReturn("cinema");
+        BDDMockito.given(this.template.getCollectionName(Salle.class)).willReturn("salle");
+        BDDMockito.given(this.template.getCollectionName(Seance.class)).willReturn("seance");
+        BDDMockito.given(this.template.getCollectionName(Film.class)).willReturn("film");
+        BDDMockito.given(this.template.find(ArgumentMatchers.any(Query.class),
+                                            ArgumentMatchers.eq(Document.class),
+                                            ArgumentMatchers.anyString()))
+                  .willAnswer(invocation -> this.find(invocation.getArgument(0), invocation.getArgument(2)));
+        this.reader = new GraphReader(this.template,
+                                      new EntityCache<>("cinema", 100, Duration.ofMinutes(1)),
+                                      this.salleCache,
+                                      new EntityCache<>("seance", 100, Duration.ofMinutes(1)),
+                                      new EntityCache<>("film", 100, Duration.ofMinutes(1)));
+
+        // 3 cinemas, 10 salles, 50 seances, 50 films
+        List<Document> cinemas = this.collection("cinema");
+        List<Document> salles = this.collection("salle");
+        List<Document> seances = this.collection("seance");
+        List<Document> films = this.collection("film");
+        for (int i = 0; i < 3; i++) {
+            cinemas.add(new Document("_id", new ObjectId()).append("nom", "Cinema " + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            salles.add(new Document("_id", new ObjectId()).append("numDeSalle", i).append("nbrPlace", 100)
+                    .append("cinema", new DBRef("cinema", cinemas.get(i % 3).get("_id"))));
+        }
+        for (int i = 0; i < 50; i++) {
+            seances.add(new Document("_id", new ObjectId()).append("date", new Date())
+                    .append("salle", new DBRef("salle", salles.get(i % 10).get("_id"))));
+            films.add(new Document("_id", new ObjectId()).append("nom", "Film " + i).append("duree", 120f)
+                    .append("seance", new DBRef("seance", seances.get(i).get("_id"))));
+        }
+    }
+
+    private List<Document> collection(String name) {
+        return this.collections.computeIfAbsent(name, key -> new ArrayList<>());
+    }
+
+    /**
+     * Stand-in for find(): supports the _id $in queries issued by the reader
+     */
+    private List<Document> find(Query query, String collection) {
+        Object id = query.getQueryObject().get("_id");
+        List<Document> found = new ArrayList<>();
+        for (Document document : this.collection(collection)) {
+            boolean matches = id == null
+                    || (id instanceof Document && ((Collection<?>) ((Document) id).get("$in")).contains(document.get("_id")))
+                    || document.get("_id").equals(id);
+            if (matches) {
+                found.add(new Document(document));
+            }
+        }
+        return found;
+    }
+
+    private void assertQueries(int films, int seances, int salles, int cinemas) {
+        Mockito.verify(this.template, Mockito.times(films)).find(ArgumentMatchers.any(Query.class), ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("film"));
+        Mockito.verify(this.template, Mockito.times(seances)).find(ArgumentMatchers.any(Query.class), ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("seance"));
+        Mockito.verify(this.template, Mockito.times(salles)).find(ArgumentMatchers.any(Query.class), ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("salle"));
+        Mockito.verify(this.template, Mockito.times(cinemas)).find(ArgumentMatchers.any(Query.class), ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("cinema"));
+    }
+
+    /**
+     * Testing that 50 films are read with one query per level
+     */
+    @Test
+    public void testFilmsUseOneQueryPerLevel() {
+        List<Film> films = this.reader.films(new Query());
+
+        Assertions.assertEquals(50, films.size());
+        films.forEach(film -> Assertions.assertNotNull(film.getSeance().getSalle().getCinema().getNom()));
+        this.assertQueries(1, 1, 1, 1);
+    }
+
+    /**
+     * Testing that seances are read with one query per level
+     */
+    @Test
+    public void testSeancesUseOneQueryPerLevel() {
+        List<Seance> seances = this.reader.seances(new Query());
+
+        Assertions.assertEquals(50, seances.size());
+        seances.forEach(seance -> Assertions.assertNotNull(seance.getSalle().getCinema()));
+        this.assertQueries(0, 1, 1, 1);
+    }
+
+    /**
+     * Testing that salles are read with one query per level
+     */
+    @Test
+    public void testSallesUseOneQueryPerLevel() {
+        Assertions.assertEquals(10, this.reader.salles(new Query()).size());
+        this.assertQueries(0, 0, 1, 1);
+    }
+
+    /**
+     * Testing the by-id read of a film
+     */
+    @Test
+    public void testFilmByIdUsesOneQueryPerLevel() {
+        Document document = this.collection("film").get(7);
+        Film film = this.reader.film(document.getObjectId("_id").toHexString()).orElseThrow();
+
+        Assertions.assertEquals("Film 7", film.getNom());
+        Assertions.assertNotNull(film.getSeance().getSalle().getCinema());
+        this.assertQueries(1, 1, 1, 1);
+    }
+
+    /**
+     * Testing that a second by-id read is served by the caches
+     */
+    @Test
+    public void testByIdReadUsesCache() {
+        String id = this.collection("film").get(7).getObjectId("_id").toHexString();
+        this.reader.film(id);
+        this.reader.film(id);
+
+        this.assertQueries(1, 1, 1, 1);
+    }
+
+    /**
+     * Testing that references already cached are not queried again
+     */
+    @Test
+    public void testListReadResolvesReferencesFromCache() {
+        this.reader.seances(new Query());
+        this.reader.seances(new Query());
+
+        // The seances are queried twice, their salles and cinemas once
+        this.assertQueries(0, 2, 1, 1);
+    }
+
+    /**
+     * Testing that an invalidated salle is read again
+     */
+    @Test
+    public void testInvalidatedReferenceIsReadAgain() {
+        Document salle = this.collection("salle").get(0);
+        String id = salle.getObjectId("_id").toHexString();
+        Assertions.assertEquals(100, this.reader.salle(id).orElseThrow().getNbrPlace());
+
+        salle.put("nbrPlace", 150);
+        this.salleCache.invalidate(id);
+
+        Assertions.assertEquals(150, this.reader.salle(id).orElseThrow().getNbrPlace());
+    }
+
+    /**
+     * Testing that a dangling reference is read as null
+     */
+    @Test
+    public void testDanglingReferenceIsNull() {
+        this.collection("cinema").clear();
+        List<Salle> salles = this.reader.salles(new Query());
+
+        salles.forEach(salle -> Assertions.assertNull(salle.getCinema()));
+        this.assertQueries(0, 0, 1, 1);
+    }
+
+    /**
+     * Testing that ?fields=nom on films reads the film collection only, with a projection
+     */
+    @Test
+    public void testFilmsWithProjectionSkipReferences() {
+        List<Film> films = this.reader.films(new Query(), Projection.of("nom"), Expansion.ALL);
+
+        Assertions.assertEquals(50, films.size());
+        this.assertQueries(1, 0, 0, 0);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(this.template).find(query.capture(), ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("film"));
+        Assertions.assertEquals(new Document("nom", 1).append("_id", 1), query.getValue().getFieldsObject());
+    }
+
+    /**
+     * Testing that a nested projection stops resolving at the deepest requested reference
+     */
+    @Test
+    public void testNestedProjectionStopsAtRequestedLevel() {
+        List<Film> films = this.reader.films(new Query(), Projection.of("nom,seance.date"), Expansion.ALL);
+
+        films.forEach(film -> Assertions.assertNotNull(film.getSeance().getDate()));
+        this.assertQueries(1, 1, 0, 0);
+    }
+
+    /**
+     * Testing that a by-id read with a projection does not resolve the references
+     */
+    @Test
+    public void testFilmByIdWithProjectionSkipReferences() {
+        String id = this.collection("film").get(7).getObjectId("_id").toHexString();
+        Film film = this.reader.film(id, Projection.of("nom"), Expansion.ALL).orElseThrow();
+
+        Assertions.assertEquals("Film 7", film.getNom());
+        this.assertQueries(1, 0, 0, 0);
+    }
+
+    /**
+     * Testing that without expansion the references are id-only stubs, read in one query
+     */
+    @Test
+    public void testFilmsWithoutExpansionKeepStubs() {
+        List<Film> films = this.reader.films(new Query(), Projection.ALL, Expansion.NONE);
+
+        films.forEach(film -> {
+            Assertions.assertNotNull(film.getSeance().getId());
+            Assertions.assertNull(film.getSeance().getDate());
+        });
+        this.assertQueries(1, 0, 0, 0);
+    }
+
+    /**
+     * Testing that an expanded reference is resolved for the whole list in one query, the next level staying a stub
+     */
+    @Test
+    public void testExpansionResolvesOneLevelPerPath() {
+        List<Film> films = this.reader.films(new Query(), Projection.ALL, Expansion.of("seance"));
+
+        films.forEach(film -> {
+            Assertions.assertNotNull(film.getSeance().getDate());
+            Assertions.assertNotNull(film.getSeance().getSalle().getId());
+            Assertions.assertNull(film.getSeance().getSalle().getNbrPlace());
+        });
+        this.assertQueries(1, 1, 0, 0);
+    }
+
+    /**
+     * Testing that a full expansion path resolves every level with one query each
+     */
+    @Test
+    public void testFullExpansionPath() {
+        List<Film> films = this.reader.films(new Query(), Projection.ALL, Expansion.of("seance.salle.cinema"));
+
+        films.forEach(film -> Assertions.assertNotNull(film.getSeance().getSalle().getCinema().getNom()));
+        this.assertQueries(1, 1, 1, 1);
+    }
+}
@@ -0,0 +1,107 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Film;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.IndexManager;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks the indexes declared on the entities against a mocked Mongo
+ */
+public class IndexManagerTest {
+
+    private MongoTemplate template;
+
+    private Map<Class<?>, List<IndexInfo>> indexes = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        this.template = Mockito.mock(MongoTemplate.class);
+        BDDMockito.given(this.template.getConverter()).willReturn(converter);
+        this.mockCollection(Cinema.class, "cinema");
+        this.mockCollection(Salle.class, "salle");
+        this.mockCollection(Seance.class, "seance");
+        this.mockCollection(Film.class, "film");
+        this.mockCollection(Reservation.class, "reservation");
+    }
+
+    /**
+     * Testing that only the default _id index is not enough
+     */
+    @Test
+    public void testMissingIndexes() {
+        IndexManager manager = new IndexManager(this.template);
+        Assertions.assertEquals(List.of("salle.cinema", "seance.salle_date_id", "seance.date_id", "film.seance", "reservation.seance"), manager.missingIndexes());
+    }
+
+    /**
+     * Testing that ensureIndexes() creates the compound (salle.$id, date, _id) index on seance
+     */
+    @Test
+    public void testEnsureIndexes() {
+        IndexManager manager = new IndexManager(this.template);
+        manager.ensureIndexes();
+
+        Assertions.assertTrue(manager.missingIndexes().isEmpty());
+        IndexInfo salleDate = this.indexes.get(Seance.class).get(1);
+        Assertions.assertEquals("salle_date_id", salleDate.getName());
+        Assertions.assertEquals("salle.$id", salleDate.getIndexFields().get(0).getKey());
+        Assertions.assertEquals("date", salleDate.getIndexFields().get(1).getKey());
+        Assertions.assertEquals("_id", salleDate.getIndexFields().get(2).getKey());
+    }
+
+    /**
+     * Testing that an index that Mongo did not create fails the startup
+     */
+    @Test
+    public void testEnsureIndexesWhereIndexNotCreated() {
+        IndexOperations broken = Mockito.mock(IndexOperations.class);
+        BDDMockito.given(broken.getIndexInfo()).willReturn(List.of(this.idIndex()));
+        BDDMockito.given(this.template.indexOps(Film.class)).willReturn(broken);
+
+        IndexManager manager = new IndexManager(this.template);
+        Assertions.assertThrows(IllegalStateException.class, manager::ensureIndexes);
+    }
+
+    private void mockCollection(Class<?> type, String collection) {
+        List<IndexInfo> infos = new ArrayList<>(List.of(this.idIndex()));
+        this.indexes.put(type, infos);
+        IndexOperations operations = Mockito.mock(IndexOperations.class);
+        BDDMockito.given(operations.getIndexInfo()).willAnswer(invocation -> new ArrayList<>(infos));
+        BDDMockito.given(operations.ensureIndex(ArgumentMatchers.any(IndexDefinition.class))).willAnswer(invocation -> {
+            IndexDefinition definition = invocation.getArgument(0);
+            String name = definition.getIndexOptions().getString("name");
+            infos.add(IndexInfo.indexInfoOf(new Document("name", name).append("key", definition.getIndexKeys())));
+            return name;
+        });
+        BDDMockito.given(this.template.indexOps(type)).willReturn(operations);
+        BDDMockito.given(this.template.getCollectionName(type)).willReturn(collection);
+    }
+
+    private IndexInfo idIndex() {
+        return IndexInfo.indexInfoOf(new Document("name", "_id_").append("key", new Document("_id", 1)));
+    }
+}
@@ -0,0 +1,153 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.repositories.SeatCounter;
+import fr.semifir.apicinema.repositories.WriteBehindQueue;
+import fr.semifir.apicinema.services.Pagination;
+import fr.semifir.apicinema.services.SeanceService;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Checks the keyset cursors directly, without a controller in between
+ */
+public class PaginationTest {
+
+    private static final String ID = "61d1e0f0a1b2c3d4e5f60718";
+
+    private GraphReader reader;
+
+    private SeanceService seanceService;
+
+    @BeforeEach
+    public void setup() {
+        this.reader = Mockito.mock(GraphReader.class);
+        this.seanceService = new SeanceService(
+                Mockito.mock(SeanceRepository.class),
+                this.reader,
+                Mockito.mock(BulkWriter.class),
+                Mockito.mock(SeatCounter.class),
+                new EntityCache<>("seance", 10, Duration.ofMinutes(1)),
+                Mockito.mock(CollectionVersions.class),
+                Mockito.mock(EntityMapper.class),
+                WriteBehindQueue.disabled("seance"),
+                Mockito.mock(PatchWriter.class));
+    }
+
+    /**
+     * Testing that a cursor decodes to the key it was encoded from, unicode included
+     */
+    @Test
+    public void testEncodeDecode() {
+        Assertions.assertEquals(ID, Pagination.decode(Pagination.encode(ID)));
+        Assertions.assertEquals("1640995200000:é", Pagination.decode(Pagination.encode("1640995200000:é")));
+        Assertions.assertFalse(Pagination.encode(ID).contains("="));
+    }
+
+    /**
+     * Testing that malformed cursors are refused with an IllegalArgumentException
+     */
+    @Test
+    public void testDecodeWhereCursorNotValid() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Pagination.decode("!!!"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Pagination.decode("a"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Pagination.decode(""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Pagination.query("!!!", 10));
+    }
+
+    /**
+     * Testing that the page size is kept between 1 and MAX_LIMIT
+     */
+    @Test
+    public void testClamp() {
+        Assertions.assertEquals(1, Pagination.clamp(0));
+        Assertions.assertEquals(1, Pagination.clamp(-20));
+        Assertions.assertEquals(20, Pagination.clamp(20));
+        Assertions.assertEquals(Pagination.MAX_LIMIT, Pagination.clamp(Pagination.MAX_LIMIT));
+        Assertions.assertEquals(Pagination.MAX_LIMIT, Pagination.clamp(Integer.MAX_VALUE));
+        Assertions.assertEquals(Pagination.MAX_LIMIT + 1, Pagination.pageable(10_000).getPageSize());
+    }
+
+    /**
+     * Testing that a page query reads one element more than the page, after the cursor's _id
+     */
+    @Test
+    public void testQuery() {
+        Query first = Pagination.query(null, 20);
+        Assertions.assertEquals(21, first.getLimit());
+        Assertions.assertEquals(new Document("_id", 1), first.getSortObject());
+        Assertions.assertTrue(first.getQueryObject().isEmpty());
+
+        Query next = Pagination.query(Pagination.encode(ID), 20);
+        Assertions.assertEquals(new Document("_id", new Document("$gt", new ObjectId(ID))), next.getQueryObject());
+    }
+
+    /**
+     * Testing that the next cursor is given only when more than limit entities were read
+     */
+    @Test
+    public void testPage() {
+        PageDTO<String> full = Pagination.page(List.of("a", "b", "c"), 2, key -> key, key -> key.toUpperCase());
+        Assertions.assertEquals(List.of("A", "B"), full.getContent());
+        Assertions.assertEquals("b", Pagination.decode(full.getNext()));
+
+        PageDTO<String> last = Pagination.page(List.of("a", "b"), 2, key -> key, key -> key.toUpperCase());
+        Assertions.assertEquals(List.of("A", "B"), last.getContent());
+        Assertions.assertNull(last.getNext());
+    }
+
+    /**
+     * Testing the (date, _id) cursor of search() : seances at the cursor's date are resumed after its _id
+     */
+    @Test
+    public void testSearchCursorTieBreak() {
+        Date last = new Date(1640995200000L);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        BDDMockito.given(this.reader.seances(query.capture(), ArgumentMatchers.any(Projection.class), ArgumentMatchers.any(Expansion.class)))
+                .willReturn(List.<Seance>of());
+
+        this.seanceService.search(null, null, null, null, Pagination.encode(last.getTime() + ":" + ID), 10);
+
+        Document filter = query.getValue().getQueryObject();
+        Assertions.assertEquals(new Document("$gte", last), filter.get("date"));
+        Assertions.assertEquals(List.of(
+                new Document("date", new Document("$gt", last)),
+                new Document("date", last).append("_id", new Document("$gt", new ObjectId(ID)))
+        ), filter.get("$or"));
+        Assertions.assertEquals(new Document("date", 1).append("_id", 1), query.getValue().getSortObject());
+        Assertions.assertEquals(11, query.getValue().getLimit());
+    }
+
+    /**
+     * Testing that a search cursor without a date or an id is refused
+     */
+    @Test
+    public void testSearchWhereCursorNotValid() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> this.seanceService.search(null, null, null, null, Pagination.encode(ID), 10));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> this.seanceService.search(null, null, null, null, Pagination.encode("hier:" + ID), 10));
+    }
+}
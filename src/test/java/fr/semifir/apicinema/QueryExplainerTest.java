@@ -0,0 +1,86 @@
+package fr.semifir.apicinema;
+
+import com.mongodb.client.MongoDatabase;
+import fr.semifir.apicinema.dtos.diagnostic.QueryPlanDTO;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.QueryExplainer;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+/**
+ * Reads the winning plan out of explain results
+ */
+public class QueryExplainerTest {
+
+    private MongoTemplate template;
+
+    private MongoDatabase database;
+
+    private QueryExplainer explainer;
+
+    @BeforeEach
+    public void setup() {
+        this.template = Mockito.mock(MongoTemplate.class);
+        this.database = Mockito.mock(MongoDatabase.class);
+        BDDMockito.given(this.template.getDb()).willReturn(this.database);
+        BDDMockito.given(this.template.getCollectionName(Seance.class)).willReturn("seance");
+        this.explainer = new QueryExplainer(this.template);
+    }
+
+    /**
+     * Testing an index-backed plan
+     */
+    @Test
+    public void testExplainIndexScan() {
+        Document plan = new Document("stage", "FETCH")
+                .append("inputStage", new Document("stage", "IXSCAN").append("indexName", "salle_date"));
+        this.givenWinningPlan(plan);
+
+        QueryPlanDTO result = this.explainer.explain("seances.bySalle", Seance.class,
+                GraphReader.byRef("salle", List.of(new ObjectId().toHexString())).with(Sort.by("date")));
+
+        Assertions.assertEquals(List.of("FETCH", "IXSCAN"), result.getStages());
+        Assertions.assertFalse(result.isCollscan());
+        Assertions.assertEquals("seance", result.getCollection());
+
+        ArgumentCaptor<Bson> command = ArgumentCaptor.forClass(Bson.class);
+        Mockito.verify(this.database).runCommand(command.capture());
+        Document find = ((Document) command.getValue()).get("explain", Document.class);
+        Assertions.assertEquals("seance", find.getString("find"));
+        Assertions.assertTrue(find.get("filter", Document.class).containsKey("salle.$id"));
+    }
+
+    /**
+     * Testing that a COLLSCAN nested under a SBE queryPlan is flagged
+     */
+    @Test
+    public void testExplainCollectionScan() {
+        Document plan = new Document("queryPlan", new Document("stage", "SORT")
+                .append("inputStages", List.of(new Document("stage", "COLLSCAN"))));
+        this.givenWinningPlan(plan);
+
+        QueryPlanDTO result = this.explainer.explain("seances.byDate", Seance.class, new Query());
+
+        Assertions.assertEquals(List.of("SORT", "COLLSCAN"), result.getStages());
+        Assertions.assertTrue(result.isCollscan());
+    }
+
+    private void givenWinningPlan(Document plan) {
+        BDDMockito.given(this.database.runCommand(ArgumentMatchers.any(Bson.class)))
+                  .willReturn(new Document("queryPlanner", new Document("winningPlan", plan)));
+    }
+}
@@ -0,0 +1,133 @@
+package fr.semifir.apicinema;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandSucceededEvent;
+import fr.semifir.apicinema.configurations.WebConfiguration;
+import fr.semifir.apicinema.controllers.FilmController;
+import fr.semifir.apicinema.metrics.MongoCommandListener;
+import fr.semifir.apicinema.metrics.QueryStatsFilter;
+import fr.semifir.apicinema.services.FilmService;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Counts the Mongo commands of a request, commands being simulated through the listener from the mocked service
+ */
+@WebMvcTest(FilmController.class)
+@ActiveProfiles("test")
+public class QueryStatsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FilmService service;
+
+    private MongoCommandListener listener = new MongoCommandListener(Duration.ZERO);
+
+    private ConnectionDescription connection = new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    /**
+     * Testing that the command count and the time spent in Mongo are sent back as headers
+     * @throws Exception
+     */
+    @Test
+    public void testHeaders() throws Exception {
+        BDDMockito.given(this.service.findAll()).willAnswer(invocation -> {
+            this.commands(2);
+            return List.of();
+        });
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/films"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(QueryStatsFilter.COMMANDS_HEADER, "2"))
+                .andExpect(MockMvcResultMatchers.header().string("Server-Timing", "db;dur=2.000"));
+    }
+
+    /**
+     * Testing that the strict budget, reliable only under MockMvc, is refused in the prod profile
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEnforceBudgetRefusedInProd() {
+        WebConfiguration configuration = new WebConfiguration(Mockito.mock(ObjectProvider.class), Mockito.mock(ObjectProvider.class));
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("prod");
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> configuration.queryStatsFilter(Mockito.mock(ObjectProvider.class), true, environment));
+        Assertions.assertNotNull(configuration.queryStatsFilter(Mockito.mock(ObjectProvider.class), false, environment));
+    }
+
+    /**
+     * Testing that the headers are also sent on a response without body
+     * @throws Exception
+     */
+    @Test
+    public void testHeadersWithoutBody() throws Exception {
+        BDDMockito.given(this.service.deleteByIds(List.of("abc"))).willAnswer(invocation -> {
+            this.commands(1);
+            return 0L;
+        });
+
+        this.mockMvc.perform(MockMvcRequestBuilders.delete("/films/abc"))
+                .andExpect(MockMvcResultMatchers.status().isNotFound())
+                .andExpect(MockMvcResultMatchers.header().string(QueryStatsFilter.COMMANDS_HEADER, "1"));
+    }
+
+    /**
+     * Testing that an endpoint going over its @QueryBudget fails in test mode
+     */
+    @Test
+    public void testQueryBudgetExceeded() {
+        BDDMockito.given(this.service.findAll()).willAnswer(invocation -> {
+            this.commands(6);
+            return List.of();
+        });
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> this.mockMvc.perform(MockMvcRequestBuilders.get("/films")));
+    }
+
+    /**
+     * Testing that an endpoint within its @QueryBudget passes
+     * @throws Exception
+     */
+    @Test
+    public void testQueryBudgetReached() throws Exception {
+        BDDMockito.given(this.service.findAll()).willAnswer(invocation -> {
+            this.commands(5);
+            return List.of();
+        });
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get("/films"))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    /**
+     * Commands of one millisecond each, as the Mongo driver would report them
+     */
+    private void commands(int count) {
+        for (int i = 0; i < count; i++) {
+            this.listener.commandSucceeded(new CommandSucceededEvent(i, this.connection, "find", new BsonDocument(), 1_000_000L));
+        }
+    }
+}
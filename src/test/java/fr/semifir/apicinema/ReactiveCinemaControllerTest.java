@@ -0,0 +1,129 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.controllers.reactive.ReactiveCinemaController;
+import fr.semifir.apicinema.dtos.cinema.CinemaDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.reactive.ReactiveCinemaService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebTestClient equivalent of CinemaControllerTest for the reactive profile
+ */
+@WebFluxTest(ReactiveCinemaController.class)
+@ActiveProfiles("reactive")
+public class ReactiveCinemaControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveCinemaService service;
+
+    private String route = "/cinemas";
+
+    /**
+     * Testing method findAll()
+     */
+    @Test
+    public void testFindAllCinemas() {
+        BDDMockito.given(service.findAll()).willReturn(Flux.empty());
+        this.webTestClient.get().uri(route)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEmpty();
+    }
+
+    /**
+     * Testing method findById when id is not valid
+     */
+    @Test
+    public void testFindOneCinemaWhereCinemaNotFound() {
+        BDDMockito.given(service.findByID("dskllbgequl")).willReturn(Mono.error(new NotFoundException()));
+        this.webTestClient.get().uri(route + "/dskllbgequl")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Testing method findById with a valid id
+     */
+    @Test
+    public void testFindOneCinema() {
+        CinemaDTO cinemaDTO = new CinemaDTO("11111111111", "Luxor");
+        BDDMockito.given(service.findByID(cinemaDTO.getId())).willReturn(Mono.just(cinemaDTO));
+        this.webTestClient.get().uri(route + "/" + cinemaDTO.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CinemaDTO.class).isEqualTo(cinemaDTO);
+    }
+
+    /**
+     * Testing method update() when the given version is outdated
+     */
+    @Test
+    public void testUpdateCinemaWhereVersionConflicts() {
+        CinemaDTO cinemaDTO = new CinemaDTO("11111111111", "Luxor", 3L);
+        BDDMockito.given(service.save(ArgumentMatchers.any(CinemaDTO.class))).willReturn(Mono.error(new ConflictException()));
+        this.webTestClient.put().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(cinemaDTO)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    /**
+     * Testing method save()
+     */
+    @Test
+    public void testSaveCinema() {
+        CinemaDTO cinemaDTO = new CinemaDTO("11111111111", "Luxor");
+        BDDMockito.given(service.save(ArgumentMatchers.any(CinemaDTO.class))).willReturn(Mono.just(cinemaDTO));
+        this.webTestClient.post().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(cinemaDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(CinemaDTO.class).isEqualTo(cinemaDTO);
+    }
+
+    /**
+     * Testing method save() for updating
+     */
+    @Test
+    public void testUpdateCinema() {
+        CinemaDTO newCinemaDTO = new CinemaDTO("11111111111", "Pathé");
+        BDDMockito.given(service.save(ArgumentMatchers.any(CinemaDTO.class))).willReturn(Mono.just(newCinemaDTO));
+        this.webTestClient.put().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(newCinemaDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(CinemaDTO.class).isEqualTo(newCinemaDTO);
+    }
+
+    /**
+     * Testing delete() method
+     */
+    @Test
+    public void testDeleteCinema() {
+        BDDMockito.given(service.delete(ArgumentMatchers.any())).willReturn(Mono.empty());
+        this.webTestClient.method(HttpMethod.DELETE).uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Cinema("11111111111", "Luxor"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEqualTo(true);
+    }
+}
@@ -0,0 +1,130 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.controllers.reactive.ReactiveFilmController;
+import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.reactive.ReactiveFilmService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+/**
+ * WebTestClient equivalent of FilmControllerTest for the reactive profile
+ */
+@WebFluxTest(ReactiveFilmController.class)
+@ActiveProfiles("reactive")
+public class ReactiveFilmControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveFilmService service;
+
+    private String route = "/films";
+
+    /**
+     * Testing method findAll()
+     */
+    @Test
+    public void testFindAllFilms() {
+        BDDMockito.given(service.findAll()).willReturn(Flux.empty());
+        this.webTestClient.get().uri(route)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEmpty();
+    }
+
+    /**
+     * Testing method findById when id is not valid
+     */
+    @Test
+    public void testFindOneFilmWhereFilmNotFound() {
+        BDDMockito.given(service.findByID("dskllbgequl")).willReturn(Mono.error(new NotFoundException()));
+        this.webTestClient.get().uri(route + "/dskllbgequl")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Testing method findById with a valid id
+     */
+    @Test
+    public void testFindOneFilm() {
+        Cinema cinema = new Cinema("d54fg65df", "Gaumont");
+        Salle salle = new Salle("456", 1, 123, cinema);
+        Seance seance = new Seance("456ds4gds", new Date(), salle);
+        FilmDTO filmDTO = new FilmDTO("dfghjk", "La dernière", 120f, seance);
+        BDDMockito.given(service.findByID(filmDTO.getId())).willReturn(Mono.just(filmDTO));
+        this.webTestClient.get().uri(route + "/" + filmDTO.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(FilmDTO.class).isEqualTo(filmDTO);
+    }
+
+    /**
+     * Testing method save()
+     */
+    @Test
+    public void testSaveFilm() {
+        Cinema cinema = new Cinema("d54fg65df", "Gaumont");
+        Salle salle = new Salle("456", 1, 123, cinema);
+        Seance seance = new Seance("456ds4gds", new Date(), salle);
+        FilmDTO filmDTO = new FilmDTO("dfghjk", "La dernière", 120f, seance);
+        BDDMockito.given(service.save(ArgumentMatchers.any(FilmDTO.class))).willReturn(Mono.just(filmDTO));
+        this.webTestClient.post().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(filmDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(FilmDTO.class).isEqualTo(filmDTO);
+    }
+
+    /**
+     * Testing method save() for updating
+     */
+    @Test
+    public void testUpdateFilm() {
+        Cinema cinema = new Cinema("d54fg65df", "Gaumont");
+        Salle salle = new Salle("456", 1, 123, cinema);
+        Seance seance = new Seance("456ds4gds", new Date(), salle);
+        FilmDTO newFilmDTO = new FilmDTO("dfghjk", "C'était pour rire!", 120f, seance);
+        BDDMockito.given(service.save(ArgumentMatchers.any(FilmDTO.class))).willReturn(Mono.just(newFilmDTO));
+        this.webTestClient.put().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(newFilmDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(FilmDTO.class).isEqualTo(newFilmDTO);
+    }
+
+    /**
+     * Testing delete() method
+     */
+    @Test
+    public void testDeleteFilm() {
+        Cinema cinema = new Cinema("d54fg65df", "Gaumont");
+        Salle salle = new Salle("456", 1, 123, cinema);
+        Seance seance = new Seance("456ds4gds", new Date(), salle);
+        BDDMockito.given(service.delete(ArgumentMatchers.any())).willReturn(Mono.empty());
+        this.webTestClient.method(HttpMethod.DELETE).uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new FilmDTO("dfghjk", "La dernière", 120f, seance))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEqualTo(true);
+    }
+}
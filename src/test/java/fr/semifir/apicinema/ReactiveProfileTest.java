@@ -0,0 +1,44 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.caches.ChangeStreamInvalidator;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.services.ReservationService;
+import fr.semifir.apicinema.services.SeanceService;
+import fr.semifir.apicinema.services.reactive.ReactiveSeanceService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Starts the whole application in the reactive profile, without a mongod: the reactive client connects lazily
+ * The exclusions repeat those of application-reactive.properties, plus the embedded mongod of the test classpath
+ */
+@SpringBootTest(properties = "spring.autoconfigure.exclude="
+        + "org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration,"
+        + "org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration,"
+        + "org.springframework.boot.autoconfigure.data.mongo.MongoRepositoriesAutoConfiguration,"
+        + "org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration")
+@ActiveProfiles("reactive")
+public class ReactiveProfileTest {
+
+    @Autowired
+    private ApplicationContext context;
+
+    /**
+     * Testing that the blocking services, their scheduled tasks and the blocking Mongo client are not created
+     */
+    @Test
+    public void testBlockingStackIsAbsent() {
+        Assertions.assertEquals(0, this.context.getBeanNamesForType(SeanceService.class).length);
+        Assertions.assertEquals(0, this.context.getBeanNamesForType(ReservationService.class).length);
+        Assertions.assertEquals(0, this.context.getBeanNamesForType(GraphReader.class).length);
+        Assertions.assertEquals(0, this.context.getBeanNamesForType(ChangeStreamInvalidator.class).length);
+        Assertions.assertEquals(0, this.context.getBeanNamesForType(MongoTemplate.class).length);
+        Assertions.assertEquals(0, this.context.getBeanNamesForType(com.mongodb.client.MongoClient.class).length);
+        Assertions.assertEquals(1, this.context.getBeanNamesForType(ReactiveSeanceService.class).length);
+    }
+}
@@ -0,0 +1,119 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.controllers.reactive.ReactiveSalleController;
+import fr.semifir.apicinema.dtos.salle.SalleDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.reactive.ReactiveSalleService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebTestClient equivalent of SalleControllerTest for the reactive profile
+ */
+@WebFluxTest(ReactiveSalleController.class)
+@ActiveProfiles("reactive")
+public class ReactiveSalleControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveSalleService service;
+
+    private String route = "/salles";
+
+    /**
+     * Testing method findAll()
+     */
+    @Test
+    public void testFindAllSalles() {
+        BDDMockito.given(service.findAll()).willReturn(Flux.empty());
+        this.webTestClient.get().uri(route)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEmpty();
+    }
+
+    /**
+     * Testing method findById when id is not valid
+     */
+    @Test
+    public void testFindOneSalleWhereSalleNotFound() {
+        BDDMockito.given(service.findByID("dskllbgequl")).willReturn(Mono.error(new NotFoundException()));
+        this.webTestClient.get().uri(route + "/dskllbgequl")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Testing method findById with a valid id
+     */
+    @Test
+    public void testFindOneSalle() {
+        Cinema cinema = new Cinema("111111111", "Pathé");
+        SalleDTO salleDTO = new SalleDTO("8888888", 4, 86, cinema);
+        BDDMockito.given(service.findByID(salleDTO.getId())).willReturn(Mono.just(salleDTO));
+        this.webTestClient.get().uri(route + "/" + salleDTO.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(SalleDTO.class).isEqualTo(salleDTO);
+    }
+
+    /**
+     * Testing method save()
+     */
+    @Test
+    public void testSaveSalle() {
+        Cinema cinema = new Cinema("111111111", "Pathé");
+        SalleDTO salleDTO = new SalleDTO("8888888", 4, 86, cinema);
+        BDDMockito.given(service.save(ArgumentMatchers.any(SalleDTO.class))).willReturn(Mono.just(salleDTO));
+        this.webTestClient.post().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(salleDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(SalleDTO.class).isEqualTo(salleDTO);
+    }
+
+    /**
+     * Testing method save() for updating
+     */
+    @Test
+    public void testUpdateSalle() {
+        Cinema cinema = new Cinema("111111111", "Pathé");
+        SalleDTO newSalleDTO = new SalleDTO("8888888", 4, 99999, cinema);
+        BDDMockito.given(service.save(ArgumentMatchers.any(SalleDTO.class))).willReturn(Mono.just(newSalleDTO));
+        this.webTestClient.put().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(newSalleDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(SalleDTO.class).isEqualTo(newSalleDTO);
+    }
+
+    /**
+     * Testing delete() method
+     */
+    @Test
+    public void testDeleteSalle() {
+        Cinema cinema = new Cinema("111111111", "Pathé");
+        BDDMockito.given(service.delete(ArgumentMatchers.any())).willReturn(Mono.empty());
+        this.webTestClient.method(HttpMethod.DELETE).uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Salle("8888888", 4, 86, cinema))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEqualTo(true);
+    }
+}
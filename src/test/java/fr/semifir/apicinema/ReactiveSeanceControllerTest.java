@@ -0,0 +1,174 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.controllers.reactive.ReactiveSeanceController;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Cinema;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.services.reactive.ReactiveSeanceService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+/**
+ * WebTestClient equivalent of SeanceControllerTest for the reactive profile
+ */
+@WebFluxTest(ReactiveSeanceController.class)
+@ActiveProfiles("reactive")
+public class ReactiveSeanceControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveSeanceService service;
+
+    private String route = "/seances";
+
+    /**
+     * Testing method findAll()
+     */
+    @Test
+    public void testFindAllSeances() {
+        BDDMockito.given(service.findAll()).willReturn(Flux.empty());
+        this.webTestClient.get().uri(route)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEmpty();
+    }
+
+    /**
+     * Testing that ?fields= and ?expand= reach the service and only the requested fields are written
+     */
+    @Test
+    public void testFindAllSeancesWithFields() {
+        SeanceDTO seanceDTO = new SeanceDTO("sdfghjk", new Date(), new Salle("46nf45bx", 1, 99, null), 99);
+        BDDMockito.given(service.findAll(ArgumentMatchers.any(Projection.class), ArgumentMatchers.any(Expansion.class)))
+                .willReturn(Flux.just(seanceDTO));
+        this.webTestClient.get().uri(route + "?fields=date,salle.numDeSalle&expand=salle")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo("sdfghjk")
+                .jsonPath("$[0].date").exists()
+                .jsonPath("$[0].salle.numDeSalle").isEqualTo(1)
+                .jsonPath("$[0].salle.nbrPlace").doesNotExist()
+                .jsonPath("$[0].remaining").doesNotExist();
+    }
+
+    /**
+     * Testing that the NDJSON stream applies ?fields= to each line
+     */
+    @Test
+    public void testStreamSeancesWithFields() {
+        SeanceDTO seanceDTO = new SeanceDTO("sdfghjk", new Date(), new Salle("46nf45bx", 1, 99, null), 99);
+        BDDMockito.given(service.stream(ArgumentMatchers.any(Projection.class), ArgumentMatchers.any()))
+                .willReturn(Flux.just(seanceDTO, seanceDTO));
+        String body = this.webTestClient.get().uri(route + "?fields=remaining")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        Assertions.assertEquals("{\"id\":\"sdfghjk\",\"remaining\":99}\n{\"id\":\"sdfghjk\",\"remaining\":99}\n", body);
+    }
+
+    /**
+     * Testing that an invalid ?fields= is refused
+     */
+    @Test
+    public void testFindOneSeanceWhereFieldsNotValid() {
+        this.webTestClient.get().uri(route + "/sdfghjk?fields=salle..nom")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    /**
+     * Testing method findById when id is not valid
+     */
+    @Test
+    public void testFindOneSeanceWhereSeanceNotFound() {
+        BDDMockito.given(service.findByID("dskllbgequl")).willReturn(Mono.error(new NotFoundException()));
+        this.webTestClient.get().uri(route + "/dskllbgequl")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    /**
+     * Testing method findById with a valid id
+     */
+    @Test
+    public void testFindOneSeance() {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        SeanceDTO seanceDTO = new SeanceDTO("sdfghjk", new Date(), salle);
+        BDDMockito.given(service.findByID(seanceDTO.getId())).willReturn(Mono.just(seanceDTO));
+        this.webTestClient.get().uri(route + "/" + seanceDTO.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(SeanceDTO.class).isEqualTo(seanceDTO);
+    }
+
+    /**
+     * Testing method save()
+     */
+    @Test
+    public void testSaveSeance() {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        SeanceDTO seanceDTO = new SeanceDTO("sdfghjk", new Date(), salle);
+        BDDMockito.given(service.save(ArgumentMatchers.any(SeanceDTO.class))).willReturn(Mono.just(seanceDTO));
+        this.webTestClient.post().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(seanceDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(SeanceDTO.class).isEqualTo(seanceDTO);
+    }
+
+    /**
+     * Testing method save() for updating
+     */
+    @Test
+    public void testUpdateSeance() {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        SeanceDTO newSeanceDTO = new SeanceDTO("sdfghjk", new Date(), new Salle("46nf45bx", 4, 99, cinema));
+        BDDMockito.given(service.save(ArgumentMatchers.any(SeanceDTO.class))).willReturn(Mono.just(newSeanceDTO));
+        this.webTestClient.put().uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(newSeanceDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(SeanceDTO.class).isEqualTo(newSeanceDTO);
+    }
+
+    /**
+     * Testing delete() method
+     */
+    @Test
+    public void testDeleteSeance() {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        BDDMockito.given(service.delete(ArgumentMatchers.any())).willReturn(Mono.empty());
+        this.webTestClient.method(HttpMethod.DELETE).uri(route)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Seance("sdfghjk", new Date(), salle))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$").isEqualTo(true);
+    }
+}
@@ -0,0 +1,91 @@
+package fr.semifir.apicinema;
+
+import com.google.gson.Gson;
+import fr.semifir.apicinema.controllers.ReservationController;
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.services.ReservationService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.Date;
+import java.util.List;
+
+@WebMvcTest(ReservationController.class)
+public class ReservationControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReservationService service;
+
+    private String route = "/reservations";
+
+    /**
+     * Testing method hold()
+     * @throws Exception
+     */
+    @Test
+    public void testHoldSeats() throws Exception {
+        ReservationRequestDTO request = new ReservationRequestDTO("sdfghjk", List.of(4, 5), null);
+        ReservationDTO reservation = new ReservationDTO("r1", "sdfghjk", List.of(4, 5), Reservation.HELD, new Date());
+        BDDMockito.given(service.hold(ArgumentMatchers.any(ReservationRequestDTO.class))).willReturn(reservation);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route)
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(new Gson().toJson(request)))
+                    .andExpect(MockMvcResultMatchers.status().isCreated())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.id").value("r1"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seats[1]").value(5))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.status").value(Reservation.HELD));
+    }
+
+    /**
+     * Testing method hold() where seats are already taken
+     * @throws Exception
+     */
+    @Test
+    public void testHoldSeatsWhereSeatsTaken() throws Exception {
+        ReservationRequestDTO request = new ReservationRequestDTO("sdfghjk", null, 3);
+        BDDMockito.given(service.hold(ArgumentMatchers.any(ReservationRequestDTO.class)))
+                  .willThrow(new ConflictException("Les places demandées ne sont plus disponibles"));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route)
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(new Gson().toJson(request)))
+                    .andExpect(MockMvcResultMatchers.status().isConflict());
+    }
+
+    /**
+     * Testing method confirm() where the hold expired
+     * @throws Exception
+     */
+    @Test
+    public void testConfirmWhereHoldExpired() throws Exception {
+        BDDMockito.given(service.confirm("r1")).willThrow(new ConflictException("La réservation a expiré"));
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route + "/r1/confirm"))
+                    .andExpect(MockMvcResultMatchers.status().isConflict());
+    }
+
+    /**
+     * Testing method cancel() where reservation doesn't exist
+     * @throws Exception
+     */
+    @Test
+    public void testCancelWhereReservationNotFound() throws Exception {
+        BDDMockito.willThrow(new NotFoundException("La réservation n'a pas été trouvée")).given(service).cancel("r1");
+        this.mockMvc.perform(MockMvcRequestBuilders.delete(route + "/r1"))
+                    .andExpect(MockMvcResultMatchers.status().isNotFound());
+    }
+}
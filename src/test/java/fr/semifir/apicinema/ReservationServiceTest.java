@@ -0,0 +1,188 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.dtos.reservation.ReservationDTO;
+import fr.semifir.apicinema.dtos.reservation.ReservationRequestDTO;
+import fr.semifir.apicinema.entities.Reservation;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.exceptions.NotFoundException;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.repositories.ReservationRepository;
+import fr.semifir.apicinema.repositories.ReservationWriter;
+import fr.semifir.apicinema.services.ReservationService;
+import fr.semifir.apicinema.services.SeanceService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.modelmapper.ModelMapper;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Checks the reservation state changes against mocked Mongo writes
+ */
+public class ReservationServiceTest {
+
+    private static final String SEANCE = "61d1e0f0a1b2c3d4e5f60718";
+
+    private ReservationRepository repository;
+
+    private ReservationWriter writer;
+
+    private GraphReader reader;
+
+    private SeanceService seanceService;
+
+    private Clock clock;
+
+    private ReservationService reservationService;
+
+    @BeforeEach
+    public void setup() {
+        this.repository = Mockito.mock(ReservationRepository.class);
+        this.writer = Mockito.mock(ReservationWriter.class);
+        this.reader = Mockito.mock(GraphReader.class);
+        this.seanceService = Mockito.mock(SeanceService.class);
+        this.clock = Mockito.mock(Clock.class);
+        BDDMockito.given(this.clock.millis()).willReturn(1_000_000L);
+        this.reservationService = new ReservationService(
+                this.repository,
+                this.writer,
+                this.reader,
+                this.seanceService,
+                new ModelMapperEntityMapper(new ModelMapper()),
+                Duration.ofMinutes(5),
+                this.clock);
+        BDDMockito.given(this.reader.seance(ArgumentMatchers.eq(SEANCE), ArgumentMatchers.any(Projection.class), ArgumentMatchers.any(Expansion.class)))
+                .willReturn(Optional.of(new Seance(SEANCE, new Date(), new Salle("46nf45bx", 1, 2, null))));
+        BDDMockito.given(this.repository.insert(ArgumentMatchers.any(Reservation.class))).will(AdditionalAnswers.returnsFirstArg());
+    }
+
+    /**
+     * Testing that of two cancels of the same hold only the one that removed it frees the seats and the counter
+     */
+    @Test
+    public void testCancelTwice() {
+        ReservationDTO held = this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0, 1), null));
+        Reservation removed = new Reservation(held.getId(), SEANCE, List.of(0, 1), Reservation.HELD, held.getExpiresAt());
+        BDDMockito.given(this.writer.remove(held.getId())).willReturn(Optional.of(removed), Optional.empty());
+
+        this.reservationService.cancel(held.getId());
+        Assertions.assertThrows(NotFoundException.class, () -> this.reservationService.cancel(held.getId()));
+        Mockito.verify(this.seanceService).book(SEANCE, 2);
+        Mockito.verify(this.seanceService, Mockito.times(1)).release(SEANCE, 2);
+
+        // Les deux places sont libres une seule fois : une seule nouvelle tenue passe
+        this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0, 1), null));
+        Assertions.assertThrows(ConflictException.class,
+                () -> this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0), null)));
+    }
+
+    /**
+     * Testing that a hold past its deadline is refused before any write, even if not swept yet
+     */
+    @Test
+    public void testConfirmWhereExpired() {
+        ReservationDTO held = this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0), null));
+        BDDMockito.given(this.repository.findById(held.getId()))
+                .willReturn(Optional.of(new Reservation(held.getId(), SEANCE, List.of(0), Reservation.HELD, held.getExpiresAt())));
+        BDDMockito.given(this.clock.millis()).willReturn(held.getExpiresAt().getTime());
+
+        Assertions.assertThrows(ConflictException.class, () -> this.reservationService.confirm(held.getId()));
+        Mockito.verify(this.writer, Mockito.never()).confirm(ArgumentMatchers.anyString(), ArgumentMatchers.any(Date.class));
+    }
+
+    /**
+     * Testing that a hold cancelled between the read and the conditional update is a conflict
+     * and that its seats are freed by the confirm call
+     */
+    @Test
+    public void testConfirmWhereCancelledMeanwhile() {
+        ReservationDTO held = this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0, 1), null));
+        BDDMockito.given(this.repository.findById(held.getId()))
+                .willReturn(Optional.of(new Reservation(held.getId(), SEANCE, List.of(0, 1), Reservation.HELD, held.getExpiresAt())));
+        BDDMockito.given(this.writer.confirm(ArgumentMatchers.eq(held.getId()), ArgumentMatchers.any(Date.class))).willReturn(Optional.empty());
+
+        Assertions.assertThrows(ConflictException.class, () -> this.reservationService.confirm(held.getId()));
+        Assertions.assertEquals(Reservation.HELD, this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0, 1), null)).getStatus());
+    }
+
+    /**
+     * Testing that a confirmed hold keeps its seats
+     */
+    @Test
+    public void testConfirm() {
+        ReservationDTO held = this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0), null));
+        BDDMockito.given(this.repository.findById(held.getId()))
+                .willReturn(Optional.of(new Reservation(held.getId(), SEANCE, List.of(0), Reservation.HELD, held.getExpiresAt())));
+        BDDMockito.given(this.writer.confirm(ArgumentMatchers.eq(held.getId()), ArgumentMatchers.any(Date.class)))
+                .willReturn(Optional.of(new Reservation(held.getId(), SEANCE, List.of(0), Reservation.CONFIRMED, null)));
+
+        Assertions.assertEquals(Reservation.CONFIRMED, this.reservationService.confirm(held.getId()).getStatus());
+        BDDMockito.given(this.clock.millis()).willReturn(held.getExpiresAt().getTime() + 1);
+        this.reservationService.expireHolds();
+        Assertions.assertThrows(ConflictException.class,
+                () -> this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0), null)));
+    }
+
+    /**
+     * Testing that a salle without nbrPlace is a conflict and a missing seance a not found, never a 500
+     */
+    @Test
+    public void testHoldWhereCapacityUnknown() {
+        String other = "61d1e0f0a1b2c3d4e5f60719";
+        BDDMockito.given(this.reader.seance(ArgumentMatchers.eq(other), ArgumentMatchers.any(Projection.class), ArgumentMatchers.any(Expansion.class)))
+                .willReturn(Optional.of(new Seance(other, new Date(), new Salle("46nf45bx", 1, null, null))));
+
+        Assertions.assertThrows(ConflictException.class,
+                () -> this.reservationService.hold(new ReservationRequestDTO(other, List.of(0), null)));
+        Assertions.assertThrows(NotFoundException.class,
+                () -> this.reservationService.hold(new ReservationRequestDTO("61d1e0f0a1b2c3d4e5f60720", List.of(0), null)));
+    }
+
+    /**
+     * Testing that the seance counter has the last word: a hold it refuses leaves the seats free
+     */
+    @Test
+    public void testHoldWhereCounterSoldOut() {
+        BDDMockito.given(this.seanceService.book(SEANCE, 2)).willThrow(new ConflictException("Il ne reste pas assez de places"));
+
+        Assertions.assertThrows(ConflictException.class,
+                () -> this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0, 1), null)));
+        Mockito.verify(this.repository, Mockito.never()).insert(ArgumentMatchers.any(Reservation.class));
+        Assertions.assertEquals(Reservation.HELD,
+                this.reservationService.hold(new ReservationRequestDTO(SEANCE, List.of(0), null)).getStatus());
+    }
+
+    /**
+     * Testing that the sweeper gives seats back to the counter only for the holds it actually removed
+     */
+    @Test
+    public void testExpireHolds() {
+        Date past = new Date(1_000_000L - 1);
+        BDDMockito.given(this.repository.findByStatusAndExpiresAtBefore(ArgumentMatchers.eq(Reservation.HELD), ArgumentMatchers.any(Date.class)))
+                .willReturn(List.of(
+                        new Reservation("r1", SEANCE, List.of(0, 1), Reservation.HELD, past),
+                        new Reservation("r2", SEANCE, List.of(2), Reservation.HELD, past)));
+        BDDMockito.given(this.writer.removeExpired(ArgumentMatchers.eq("r1"), ArgumentMatchers.any(Date.class)))
+                .willReturn(Optional.of(new Reservation("r1", SEANCE, List.of(0, 1), Reservation.HELD, past)));
+        BDDMockito.given(this.writer.removeExpired(ArgumentMatchers.eq("r2"), ArgumentMatchers.any(Date.class)))
+                .willReturn(Optional.empty());
+
+        Assertions.assertEquals(1, this.reservationService.expireHolds());
+        Mockito.verify(this.seanceService).release(SEANCE, 2);
+        Mockito.verify(this.seanceService, Mockito.never()).release(SEANCE, 1);
+    }
+}
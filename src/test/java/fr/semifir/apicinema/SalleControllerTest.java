@@ -135,6 +135,23 @@ public class SalleControllerTest {
         Assertions.assertNotEquals(oldSalleDTO, resultSalleDTO);
     }
 
+    /**
+     * Testing method save() for an update left to the write-behind queue: accepted, nothing written yet
+     * @throws Exception
+     */
+    @Test
+    public void testUpdateSalleWhereDeferred() throws Exception {
+        SalleDTO salleDTO = new SalleDTO("8888888", 4, 99999, new Cinema("111111111", "Pathé"));
+        BDDMockito.given(service.defer(ArgumentMatchers.any(SalleDTO.class))).willReturn(true);
+
+        this.mockMvc.perform(MockMvcRequestBuilders.put(route)
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(new Gson().toJson(salleDTO)))
+                    .andExpect(MockMvcResultMatchers.status().isAccepted())
+                    .andExpect(MockMvcResultMatchers.content().string(""));
+        BDDMockito.then(service).should(BDDMockito.never()).save(ArgumentMatchers.any(SalleDTO.class));
+    }
+
     /**
      * Testing delete() method
      * @throws Exception
@@ -1,17 +1,25 @@
 package fr.semifir.apicinema;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import fr.semifir.apicinema.controllers.SeanceController;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
 import fr.semifir.apicinema.dtos.film.FilmDTO;
+import fr.semifir.apicinema.dtos.page.PageDTO;
+import fr.semifir.apicinema.dtos.seance.BookingDTO;
 import fr.semifir.apicinema.dtos.seance.SeanceDTO;
 import fr.semifir.apicinema.entities.Cinema;
 import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.exceptions.ConflictException;
 import fr.semifir.apicinema.services.SeanceService;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -23,8 +31,10 @@ import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.TimeZone;
+import java.util.stream.Stream;
 
 @WebMvcTest(SeanceController.class)
 public class SeanceControllerTest {
@@ -46,6 +56,94 @@ public class SeanceControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$").isEmpty());
     }
 
+    /**
+     * Testing method findPage() with search parameters
+     * @throws Exception
+     */
+    @Test
+    public void testSearchSeances() throws Exception {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        SeanceDTO seanceDTO = new SeanceDTO("sdfghjk", new Date(), salle);
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        Date from = format.parse("2021-12-24");
+        Date to = format.parse("2021-12-25");
+        BDDMockito.given(service.search("gb4fdg65df7g45", null, from, to, null, 10))
+                  .willReturn(new PageDTO<>(List.of(seanceDTO), "bmV4dA"));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route)
+                                                    .param("cinema", "gb4fdg65df7g45")
+                                                    .param("from", "2021-12-24")
+                                                    .param("to", "2021-12-25")
+                                                    .param("limit", "10"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.content[0].id").value("sdfghjk"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.next").value("bmV4dA"));
+        BDDMockito.then(service).should(Mockito.never()).findPage(ArgumentMatchers.any(), ArgumentMatchers.anyInt());
+    }
+
+    /**
+     * Testing method findAll() with a date that can't be parsed
+     * @throws Exception
+     */
+    @Test
+    public void testSearchSeancesWhereDateNotValid() throws Exception {
+        this.mockMvc.perform(MockMvcRequestBuilders.get(route).param("from", "demain"))
+                    .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    /**
+     * Testing method findAll() negotiated as CBOR
+     * @throws Exception
+     */
+    @Test
+    public void testFindAllSeancesAsCbor() throws Exception {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        List<SeanceDTO> seances = List.of(new SeanceDTO("sdfghjk", new Date(), salle));
+        BDDMockito.given(service.findAll()).willReturn(seances);
+
+        for (MediaType type : List.of(MediaType.APPLICATION_CBOR, MediaType.valueOf("application/x-jackson-smile"))) {
+            MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.get(route).accept(type))
+                                           .andExpect(MockMvcResultMatchers.status().isOk())
+                                           .andExpect(MockMvcResultMatchers.content().contentTypeCompatibleWith(type))
+                                           .andReturn();
+            ObjectMapper reader = type.equals(MediaType.APPLICATION_CBOR)
+                    ? new ObjectMapper(new CBORFactory())
+                    : new ObjectMapper(new SmileFactory());
+            SeanceDTO[] body = reader.readValue(result.getResponse().getContentAsByteArray(), SeanceDTO[].class);
+            Assertions.assertEquals("sdfghjk", body[0].getId());
+            Assertions.assertEquals("Luxor", body[0].getSalle().getCinema().getNom());
+        }
+    }
+
+    /**
+     * Testing method stream() with Accept: application/x-ndjson
+     * @throws Exception
+     */
+    @Test
+    public void testStreamSeances() throws Exception {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        SeanceDTO first = new SeanceDTO("sdfghjk", new Date(), salle);
+        SeanceDTO second = new SeanceDTO("qsdfghj", new Date(), salle);
+        BDDMockito.given(service.stream()).willReturn(Stream.of(first, second));
+
+        MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.get(route).accept(MediaType.APPLICATION_NDJSON))
+                                        .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                                        .andReturn();
+        String body = this.mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                                  .andExpect(MockMvcResultMatchers.status().isOk())
+                                  .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_NDJSON))
+                                  .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        // One JSON document per line
+        String[] lines = body.split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals(first.getId(), new Gson().fromJson(lines[0], SeanceDTO.class).getId());
+        Assertions.assertEquals(second.getId(), new Gson().fromJson(lines[1], SeanceDTO.class).getId());
+    }
+
     /**
      * Testing method findById when id is not valid
      * @throws Exception
@@ -107,6 +205,54 @@ public class SeanceControllerTest {
         Assertions.assertEquals(seanceDTO, response);
     }
 
+    /**
+     * Testing method saveAll() with a JSON array
+     * @throws Exception
+     */
+    @Test
+    public void testSaveAllSeances() throws Exception {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        List<SeanceDTO> seances = List.of(new SeanceDTO(null, new Date(), salle), new SeanceDTO("sdfghjk", new Date(), salle));
+        List<BatchResultDTO> results = List.of(new BatchResultDTO(0, "61f0c3f5a1b2c3d4e5f60718", BatchResultDTO.CREATED, null),
+                                               new BatchResultDTO(1, "sdfghjk", BatchResultDTO.UPDATED, null));
+        BDDMockito.given(service.saveAll(ArgumentMatchers.anyList())).willReturn(results);
+
+        Gson json = new GsonBuilder().setDateFormat("yyyy-MM-dd").create();
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route + "/batch")
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(json.toJson(seances)))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value(BatchResultDTO.CREATED))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].id").value("61f0c3f5a1b2c3d4e5f60718"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[1].status").value(BatchResultDTO.UPDATED));
+    }
+
+    /**
+     * Testing method saveAll() with an NDJSON body
+     * @throws Exception
+     */
+    @Test
+    public void testSaveAllSeancesNdjson() throws Exception {
+        Cinema cinema = new Cinema("gb4fdg65df7g45", "Luxor");
+        Salle salle = new Salle("46nf45bx", 1, 99, cinema);
+        Gson json = new GsonBuilder().setDateFormat("yyyy-MM-dd").create();
+        String body = json.toJson(new SeanceDTO(null, new Date(), salle)) + "\n"
+                      + json.toJson(new SeanceDTO(null, new Date(), salle)) + "\n";
+        BDDMockito.given(service.saveAll(ArgumentMatchers.anyList())).willAnswer(invocation -> {
+            List<SeanceDTO> received = invocation.getArgument(0);
+            Assertions.assertEquals(2, received.size());
+            return List.of(new BatchResultDTO(0, "a", BatchResultDTO.CREATED, null),
+                           new BatchResultDTO(1, "b", BatchResultDTO.CREATED, null));
+        });
+
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route + "/batch")
+                                                    .contentType(MediaType.APPLICATION_NDJSON)
+                                                    .content(body))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2));
+    }
+
     /**
      * Testing method save() for updating
      * @throws Exception
@@ -165,4 +311,41 @@ public class SeanceControllerTest {
                     .andExpect(MockMvcResultMatchers.jsonPath("$").isBoolean())
                     .andExpect(MockMvcResultMatchers.jsonPath("$").value("true"));
     }
+
+    /**
+     * Testing method book()
+     * @throws Exception
+     */
+    @Test
+    public void testBookSeats() throws Exception {
+        BDDMockito.given(service.book("sdfghjk", 3)).willReturn(new BookingDTO("sdfghjk", 3, 96));
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route + "/sdfghjk/book").param("seats", "3"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.remaining").value(96));
+    }
+
+    /**
+     * Testing that ?fields= leaves the responses that do not support it untouched
+     * @throws Exception
+     */
+    @Test
+    public void testBookSeatsIgnoresFields() throws Exception {
+        BDDMockito.given(service.book("sdfghjk", 3)).willReturn(new BookingDTO("sdfghjk", 3, 96));
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route + "/sdfghjk/book").param("seats", "3").param("fields", "seanceId"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seanceId").value("sdfghjk"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.seats").value(3))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.remaining").value(96));
+    }
+
+    /**
+     * Testing method book() where the seance is sold out
+     * @throws Exception
+     */
+    @Test
+    public void testBookSeatsWhereSoldOut() throws Exception {
+        BDDMockito.given(service.book("sdfghjk", 3)).willThrow(new ConflictException("Il ne reste pas assez de places"));
+        this.mockMvc.perform(MockMvcRequestBuilders.post(route + "/sdfghjk/book").param("seats", "3"))
+                    .andExpect(MockMvcResultMatchers.status().isConflict());
+    }
 }
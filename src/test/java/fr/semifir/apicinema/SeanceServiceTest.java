@@ -0,0 +1,138 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.caches.EntityCache;
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.dtos.seance.SeanceDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.entities.Seance;
+import fr.semifir.apicinema.exceptions.ConflictException;
+import fr.semifir.apicinema.mappers.EntityMapper;
+import fr.semifir.apicinema.mappers.ModelMapperEntityMapper;
+import fr.semifir.apicinema.repositories.BulkWriter;
+import fr.semifir.apicinema.repositories.CollectionVersions;
+import fr.semifir.apicinema.repositories.Expansion;
+import fr.semifir.apicinema.repositories.GraphReader;
+import fr.semifir.apicinema.repositories.PatchWriter;
+import fr.semifir.apicinema.repositories.Projection;
+import fr.semifir.apicinema.repositories.SeanceRepository;
+import fr.semifir.apicinema.repositories.SeatCounter;
+import fr.semifir.apicinema.repositories.WriteBehindQueue;
+import fr.semifir.apicinema.services.SeanceService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.modelmapper.ModelMapper;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Checks how SeanceService.book() falls back on the salle when a seance has no counter yet,
+ * and how an immediate write orders itself with the deferred ones
+ */
+public class SeanceServiceTest {
+
+    private static final String ID = "61d1e0f0a1b2c3d4e5f60718";
+
+    private GraphReader reader;
+
+    private SeatCounter counter;
+
+    private SeanceService seanceService;
+
+    @BeforeEach
+    public void setup() {
+        this.reader = Mockito.mock(GraphReader.class);
+        this.counter = Mockito.mock(SeatCounter.class);
+        this.seanceService = new SeanceService(
+                Mockito.mock(SeanceRepository.class),
+                this.reader,
+                Mockito.mock(BulkWriter.class),
+                this.counter,
+                new EntityCache<>("seance", 10, Duration.ofMinutes(1)),
+                Mockito.mock(CollectionVersions.class),
+                Mockito.mock(EntityMapper.class),
+                WriteBehindQueue.disabled("seance"),
+                Mockito.mock(PatchWriter.class));
+    }
+
+    /**
+     * Testing that a sold out seance is refused without touching its counter
+     */
+    @Test
+    public void testBookWhereSoldOut() {
+        BDDMockito.given(this.counter.book(ID, 3)).willThrow(new ConflictException("Il ne reste pas assez de places"));
+
+        Assertions.assertThrows(ConflictException.class, () -> this.seanceService.book(ID, 3));
+        Mockito.verify(this.counter, Mockito.never()).initialize(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt());
+        Mockito.verifyNoInteractions(this.reader);
+    }
+
+    /**
+     * Testing that a seance without counter gets one from its salle, then is booked
+     */
+    @Test
+    public void testBookWhereNoCounter() {
+        BDDMockito.given(this.counter.book(ID, 3)).willReturn(Optional.empty(), Optional.of(97));
+        BDDMockito.given(this.reader.seance(ArgumentMatchers.eq(ID), ArgumentMatchers.any(Projection.class), ArgumentMatchers.any(Expansion.class)))
+                .willReturn(Optional.of(new Seance(ID, new Date(), new Salle("46nf45bx", 1, 100, null))));
+
+        Assertions.assertEquals(97, this.seanceService.book(ID, 3).getRemaining());
+        Mockito.verify(this.counter).initialize(ID, 100);
+    }
+
+    /**
+     * Testing that a salle without nbrPlace is a conflict, not a NullPointerException
+     */
+    @Test
+    public void testBookWhereCapacityUnknown() {
+        BDDMockito.given(this.counter.book(ID, 3)).willReturn(Optional.empty());
+        BDDMockito.given(this.reader.seance(ArgumentMatchers.eq(ID), ArgumentMatchers.any(Projection.class), ArgumentMatchers.any(Expansion.class)))
+                .willReturn(Optional.of(new Seance(ID, new Date(), new Salle("46nf45bx", 1, null, null))));
+
+        Assertions.assertThrows(ConflictException.class, () -> this.seanceService.book(ID, 3));
+        Mockito.verify(this.counter, Mockito.never()).initialize(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt());
+    }
+
+    /**
+     * Testing that a versioned PUT writes the deferred PUT of the same id first,
+     * so that the next flush cannot replace it with the older entity
+     */
+    @Test
+    public void testSaveFlushesDeferredWrite() {
+        BulkWriter writer = Mockito.mock(BulkWriter.class);
+        PatchWriter patches = Mockito.mock(PatchWriter.class);
+        WriteBehindQueue<Seance> queue = new WriteBehindQueue<>("seance", 100, Duration.ofHours(1), 3, null);
+        SeanceService service = new SeanceService(
+                Mockito.mock(SeanceRepository.class),
+                this.reader,
+                writer,
+                this.counter,
+                new EntityCache<>("seance", 10, Duration.ofMinutes(1)),
+                Mockito.mock(CollectionVersions.class),
+                new ModelMapperEntityMapper(new ModelMapper()),
+                queue,
+                patches);
+        BDDMockito.given(writer.write(ArgumentMatchers.anyList(), ArgumentMatchers.eq(Seance.class)))
+                .willReturn(List.of(new BatchResultDTO(0, ID, BatchResultDTO.UPDATED, null)));
+        BDDMockito.given(patches.replace(ArgumentMatchers.any(Seance.class), ArgumentMatchers.eq(Seance.class)))
+                .will(AdditionalAnswers.returnsFirstArg());
+
+        Assertions.assertTrue(service.defer(new SeanceDTO(ID, new Date(1), null)));
+        service.save(new SeanceDTO(ID, new Date(2), null, null, 4L));
+        queue.flush();
+
+        InOrder order = Mockito.inOrder(writer, patches);
+        order.verify(writer).write(ArgumentMatchers.argThat(seances -> seances.get(0).getDate().equals(new Date(1))), ArgumentMatchers.eq(Seance.class));
+        order.verify(patches).replace(ArgumentMatchers.argThat(seance -> seance.getVersion() == 4L), ArgumentMatchers.eq(Seance.class));
+        Mockito.verify(writer, Mockito.times(1)).write(ArgumentMatchers.anyList(), ArgumentMatchers.eq(Seance.class));
+        Assertions.assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,190 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.reservations.SeatMap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class SeatMapTest {
+
+    private static final int THREADS = 16;
+
+    /**
+     * Testing that a claim takes all its seats or none
+     */
+    @Test
+    public void testClaimAllOrNothing() {
+        SeatMap seatMap = new SeatMap(130);
+        Assertions.assertTrue(seatMap.claim(new int[]{63, 64}));
+        Assertions.assertFalse(seatMap.claim(new int[]{1, 2, 64, 129}));
+
+        Assertions.assertFalse(seatMap.isTaken(1));
+        Assertions.assertFalse(seatMap.isTaken(129));
+        Assertions.assertEquals(128, seatMap.available());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> seatMap.claim(new int[]{130}));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> seatMap.claim(new int[]{5, 5}));
+    }
+
+    /**
+     * Testing that contiguous seats skip the taken ones
+     */
+    @Test
+    public void testClaimContiguous() {
+        SeatMap seatMap = new SeatMap(10);
+        seatMap.claim(new int[]{2, 6});
+        Assertions.assertArrayEquals(new int[]{3, 4, 5}, seatMap.claimContiguous(3));
+        Assertions.assertArrayEquals(new int[]{7, 8, 9}, seatMap.claimContiguous(3));
+        Assertions.assertNull(seatMap.claimContiguous(3));
+    }
+
+    /**
+     * Testing that an expired hold frees its seats and can't be confirmed anymore
+     */
+    @Test
+    public void testHoldExpiry() {
+        SeatMap seatMap = new SeatMap(10);
+        Assertions.assertTrue(seatMap.hold("a", new int[]{1, 2}, 1_000));
+        Assertions.assertTrue(seatMap.hold("b", new int[]{3}, 5_000));
+        Assertions.assertFalse(seatMap.hold("c", new int[]{2}, 5_000));
+
+        Assertions.assertEquals(List.of("a"), seatMap.expire(2_000));
+        Assertions.assertFalse(seatMap.confirm("a"));
+        Assertions.assertTrue(seatMap.confirm("b"));
+        Assertions.assertTrue(seatMap.expire(10_000).isEmpty());
+        Assertions.assertEquals(9, seatMap.available());
+    }
+
+    /**
+     * Testing that a hold is either confirmed or expired, never both
+     */
+    @Test
+    public void testConfirmAndExpireRace() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                SeatMap seatMap = new SeatMap(4);
+                seatMap.hold("hold", new int[]{0, 1}, 0);
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Boolean> confirmed = executor.submit(() -> {
+                    start.await();
+                    return seatMap.confirm("hold");
+                });
+                Future<List<String>> expired = executor.submit(() -> {
+                    start.await();
+                    return seatMap.expire(1);
+                });
+                start.countDown();
+                Assertions.assertNotEquals(confirmed.get(), expired.get().contains("hold"));
+                Assertions.assertEquals(confirmed.get() ? 2 : 4, seatMap.available());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stress test: every thread books random groups of seats on the same seance until it is full.
+     * Each seat must be sold exactly once.
+     */
+    @Test
+    public void testNoDoubleBookingUntilFull() throws Exception {
+        SeatMap seatMap = new SeatMap(2_000);
+        AtomicIntegerArray sold = new AtomicIntegerArray(seatMap.capacity());
+        this.run(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (seatMap.available() > 0) {
+                int[] seats = random.nextBoolean() ? seatMap.claimContiguous(1 + random.nextInt(4)) : null;
+                if (seats == null) {
+                    seats = this.randomSeats(random, seatMap.capacity(), 1 + random.nextInt(4));
+                    if (!seatMap.claim(seats)) {
+                        continue;
+                    }
+                }
+                for (int seat : seats) {
+                    sold.incrementAndGet(seat);
+                }
+            }
+        });
+
+        for (int seat = 0; seat < seatMap.capacity(); seat++) {
+            Assertions.assertEquals(1, sold.get(seat), "place " + seat);
+        }
+        Assertions.assertEquals(0, seatMap.available());
+    }
+
+    /**
+     * Stress test: every thread books and releases the same 8 seats.
+     * A seat must never be held by two bookings at the same time.
+     */
+    @Test
+    public void testNoDoubleBookingUnderContention() throws Exception {
+        SeatMap seatMap = new SeatMap(300);
+        AtomicIntegerArray owners = new AtomicIntegerArray(seatMap.capacity());
+        AtomicInteger doubleBookings = new AtomicInteger();
+        AtomicInteger bookings = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        this.run(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                int first = 60 + random.nextInt(7);
+                int[] seats = {first, first + 1};
+                if (seatMap.claim(seats)) {
+                    for (int seat : seats) {
+                        if (owners.incrementAndGet(seat) != 1) {
+                            doubleBookings.incrementAndGet();
+                        }
+                    }
+                    bookings.incrementAndGet();
+                    for (int seat : seats) {
+                        owners.decrementAndGet(seat);
+                    }
+                    seatMap.release(seats);
+                }
+            }
+        });
+
+        Assertions.assertEquals(0, doubleBookings.get());
+        Assertions.assertEquals(seatMap.capacity(), seatMap.available());
+        Assertions.assertTrue(bookings.get() > 0);
+    }
+
+    private int[] randomSeats(ThreadLocalRandom random, int capacity, int count) {
+        int first = random.nextInt(capacity - count + 1);
+        int[] seats = new int[count];
+        for (int i = 0; i < count; i++) {
+            seats[i] = first + i;
+        }
+        return seats;
+    }
+
+    private void run(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package fr.semifir.apicinema;
+
+import fr.semifir.apicinema.dtos.batch.BatchResultDTO;
+import fr.semifir.apicinema.entities.Salle;
+import fr.semifir.apicinema.repositories.WriteBehindQueue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks the write-behind queue with a flusher that records its batches, the periodic flush being too slow to interfere
+ */
+public class WriteBehindQueueTest {
+
+    private List<List<Salle>> batches = new ArrayList<>();
+
+    private boolean failing;
+
+    /**
+     * Ids that Mongo refuses one by one, the rest of the batch being written
+     */
+    private Set<String> refused = new HashSet<>();
+
+    private WriteBehindQueue<Salle> queue;
+
+    @BeforeEach
+    public void setup() {
+        this.queue = new WriteBehindQueue<>("salle", 3, Duration.ofMinutes(1), 2, null);
+        this.queue.start(salles -> {
+            if (this.failing) {
+                throw new IllegalStateException("Mongo indisponible");
+            }
+            this.batches.add(salles);
+            List<BatchResultDTO> results = new ArrayList<>();
+            salles.forEach(salle -> results.add(this.refused.contains(salle.getId())
+                    ? new BatchResultDTO(results.size(), salle.getId(), BatchResultDTO.FAILED, "E11000 duplicate key")
+                    : new BatchResultDTO(results.size(), salle.getId(), BatchResultDTO.UPDATED, null)));
+            return results;
+        });
+    }
+
+    /**
+     * Testing that the last write of an id replaces the previous ones
+     */
+    @Test
+    public void testLastWriteWins() {
+        this.queue.offer("a", new Salle("a", 1, 100, null));
+        this.queue.offer("a", new Salle("a", 1, 120, null));
+        this.queue.offer("b", new Salle("b", 2, 80, null));
+        this.queue.offer("a", new Salle("a", 1, 150, null));
+        Assertions.assertEquals(2, this.queue.size());
+
+        this.queue.flush();
+
+        Assertions.assertEquals(1, this.batches.size());
+        Assertions.assertEquals(List.of(new Salle("a", 1, 150, null), new Salle("b", 2, 80, null)), this.batches.get(0));
+        Assertions.assertEquals(0, this.queue.size());
+    }
+
+    /**
+     * Testing that a full queue refuses new ids, for the caller to write them, without flushing in the caller's thread
+     */
+    @Test
+    public void testRefuseWhenFull() {
+        Assertions.assertTrue(this.queue.offer("a", new Salle("a", 1, 100, null)));
+        Assertions.assertTrue(this.queue.offer("b", new Salle("b", 2, 100, null)));
+        Assertions.assertTrue(this.queue.offer("c", new Salle("c", 3, 100, null)));
+        this.failing = true;
+
+        Assertions.assertFalse(this.queue.offer("d", new Salle("d", 4, 100, null)));
+        Assertions.assertTrue(this.queue.offer("a", new Salle("a", 1, 120, null)));
+
+        Assertions.assertTrue(this.batches.isEmpty());
+        Assertions.assertEquals(3, this.queue.size());
+    }
+
+    /**
+     * Testing that cancelled writes are not written
+     */
+    @Test
+    public void testCancel() {
+        this.queue.offer("a", new Salle("a", 1, 100, null));
+        this.queue.offer("b", new Salle("b", 2, 100, null));
+
+        this.queue.cancel(List.of("a"));
+        this.queue.flush();
+
+        Assertions.assertEquals(List.of(new Salle("b", 2, 100, null)), this.batches.get(0));
+    }
+
+    /**
+     * Testing that a failed flush keeps the writes, unless a newer one came in meanwhile
+     */
+    @Test
+    public void testFailedFlushRequeues() {
+        this.queue.offer("a", new Salle("a", 1, 100, null));
+        this.failing = true;
+
+        Assertions.assertThrows(IllegalStateException.class, this.queue::flush);
+        Assertions.assertEquals(1, this.queue.size());
+
+        this.failing = false;
+        this.queue.flush();
+        Assertions.assertEquals(List.of(new Salle("a", 1, 100, null)), this.batches.get(0));
+    }
+
+    /**
+     * Testing that an entity refused by Mongo is retried, then dropped and counted after maxAttempts
+     */
+    @Test
+    public void testRefusedWriteRetriedThenDropped() {
+        this.refused.add("a");
+        this.queue.offer("a", new Salle("a", 1, 100, null));
+        this.queue.offer("b", new Salle("b", 2, 100, null));
+
+        this.queue.flush();
+        Assertions.assertTrue(this.queue.contains("a"));
+        Assertions.assertFalse(this.queue.contains("b"));
+        Assertions.assertEquals(0, this.queue.dropped());
+
+        this.queue.flush();
+        Assertions.assertEquals(0, this.queue.size());
+        Assertions.assertEquals(1, this.queue.dropped());
+        Assertions.assertEquals(List.of(new Salle("a", 1, 100, null)), this.batches.get(1));
+    }
+
+    /**
+     * Testing that a newer write of a refused id starts again with all its attempts
+     */
+    @Test
+    public void testNewerWriteResetsAttempts() {
+        this.refused.add("a");
+        this.queue.offer("a", new Salle("a", 1, 100, null));
+        this.queue.flush();
+
+        this.queue.offer("a", new Salle("a", 1, 120, null));
+        this.queue.flush();
+
+        Assertions.assertEquals(List.of(new Salle("a", 1, 120, null)), this.batches.get(1));
+        Assertions.assertTrue(this.queue.contains("a"));
+        Assertions.assertEquals(0, this.queue.dropped());
+    }
+
+    /**
+     * Testing that close() writes what is still pending
+     * @throws InterruptedException
+     */
+    @Test
+    public void testCloseFlushes() throws InterruptedException {
+        this.queue.offer("a", new Salle("a", 1, 100, null));
+
+        this.queue.close();
+
+        Assertions.assertEquals(1, this.batches.size());
+    }
+
+    /**
+     * Testing that a disabled queue refuses every write, leaving it to the caller
+     * @throws InterruptedException
+     */
+    @Test
+    public void testDisabledQueue() throws InterruptedException {
+        WriteBehindQueue<Salle> disabled = WriteBehindQueue.disabled("salle");
+        disabled.start(salles -> {
+            throw new IllegalStateException("Rien ne doit être écrit");
+        });
+
+        Assertions.assertFalse(disabled.offer("a", new Salle("a", 1, 100, null)));
+        Assertions.assertFalse(disabled.contains("a"));
+        disabled.close();
+    }
+}